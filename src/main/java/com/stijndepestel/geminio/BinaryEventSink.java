@@ -0,0 +1,200 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * EventSink that writes the events in the compact binary format.
+ *
+ * @author sjdpeste
+ * @see BinaryFormat
+ *
+ */
+public final class BinaryEventSink implements EventSink<ByteBuffer> {
+
+    /**
+     * Size of the buffer used to copy payloads without accessible array.
+     */
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    /**
+     * The stream to write to.
+     */
+    private final OutputStream out;
+
+    /**
+     * Flag indicating that the events are written in order of relative time.
+     */
+    private final boolean sorted;
+
+    /**
+     * The relative timestamp of the previously written event, in nanoseconds.
+     */
+    private long previousTimestamp;
+
+    /**
+     * Flag indicating that the header has been written.
+     */
+    private boolean headerWritten;
+
+    /**
+     * Buffer used to copy payloads without accessible array, created lazily.
+     */
+    private byte[] copyBuffer;
+
+    /**
+     * Create a new BinaryEventSink for events in any order.
+     *
+     * @param out
+     *            The buffered stream to write to. It is closed when the sink
+     *            is closed.
+     */
+    public BinaryEventSink(final OutputStream out) {
+        this(out, false);
+    }
+
+    /**
+     * Create a new BinaryEventSink. A sorted sink records in the header that
+     * the events are in order of relative time, so that a source restricted
+     * to a time range can stop reading at the end of the range.
+     *
+     * @param out
+     *            The buffered stream to write to. It is closed when the sink
+     *            is closed.
+     * @param sorted
+     *            Whether the events are written in order of relative time,
+     *            as a capture writes them.
+     */
+    public BinaryEventSink(final OutputStream out, final boolean sorted) {
+        this.out = out;
+        this.sorted = sorted;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The remaining bytes of the buffer are written, without changing its
+     * position.
+     *
+     * @throws IllegalArgumentException
+     *             When the sink is sorted and the event is before the previous
+     *             one.
+     */
+    @Override
+    public void write(final Wrapper<ByteBuffer> event) {
+        final long timestamp = event.getRelativeTimeNanos();
+        if (this.sorted && this.headerWritten
+                && timestamp < this.previousTimestamp) {
+            throw new IllegalArgumentException(
+                    "The events should be in order of relative time.");
+        }
+        try {
+            this.writeHeader();
+            BinaryFormat.writeVarLong(this.out,
+                    BinaryFormat.zigzag(timestamp - this.previousTimestamp));
+            this.previousTimestamp = timestamp;
+            final ByteBuffer payload = event.getEvent();
+            BinaryFormat.writeVarLong(this.out, payload.remaining());
+            if (payload.hasArray()) {
+                this.out.write(payload.array(),
+                        payload.arrayOffset() + payload.position(),
+                        payload.remaining());
+            } else {
+                this.writeCopy(payload.duplicate());
+            }
+        } catch (final IOException e) {
+            BinaryEventSink.logError(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            this.out.flush();
+        } catch (final IOException e) {
+            BinaryEventSink.logError(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.writeHeader();
+            this.out.close();
+        } catch (final IOException e) {
+            BinaryEventSink.logError(e);
+        }
+    }
+
+    /**
+     * Write the header if it has not been written yet.
+     *
+     * @throws IOException
+     *             When writing fails.
+     */
+    private void writeHeader() throws IOException {
+        if (!this.headerWritten) {
+            BinaryFormat.writeHeader(this.out, this.sorted);
+            this.headerWritten = true;
+        }
+    }
+
+    /**
+     * Write a payload of which the array is not accessible, e.g., a direct
+     * buffer.
+     *
+     * @param payload
+     *            The payload, the position of which will be changed.
+     * @throws IOException
+     *             When writing fails.
+     */
+    private void writeCopy(final ByteBuffer payload) throws IOException {
+        if (this.copyBuffer == null) {
+            this.copyBuffer = new byte[BinaryEventSink.COPY_BUFFER_SIZE];
+        }
+        while (payload.hasRemaining()) {
+            final int length = Math.min(payload.remaining(),
+                    this.copyBuffer.length);
+            payload.get(this.copyBuffer, 0, length);
+            this.out.write(this.copyBuffer, 0, length);
+        }
+    }
+
+    /**
+     * Log an IO exception that occurred while writing.
+     *
+     * @param e
+     *            The exception.
+     */
+    private static void logError(final IOException e) {
+        LoggerFactory.getLogger(BinaryEventSink.class.getName())
+                .error("IO Exception during persisting.", e);
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * EventSource that reads events in the compact binary format.
+ *
+ * @author sjdpeste
+ * @see BinaryFormat
+ *
+ */
+public final class BinaryEventSource implements EventSource<ByteBuffer> {
+
+    /**
+     * The stream to read from.
+     */
+    private final InputStream in;
+
+    /**
+     * The relative timestamp of the previously read event, in the unit of the
+     * capture.
+     */
+    private long previousTimestamp;
+
+    /**
+     * The unit of the relative timestamps, null while the header has not been
+     * read.
+     */
+    private TimeUnit unit;
+
+    /**
+     * Flag indicating that the events are in order of relative time.
+     */
+    private boolean sorted;
+
+    /**
+     * Flag indicating that the timestamp of the next event has been read, but
+     * its payload has not.
+     */
+    private boolean pending;
+
+    /**
+     * Flag indicating that the end of the stream was reached.
+     */
+    private boolean ended;
+
+    /**
+     * The start of the range of supplied events, inclusive, in nanoseconds.
+     */
+    private long fromNanos;
+
+    /**
+     * The end of the range of supplied events, exclusive, in nanoseconds.
+     */
+    private long toNanos;
+
+    /**
+     * Create a new BinaryEventSource.
+     *
+     * @param in
+     *            The buffered stream to read from. It is closed when the
+     *            source is closed.
+     */
+    public BinaryEventSource(final InputStream in) {
+        this.in = in;
+        this.fromNanos = Long.MIN_VALUE;
+        this.toNanos = Long.MAX_VALUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Since every event is preceded by its timestamp and its length, the
+     * payloads of the events outside the range are skipped without reading
+     * them. Only when the header records that the events are sorted, reading
+     * stops at the first event at or after the end. The format has no index,
+     * so the timestamps and lengths of the events before the range are still
+     * read.
+     */
+    @Override
+    public EventSource<ByteBuffer> range(final long from, final long to,
+            final TimeUnit unit) {
+        this.fromNanos = unit.toNanos(from);
+        this.toNanos = unit.toNanos(to);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException
+     *             When reading fails or the stream is not a binary capture.
+     */
+    @Override
+    public boolean hasNext() {
+        try {
+            if (this.unit == null) {
+                final BinaryFormat.Header header = BinaryFormat
+                        .readHeader(this.in);
+                this.unit = header.getUnit();
+                this.sorted = header.isSorted();
+            }
+            while (!this.pending && !this.ended) {
+                final int firstByte = this.in.read();
+                if (firstByte < 0) {
+                    this.ended = true;
+                } else {
+                    this.previousTimestamp += BinaryFormat.unzigzag(
+                            BinaryFormat.readVarLong(this.in, firstByte));
+                    final long nanos = this.unit
+                            .toNanos(this.previousTimestamp);
+                    if (nanos >= this.toNanos && this.sorted) {
+                        this.ended = true;
+                    } else if (nanos >= this.fromNanos
+                            && nanos < this.toNanos) {
+                        this.pending = true;
+                    } else {
+                        this.skipPayload();
+                    }
+                }
+            }
+            return this.pending;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException
+     *             When reading fails or the stream ends in the middle of an
+     *             event.
+     */
+    @Override
+    public Wrapper<ByteBuffer> next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            this.pending = false;
+            final byte[] payload = new byte[this.readLength()];
+            int offset = 0;
+            while (offset < payload.length) {
+                final int read = this.in.read(payload, offset,
+                        payload.length - offset);
+                if (read < 0) {
+                    throw new EOFException(
+                            "Unexpected end of binary capture.");
+                }
+                offset += read;
+            }
+            return new Wrapper<>(ByteBuffer.wrap(payload),
+                    this.previousTimestamp, this.unit);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read the length of the payload of the current event.
+     *
+     * @return The length of the payload.
+     * @throws IOException
+     *             When reading fails or the length is too large.
+     */
+    private int readLength() throws IOException {
+        final long length = BinaryFormat.readVarLong(this.in, this.in.read());
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Payload too large: " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Skip the payload of the current event without reading it.
+     *
+     * @throws IOException
+     *             When reading fails or the stream ends in the middle of the
+     *             payload.
+     */
+    private void skipPayload() throws IOException {
+        long remaining = this.readLength();
+        while (remaining > 0) {
+            final long skipped = this.in.skip(remaining);
+            if (skipped > 0) {
+                remaining -= skipped;
+            } else if (this.in.read() < 0) {
+                throw new EOFException("Unexpected end of binary capture.");
+            } else {
+                remaining--;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.in.close();
+        } catch (final IOException e) {
+            LoggerFactory.getLogger(BinaryEventSource.class.getName())
+                    .error("IO Exception while closing.", e);
+        }
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+
+/**
+ * Definitions of the compact binary format for persisted events.
+ *
+ * A binary capture starts with the {@link #MAGIC} bytes, the {@link #VERSION}
+ * byte and a byte of flags, e.g., {@link #FLAG_SORTED}, followed by one
+ * record per event. A record consists
+ * of the difference between the relative timestamp of the event and the one
+ * of the previous event in nanoseconds (milliseconds for
+ * {@link #VERSION_MILLIS}), as zigzag encoded variable length integer, the length
+ * of the payload, as variable length integer, and the payload itself. The end
+ * of the stream marks the end of the capture.
+ *
+ * @author sjdpeste
+ *
+ */
+public final class BinaryFormat {
+
+    /**
+     * The bytes every binary capture starts with.
+     */
+    static final byte[] MAGIC = { 'G', 'M', 'I', 'O' };
+
+    /**
+     * The version of the binary format.
+     */
+    static final int VERSION = 3;
+
+    /**
+     * The second version of the binary format, without flags.
+     */
+    static final int VERSION_NO_FLAGS = 2;
+
+    /**
+     * The first version of the binary format, with relative timestamps in
+     * milliseconds instead of nanoseconds.
+     */
+    static final int VERSION_MILLIS = 1;
+
+    /**
+     * Flag indicating that the records are in order of relative time.
+     */
+    static final int FLAG_SORTED = 1;
+
+    /**
+     * The number of payload bits in each byte of a variable length integer.
+     */
+    private static final int VARINT_SHIFT = 7;
+
+    /**
+     * Mask for the payload bits of a byte of a variable length integer.
+     */
+    private static final int VARINT_MASK = 0x7F;
+
+    /**
+     * Flag indicating that more bytes of a variable length integer follow.
+     */
+    private static final int VARINT_CONTINUE = 0x80;
+
+    /**
+     * The maximum number of bytes of a variable length long.
+     */
+    private static final int VARINT_MAX_BYTES = 10;
+
+    /**
+     * Default private constructor.
+     *
+     * @throws InstantiationError
+     *             Class cannot be instantiated.
+     */
+    private BinaryFormat() {
+        throw new InstantiationError("Class cannot be instantiated.");
+    }
+
+    /**
+     * Encode a JSONObject as payload, for using JSON serializers with the
+     * binary format.
+     *
+     * @param json
+     *            The JSONObject to encode.
+     * @return The UTF-8 encoded JSON.
+     */
+    public static ByteBuffer encodeJSON(final JSONObject json) {
+        return ByteBuffer.wrap(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a payload created by {@link #encodeJSON(JSONObject)}.
+     *
+     * @param payload
+     *            The payload to decode.
+     * @return The decoded JSONObject.
+     */
+    public static JSONObject decodeJSON(final ByteBuffer payload) {
+        return new JSONObject(
+                StandardCharsets.UTF_8.decode(payload.duplicate()).toString());
+    }
+
+    /**
+     * Write the header of a binary capture.
+     *
+     * @param out
+     *            The stream to write to.
+     * @param sorted
+     *            Whether the records are in order of relative time.
+     * @throws IOException
+     *             When writing fails.
+     */
+    static void writeHeader(final OutputStream out, final boolean sorted)
+            throws IOException {
+        out.write(BinaryFormat.MAGIC);
+        out.write(BinaryFormat.VERSION);
+        out.write(sorted ? BinaryFormat.FLAG_SORTED : 0);
+    }
+
+    /**
+     * Read and verify the header of a binary capture.
+     *
+     * @param in
+     *            The stream to read from.
+     * @return The header of the capture.
+     * @throws IOException
+     *             When reading fails or the stream is not a binary capture.
+     */
+    static Header readHeader(final InputStream in) throws IOException {
+        for (final byte b : BinaryFormat.MAGIC) {
+            if (in.read() != b) {
+                throw new StreamCorruptedException(
+                        "Not a binary capture.");
+            }
+        }
+        final int version = in.read();
+        switch (version) {
+        case VERSION:
+            final int flags = in.read();
+            if (flags < 0) {
+                throw new EOFException("Unexpected end of binary capture.");
+            }
+            return new Header(TimeUnit.NANOSECONDS,
+                    (flags & BinaryFormat.FLAG_SORTED) != 0);
+        case VERSION_NO_FLAGS:
+            return new Header(TimeUnit.NANOSECONDS, false);
+        case VERSION_MILLIS:
+            return new Header(TimeUnit.MILLISECONDS, false);
+        default:
+            throw new StreamCorruptedException(
+                    "Unsupported binary capture version: " + version);
+        }
+    }
+
+    /**
+     * Write a variable length unsigned integer.
+     *
+     * @param out
+     *            The stream to write to.
+     * @param value
+     *            The value to write, interpreted as unsigned.
+     * @throws IOException
+     *             When writing fails.
+     */
+    static void writeVarLong(final OutputStream out, final long value)
+            throws IOException {
+        long remaining = value;
+        while ((remaining & ~BinaryFormat.VARINT_MASK) != 0) {
+            out.write((int) (remaining & BinaryFormat.VARINT_MASK)
+                    | BinaryFormat.VARINT_CONTINUE);
+            remaining >>>= BinaryFormat.VARINT_SHIFT;
+        }
+        out.write((int) remaining);
+    }
+
+    /**
+     * Read a variable length unsigned integer of which the first byte has
+     * already been read.
+     *
+     * @param in
+     *            The stream to read from.
+     * @param firstByte
+     *            The first byte of the integer.
+     * @return The value that was read.
+     * @throws IOException
+     *             When reading fails or the stream ends prematurely.
+     */
+    static long readVarLong(final InputStream in, final int firstByte)
+            throws IOException {
+        long value = 0;
+        int current = firstByte;
+        for (int i = 0; i < BinaryFormat.VARINT_MAX_BYTES; i++) {
+            if (current < 0) {
+                throw new EOFException("Unexpected end of binary capture.");
+            }
+            value |= (long) (current & BinaryFormat.VARINT_MASK) << (i
+                    * BinaryFormat.VARINT_SHIFT);
+            if ((current & BinaryFormat.VARINT_CONTINUE) == 0) {
+                return value;
+            }
+            current = in.read();
+        }
+        throw new StreamCorruptedException("Variable length integer too long.");
+    }
+
+    /**
+     * Map a signed value onto an unsigned one, so that small negative values
+     * are encoded in few bytes as well.
+     *
+     * @param value
+     *            The signed value.
+     * @return The zigzag encoded value.
+     */
+    static long zigzag(final long value) {
+        return value << 1 ^ value >> (Long.SIZE - 1);
+    }
+
+    /**
+     * Reverse {@link #zigzag(long)}.
+     *
+     * @param value
+     *            The zigzag encoded value.
+     * @return The signed value.
+     */
+    static long unzigzag(final long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * The header of a binary capture.
+     *
+     * @author sjdpeste
+     *
+     */
+    static final class Header {
+
+        /**
+         * The unit of the relative timestamps.
+         */
+        private final TimeUnit unit;
+
+        /**
+         * Flag indicating that the records are in order of relative time.
+         */
+        private final boolean sorted;
+
+        /**
+         * Create a new Header.
+         *
+         * @param unit
+         *            The unit of the relative timestamps.
+         * @param sorted
+         *            Whether the records are in order of relative time.
+         */
+        Header(final TimeUnit unit, final boolean sorted) {
+            this.unit = unit;
+            this.sorted = sorted;
+        }
+
+        /**
+         * Get the unit of the relative timestamps.
+         *
+         * @return The unit.
+         */
+        TimeUnit getUnit() {
+            return this.unit;
+        }
+
+        /**
+         * Indicates whether or not the records are in order of relative time.
+         *
+         * @return true if the records are sorted, false if they may not be.
+         */
+        boolean isSorted() {
+            return this.sorted;
+        }
+    }
+
+}
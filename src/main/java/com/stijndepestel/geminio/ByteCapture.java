@@ -0,0 +1,608 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.json.JSONObject;
+
+/**
+ * Capture specialized for raw bytes, e.g., the data read from a serial port.
+ * The captured bytes are copied into pooled direct buffers (chunks) and their
+ * timestamps and lengths are kept in primitive arrays, so capturing does not
+ * box or allocate per event. When all chunks are full, the captured events
+ * are written to the sink and the chunks are reused. The chunks can be written
+ * on a writer, e.g., a thread shared by several captures, so that the
+ * capturing thread does not block on the sink.
+ *
+ * The events are captured from a single thread at a time; the methods of this
+ * class are synchronized.
+ *
+ * @author sjdpeste
+ *
+ */
+public final class ByteCapture {
+
+    /**
+     * The error message for the IllegalStateExceptions thrown in this object.
+     */
+    private static final String ERROR_MESSAGE = "Object is not in the right state.";
+
+    /**
+     * The default size of a chunk, in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * The default number of chunks kept in memory before they are written to
+     * the sink.
+     */
+    public static final int DEFAULT_MAX_CHUNKS = 64;
+
+    /**
+     * The initial number of events the primitive arrays can hold.
+     */
+    private static final int INITIAL_EVENTS = 1024;
+
+    /**
+     * The size of a chunk, in bytes.
+     */
+    private final int chunkSize;
+
+    /**
+     * The number of chunks kept in memory before they are written to the
+     * sink.
+     */
+    private final int maxChunks;
+
+    /**
+     * The chunks holding the captured bytes, in order. Only the last chunk is
+     * being filled.
+     */
+    private final List<ByteBuffer> chunks;
+
+    /**
+     * The chunks that can be reused.
+     */
+    private final Deque<ByteBuffer> pool;
+
+    /**
+     * The relative timestamps of the events in the chunks, in nanoseconds.
+     */
+    private long[] timestamps;
+
+    /**
+     * The number of bytes of the events in the chunks.
+     */
+    private int[] lengths;
+
+    /**
+     * The number of events in the chunks.
+     */
+    private int count;
+
+    /**
+     * The number of captured events.
+     */
+    private int capturedEvents;
+
+    /**
+     * The current state of the capture object.
+     */
+    private State currentState;
+
+    /**
+     * Timestamp of when the capture started, in terms of
+     * {@link System#nanoTime()}.
+     */
+    private long captureStart;
+
+    /**
+     * The relative timestamp of the last captured event, in nanoseconds.
+     */
+    private long lastTimestamp;
+
+    /**
+     * The serializer and the sink of the captured events.
+     */
+    private final Output<?> output;
+
+    /**
+     * Writes the full chunks to the sink, if not written on the capturing
+     * thread.
+     */
+    private Optional<Executor> writer;
+
+    /**
+     * Flag indicating that the writer is writing chunks. Guarded by this
+     * capture.
+     */
+    private boolean writing;
+
+    /**
+     * Create a new ByteCapture, writing the events to a sink, e.g., a binary
+     * sink, without serializing them.
+     *
+     * @param sink
+     *            The sink to write the captured bytes to.
+     * @see Persister#binarySink()
+     */
+    public ByteCapture(final EventSink<ByteBuffer> sink) {
+        this(Function.identity(), sink, ByteCapture.DEFAULT_CHUNK_SIZE,
+                ByteCapture.DEFAULT_MAX_CHUNKS);
+    }
+
+    /**
+     * Create a new ByteCapture, persisting the events as a JSONObject when
+     * saving, like {@link Capture}.
+     *
+     * @param serializer
+     *            Function to serialize the bytes of an event.
+     * @param persister
+     *            Consumer of the JSONObject containing all events.
+     */
+    public ByteCapture(final Function<ByteBuffer, JSONObject> serializer,
+            final Consumer<JSONObject> persister) {
+        this(serializer, new JSONObjectSink(persister),
+                ByteCapture.DEFAULT_CHUNK_SIZE, ByteCapture.DEFAULT_MAX_CHUNKS);
+    }
+
+    /**
+     * Create a new ByteCapture.
+     *
+     * @param serializer
+     *            Function to serialize the bytes of an event. The buffer is
+     *            only valid during the call and should not be modified.
+     * @param sink
+     *            The sink to write the serialized events to.
+     * @param chunkSize
+     *            The size of a chunk, in bytes. Events larger than a chunk
+     *            get a chunk of their own, which is not reused.
+     * @param maxChunks
+     *            The number of chunks kept in memory before they are written
+     *            to the sink.
+     * @param <R>
+     *            The type of the serialized events.
+     * @throws IllegalArgumentException
+     *             When the chunk size or number of chunks is smaller than one.
+     */
+    public <R> ByteCapture(final Function<ByteBuffer, R> serializer,
+            final EventSink<R> sink, final int chunkSize,
+            final int maxChunks) {
+        if (chunkSize < 1 || maxChunks < 1) {
+            throw new IllegalArgumentException(
+                    "Chunk size and number of chunks should be at least one.");
+        }
+        this.output = new Output<>(serializer, sink);
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+        this.chunks = new ArrayList<>(maxChunks);
+        this.pool = new ArrayDeque<>(maxChunks);
+        this.timestamps = new long[ByteCapture.INITIAL_EVENTS];
+        this.lengths = new int[ByteCapture.INITIAL_EVENTS];
+        this.currentState = State.CREATED;
+        this.writer = Optional.empty();
+    }
+
+    /**
+     * Write the full chunks and the remaining events on a writer instead of
+     * the capturing thread. The sink is then only used by the writer, one
+     * batch of chunks at a time, and the capturing thread only waits when
+     * the chunks are full while the writer is still writing the previous
+     * batch. Should be set before starting the capture.
+     *
+     * @param newWriter
+     *            The writer, e.g., a single thread executor.
+     * @throws IllegalStateException
+     *             When the capture was already started.
+     */
+    public synchronized void setWriter(final Executor newWriter) {
+        if (this.currentState != State.CREATED) {
+            throw new IllegalStateException(ByteCapture.ERROR_MESSAGE);
+        }
+        this.writer = Optional.of(newWriter);
+    }
+
+    /**
+     * Start capturing mode. Events will be logged relative to the timestamp of
+     * calling this method, with nanosecond resolution, using a monotonic
+     * clock.
+     */
+    public void startCapture() {
+        this.startCapture(System.nanoTime());
+    }
+
+    /**
+     * Start capturing mode with the events logged relative to the given time,
+     * e.g., to give the captures of several connections the same start.
+     *
+     * @param nanoTime
+     *            The start of the capture, as returned by
+     *            {@link System#nanoTime()}.
+     */
+    public synchronized void startCapture(final long nanoTime) {
+        if (this.currentState != State.CREATED) {
+            throw new IllegalStateException(ByteCapture.ERROR_MESSAGE);
+        }
+        this.captureStart = nanoTime;
+        this.currentState = State.CAPTURING;
+    }
+
+    /**
+     * Stop the capture.
+     *
+     * @throws IllegalStateException
+     *             When this is called before the capture was started.
+     */
+    public synchronized void stopCapture() {
+        if (this.currentState != State.CAPTURING) {
+            throw new IllegalStateException(ByteCapture.ERROR_MESSAGE);
+        }
+        this.currentState = State.STOPPED;
+    }
+
+    /**
+     * Capture the bytes as an event.
+     *
+     * @param data
+     *            The bytes to capture. They are copied, so the array can be
+     *            reused after this call.
+     * @throws IllegalStateException
+     *             When trying to capture an event when the object is not in
+     *             capture mode.
+     */
+    public void capture(final byte[] data) {
+        this.capture(data, 0, data.length);
+    }
+
+    /**
+     * Capture a range of bytes as an event.
+     *
+     * @param data
+     *            The array containing the bytes to capture. They are copied,
+     *            so the array can be reused after this call.
+     * @param offset
+     *            The index of the first byte to capture.
+     * @param length
+     *            The number of bytes to capture.
+     * @throws IllegalStateException
+     *             When trying to capture an event when the object is not in
+     *             capture mode.
+     */
+    public void capture(final byte[] data, final int offset,
+            final int length) {
+        this.capture(data, offset, length, System.nanoTime());
+    }
+
+    /**
+     * Capture a range of bytes as an event that was received at the given
+     * time, e.g., a message of which the last byte was received earlier.
+     *
+     * @param data
+     *            The array containing the bytes to capture. They are copied,
+     *            so the array can be reused after this call.
+     * @param offset
+     *            The index of the first byte to capture.
+     * @param length
+     *            The number of bytes to capture.
+     * @param nanoTime
+     *            The time at which the bytes were received, as returned by
+     *            {@link System#nanoTime()}. A time before the previous event
+     *            is moved up to the time of the previous event, so the events
+     *            stay in order.
+     * @throws IllegalStateException
+     *             When trying to capture an event when the object is not in
+     *             capture mode.
+     */
+    public synchronized void capture(final byte[] data, final int offset,
+            final int length, final long nanoTime) {
+        if (this.currentState != State.CAPTURING) {
+            throw new IllegalStateException(ByteCapture.ERROR_MESSAGE);
+        }
+        final long relTimestamp = Math.max(nanoTime - this.captureStart,
+                this.lastTimestamp);
+        this.lastTimestamp = relTimestamp;
+        ByteBuffer chunk = this.chunks.isEmpty() ? null
+                : this.chunks.get(this.chunks.size() - 1);
+        if (chunk == null || chunk.remaining() < length) {
+            if (this.chunks.size() >= this.maxChunks) {
+                this.spill(false);
+            }
+            chunk = this.nextChunk(length);
+            this.chunks.add(chunk);
+        }
+        chunk.put(data, offset, length);
+        if (this.count == this.timestamps.length) {
+            this.timestamps = Arrays.copyOf(this.timestamps, this.count * 2);
+            this.lengths = Arrays.copyOf(this.lengths, this.count * 2);
+        }
+        this.timestamps[this.count] = relTimestamp;
+        this.lengths[this.count] = length;
+        this.count++;
+        this.capturedEvents++;
+    }
+
+    /**
+     * Write the remaining events to the sink and finalize the sink. With a
+     * writer, the sink is finalized on the writer after this returns.
+     */
+    public synchronized void saveEvents() {
+        if (this.currentState != State.STOPPED) {
+            throw new IllegalStateException(ByteCapture.ERROR_MESSAGE);
+        }
+        this.spill(true);
+    }
+
+    /**
+     * Get the number of captured events.
+     *
+     * @return The number of captured events.
+     */
+    public synchronized int getNumberOfCapturedEvents() {
+        return this.capturedEvents;
+    }
+
+    /**
+     * Get an empty chunk that can hold the given number of bytes.
+     *
+     * @param length
+     *            The number of bytes of the event.
+     * @return A pooled chunk, or a new chunk if the pool is empty or the event
+     *         is larger than a chunk.
+     */
+    private ByteBuffer nextChunk(final int length) {
+        if (length > this.chunkSize) {
+            return ByteBuffer.allocate(length);
+        }
+        final ByteBuffer pooled = this.pool.poll();
+        return pooled == null ? ByteBuffer.allocateDirect(this.chunkSize)
+                : pooled;
+    }
+
+    /**
+     * Write the events in the chunks to the sink, on the writer if any, and
+     * flush the sink, or close it for the last events. Waits while the writer
+     * is still writing the previous batch, so at most two batches of chunks
+     * are in memory. Should only be called while holding the lock of this
+     * capture.
+     *
+     * @param last
+     *            Whether these are the last events of the capture.
+     */
+    private void spill(final boolean last) {
+        boolean interrupted = false;
+        while (this.writing) {
+            try {
+                this.wait();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        final Batch batch = new Batch(new ArrayList<>(this.chunks),
+                Arrays.copyOf(this.timestamps, this.count),
+                Arrays.copyOf(this.lengths, this.count));
+        this.chunks.clear();
+        this.count = 0;
+        if (!this.writer.isPresent()) {
+            this.write(batch, last);
+            this.recycle(batch);
+            return;
+        }
+        this.writing = true;
+        final Runnable task = () -> {
+            try {
+                this.write(batch, last);
+            } finally {
+                synchronized (this) {
+                    this.recycle(batch);
+                    this.writing = false;
+                    this.notifyAll();
+                }
+            }
+        };
+        try {
+            this.writer.get().execute(task);
+        } catch (final RejectedExecutionException e) {
+            // the writer was shut down, write on the capturing thread
+            task.run();
+        }
+    }
+
+    /**
+     * Write the events of a batch to the sink, in order, and flush the sink,
+     * or close it for the last events. An event never spans two chunks, so an
+     * event that does not fit in the rest of a chunk starts at the next one.
+     *
+     * @param batch
+     *            The events to write.
+     * @param last
+     *            Whether these are the last events of the capture.
+     */
+    private void write(final Batch batch, final boolean last) {
+        int chunkIndex = 0;
+        int position = 0;
+        ByteBuffer view = null;
+        for (int i = 0; i < batch.timestamps.length; i++) {
+            final int length = batch.lengths[i];
+            if (view == null || position + length > batch.chunks
+                    .get(chunkIndex).position()) {
+                if (view != null) {
+                    chunkIndex++;
+                }
+                view = batch.chunks.get(chunkIndex).duplicate();
+                position = 0;
+            }
+            view.limit(position + length);
+            view.position(position);
+            this.output.write(view, batch.timestamps[i]);
+            position += length;
+        }
+        if (last) {
+            this.output.sink.close();
+        } else {
+            this.output.sink.flush();
+        }
+    }
+
+    /**
+     * Return the chunks of a written batch to the pool. Should only be called
+     * while holding the lock of this capture.
+     *
+     * @param batch
+     *            The written batch.
+     */
+    private void recycle(final Batch batch) {
+        for (final ByteBuffer chunk : batch.chunks) {
+            chunk.clear();
+            if (chunk.isDirect()) {
+                this.pool.push(chunk);
+            }
+        }
+    }
+
+    /**
+     * The events of full chunks, handed to the sink as a whole.
+     *
+     * @author sjdpeste
+     *
+     */
+    private static final class Batch {
+
+        /**
+         * The chunks holding the bytes of the events, in order.
+         */
+        private final List<ByteBuffer> chunks;
+
+        /**
+         * The relative timestamps of the events, in nanoseconds.
+         */
+        private final long[] timestamps;
+
+        /**
+         * The number of bytes of the events.
+         */
+        private final int[] lengths;
+
+        /**
+         * Create a new Batch.
+         *
+         * @param chunks
+         *            The chunks holding the bytes of the events, in order.
+         * @param timestamps
+         *            The relative timestamps of the events, in nanoseconds.
+         * @param lengths
+         *            The number of bytes of the events.
+         */
+        Batch(final List<ByteBuffer> chunks, final long[] timestamps,
+                final int[] lengths) {
+            this.chunks = chunks;
+            this.timestamps = timestamps;
+            this.lengths = lengths;
+        }
+    }
+
+    /**
+     * Combination of a serializer and the sink for the serialized events.
+     *
+     * @author sjdpeste
+     *
+     * @param <R>
+     *            The type of the serialized events.
+     */
+    private static final class Output<R> {
+
+        /**
+         * Serializer for the events.
+         */
+        private final Function<ByteBuffer, R> serializer;
+
+        /**
+         * The sink for the serialized events.
+         */
+        private final EventSink<R> sink;
+
+        /**
+         * Create a new output.
+         *
+         * @param serializer
+         *            Serializer for the events.
+         * @param sink
+         *            The sink for the serialized events.
+         */
+        Output(final Function<ByteBuffer, R> serializer,
+                final EventSink<R> sink) {
+            this.serializer = serializer;
+            this.sink = sink;
+        }
+
+        /**
+         * Serialize the bytes of an event and write them to the sink.
+         *
+         * @param bytes
+         *            The bytes of the event.
+         * @param relativeTimeNanos
+         *            The relative timestamp of the event, in nanoseconds.
+         */
+        void write(final ByteBuffer bytes, final long relativeTimeNanos) {
+            this.sink.write(new Wrapper<>(this.serializer.apply(bytes),
+                    relativeTimeNanos, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * Definitions of the possible states of a ByteCapture object.
+     *
+     * @author sjdpeste
+     *
+     */
+    private enum State {
+        /**
+         * The object has been created but has not yet started the capture.
+         */
+        CREATED,
+        /**
+         * The object is in capture mode, it is accepting new events.
+         */
+        CAPTURING,
+        /**
+         * The object has stopped accepting new events.
+         */
+        STOPPED;
+
+    }
+}
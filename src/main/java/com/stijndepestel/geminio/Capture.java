@@ -23,10 +23,20 @@
  */
 package com.stijndepestel.geminio;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 import org.json.JSONObject;
 
@@ -46,31 +56,82 @@ public final class Capture<T> {
     private static final String ERROR_MESSAGE = "Object is not in the right state.";
 
     /**
-     * List containing the serialized events that are not yet persisted.
+     * Window size indicating that events are only written when saving.
      */
-    private final List<Wrapper<T>> serializedEvents;
+    private static final int UNBOUNDED_WINDOW = Integer.MAX_VALUE;
 
     /**
-     * The current state of the Capture.
+     * The number of windows that can be kept in memory before the producers
+     * wait for the writer.
      */
-    private State currentState;
+    private static final int MAX_WINDOWS = 2;
 
     /**
-     * Timestamp of when capturing started.
+     * Buffer containing the events that are not yet persisted.
+     */
+    private CaptureBuffer<T> serializedEvents;
+
+    /**
+     * The current state of the Capture. Volatile since events can be captured
+     * from multiple threads in concurrent mode.
+     */
+    private volatile State currentState;
+
+    /**
+     * Timestamp of when capturing started, in terms of
+     * {@link System#nanoTime()}.
      */
     private long captureStart;
 
     /**
-     * Serializer for the events.
+     * Serializes the events and writes them to the sink.
      */
-    private final Function<T, JSONObject> serializer;
+    private final Output<T, ?> output;
 
     /**
-     * Consumer to persist the captured events.
-     *
-     * @see Persister
+     * The maximum number of events kept in memory before they are written to
+     * the sink.
      */
-    private final Consumer<JSONObject> persister;
+    private final int window;
+
+    /**
+     * Flag indicating that a thread is writing buffered events to the sink.
+     */
+    private final AtomicBoolean spilling;
+
+    /**
+     * Writes the windows to the sink while capturing, if a window is used.
+     */
+    private Optional<ExecutorService> writer;
+
+    /**
+     * The epoch of the producers, only changed by the thread writing a
+     * window. Only its parity is used.
+     */
+    private volatile int epoch;
+
+    /**
+     * The number of producers per parity of the epoch that have taken their
+     * timestamp, or are about to, but have not yet added their event.
+     */
+    private final AtomicIntegerArray inFlight;
+
+    /**
+     * The events that were drained, but held back until the next window
+     * since an earlier event could still be added. Guarded by the spilling
+     * flag.
+     */
+    private final List<Wrapper<T>> heldBack;
+
+    /**
+     * The number of events written to the sink.
+     */
+    private volatile long written;
+
+    /**
+     * The monotonic clock timestamping the events, in nanoseconds.
+     */
+    private LongSupplier clock;
 
     /**
      * Create new capture object.
@@ -82,22 +143,153 @@ public final class Capture<T> {
      */
     public Capture(final Function<T, JSONObject> serializer,
             final Consumer<JSONObject> persister) {
-        this.serializedEvents = new ArrayList<>();
+        this(serializer, new JSONObjectSink(persister),
+                Capture.UNBOUNDED_WINDOW);
+    }
+
+    /**
+     * Create new capture object that streams the events to the sink one by
+     * one when saving, instead of building a single JSONObject containing all
+     * events.
+     *
+     * @param serializer
+     *            Function to serialize the event.
+     * @param sink
+     *            The sink to write the serialized events to.
+     * @param <R>
+     *            The type of the serialized events.
+     * @see Persister#sink()
+     */
+    public <R> Capture(final Function<T, R> serializer,
+            final EventSink<R> sink) {
+        this(serializer, sink, Capture.UNBOUNDED_WINDOW);
+    }
+
+    /**
+     * Create new capture object that encodes the events with a codec and
+     * streams them to the sink when saving.
+     *
+     * @param codec
+     *            The codec to encode the events with.
+     * @param sink
+     *            The sink to write the encoded events to, e.g., a binary sink.
+     * @see Persister#binarySink()
+     */
+    public Capture(final Codec<T> codec, final EventSink<ByteBuffer> sink) {
+        this(new CodecEncoder<>(codec), sink);
+    }
+
+    /**
+     * Create new capture object that encodes the events with a codec and
+     * writes them to the sink while capturing, see
+     * {@link #Capture(Function, EventSink, int)}.
+     *
+     * @param codec
+     *            The codec to encode the events with.
+     * @param sink
+     *            The sink to write the encoded events to, e.g., a binary sink.
+     * @param window
+     *            The maximum number of events to keep in memory.
+     * @see Persister#binarySink()
+     */
+    public Capture(final Codec<T> codec, final EventSink<ByteBuffer> sink,
+            final int window) {
+        this(new CodecEncoder<>(codec), sink, window);
+    }
+
+    /**
+     * Create new capture object that writes the events to the sink while
+     * capturing. Whenever the number of events kept in memory reaches the
+     * window size, they are serialized and written to the sink by a writer
+     * thread of the capture, so producers do not wait for the sink. When
+     * twice the window size is kept in memory, the producers wait until the
+     * writer catches up, which keeps the memory usage bounded regardless of
+     * the length of the capture. The events are written in order of their
+     * timestamp, also across windows: an event that is still being captured
+     * while a window is written holds back the later events until the next
+     * window, so the sink can be sorted.
+     *
+     * @param serializer
+     *            Function to serialize the event.
+     * @param sink
+     *            The sink to write the serialized events to.
+     * @param window
+     *            The maximum number of events to keep in memory.
+     * @param <R>
+     *            The type of the serialized events.
+     * @see Persister#sink()
+     */
+    public <R> Capture(final Function<T, R> serializer,
+            final EventSink<R> sink, final int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException(
+                    "Window should be at least one event.");
+        }
+        this.serializedEvents = new ListCaptureBuffer<>();
         this.currentState = State.CREATED;
-        this.serializer = serializer;
-        this.persister = persister;
+        this.output = new Output<>(serializer, sink);
+        this.window = window;
+        this.spilling = new AtomicBoolean();
+        this.writer = Optional.empty();
+        this.inFlight = new AtomicIntegerArray(2);
+        this.heldBack = new ArrayList<>();
+        this.clock = System::nanoTime;
+    }
+
+    /**
+     * Enable or disable the concurrent capture mode. In concurrent mode, events
+     * can be captured from multiple threads at the same time without any
+     * external synchronization. The captured events are still persisted in
+     * the order of their timestamps. By default, concurrent mode is disabled.
+     * A capture with a window always buffers its events concurrently, since
+     * its writer thread drains them.
+     *
+     * @param concurrent
+     *            true to enable concurrent mode, false to disable it.
+     * @throws IllegalStateException
+     *             When the capture has already been started.
+     */
+    public void setConcurrent(final boolean concurrent) {
+        if (this.currentState != State.CREATED) {
+            throw new IllegalStateException(Capture.ERROR_MESSAGE);
+        }
+        this.serializedEvents = concurrent ? new ConcurrentCaptureBuffer<>()
+                : new ListCaptureBuffer<>();
+    }
+
+    /**
+     * Replace the clock timestamping the events, e.g., to delay a producer
+     * after it took its timestamp in a test. Should be set before starting the
+     * capture.
+     *
+     * @param clock
+     *            The monotonic clock, in nanoseconds.
+     */
+    void setClock(final LongSupplier clock) {
+        this.clock = clock;
     }
 
     /**
      * Start capturing mode. Events will be logged relative to the timestamp of
-     * calling this method.
+     * calling this method, with nanosecond resolution, using a monotonic
+     * clock.
      */
     public void startCapture() {
         if (this.currentState != State.CREATED) {
             throw new IllegalStateException(Capture.ERROR_MESSAGE);
         }
+        if (this.window != Capture.UNBOUNDED_WINDOW) {
+            this.serializedEvents = new ConcurrentCaptureBuffer<>();
+            this.writer = Optional
+                    .of(Executors.newSingleThreadExecutor(r -> {
+                        final Thread thread = new Thread(r);
+                        thread.setDaemon(true);
+                        return thread;
+                    }));
+        }
+        // set before the state, which publishes it to concurrent producers
+        this.captureStart = this.clock.getAsLong();
         this.currentState = State.CAPTURING;
-        this.captureStart = System.currentTimeMillis();
     }
 
     /**
@@ -126,20 +318,107 @@ public final class Capture<T> {
         if (this.currentState != State.CAPTURING) {
             throw new IllegalStateException(Capture.ERROR_MESSAGE);
         }
-        final long relTimestamp = System.currentTimeMillis()
-                - this.captureStart;
-        this.serializedEvents.add(new Wrapper<T>(event, relTimestamp));
+        if (!this.writer.isPresent()) {
+            this.add(event);
+            return;
+        }
+        final int parity = this.enter();
+        try {
+            this.add(event);
+        } finally {
+            this.inFlight.decrementAndGet(parity);
+        }
+        this.requestWindow();
+        final long limit = (long) Capture.MAX_WINDOWS * this.window;
+        while (this.serializedEvents.size() - this.written >= limit
+                && this.currentState == State.CAPTURING) {
+            this.requestWindow();
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Timestamp an event and add it to the buffer.
+     *
+     * @param event
+     *            The event to add.
+     */
+    private void add(final T event) {
+        final long relTimestamp = this.clock.getAsLong() - this.captureStart;
+        this.serializedEvents.add(
+                new Wrapper<T>(event, relTimestamp, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Register a producer as in flight in the current epoch, before it takes
+     * its timestamp.
+     *
+     * @return The parity of the epoch the producer is registered in.
+     */
+    private int enter() {
+        while (true) {
+            final int parity = this.epoch & 1;
+            this.inFlight.incrementAndGet(parity);
+            if ((this.epoch & 1) == parity) {
+                return parity;
+            }
+            this.inFlight.decrementAndGet(parity);
+        }
+    }
+
+    /**
+     * Let the writer write a window when a full window is buffered, unless
+     * a window is being written.
+     */
+    private void requestWindow() {
+        if (this.serializedEvents.pending() >= this.window
+                && this.currentState == State.CAPTURING
+                && this.spilling.compareAndSet(false, true)) {
+            try {
+                this.writer.get().execute(() -> {
+                    try {
+                        this.writeWindow(false);
+                        this.output.sink.flush();
+                    } finally {
+                        this.spilling.set(false);
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                // the capture was stopped and saved in the meantime
+                this.spilling.set(false);
+            }
+        }
     }
 
     /**
      * Initiate the persisting of the captured events using the persister
-     * provided when creating the object.
+     * provided when creating the object. When a sink with a window is used,
+     * this writes the remaining events, finalizes the sink and ends the
+     * writer thread.
      */
     public void saveEvents() {
         if (this.currentState != State.STOPPED) {
             throw new IllegalStateException(Capture.ERROR_MESSAGE);
         }
-        this.persister.accept(this.eventsToJSON());
+        // wait for a concurrent producer that is still writing a window
+        while (!this.spilling.compareAndSet(false, true)) {
+            Thread.yield();
+        }
+        try {
+            if (this.window == Capture.UNBOUNDED_WINDOW) {
+                final List<Wrapper<T>> events = new ArrayList<>(
+                        this.getNumberOfCapturedEvents());
+                this.serializedEvents.forEach(events::add);
+                Collections.sort(events);
+                this.writeEvents(events);
+            } else {
+                this.writeWindow(true);
+                this.writer.ifPresent(ExecutorService::shutdown);
+            }
+            this.output.sink.close();
+        } finally {
+            this.spilling.set(false);
+        }
     }
 
     /**
@@ -148,21 +427,98 @@ public final class Capture<T> {
      * @return The number of captured events.
      */
     public int getNumberOfCapturedEvents() {
-        return this.serializedEvents.size();
+        return (int) this.serializedEvents.size();
+    }
+
+    /**
+     * Write a window: the buffered events that are older than the events any
+     * producer can still add. The cut is taken before the epoch changes, so
+     * a producer that timestamps an event before the cut has registered in
+     * the previous epoch, and is waited for. The later events are held back
+     * until the next window. Should only be called while holding the
+     * spilling flag.
+     *
+     * @param last
+     *            Whether this is the last window, which writes all events.
+     */
+    private void writeWindow(final boolean last) {
+        final long cut = last ? Long.MAX_VALUE
+                : this.clock.getAsLong() - this.captureStart;
+        final int previous = this.epoch & 1;
+        this.epoch++;
+        while (this.inFlight.get(previous) != 0) {
+            Thread.yield();
+        }
+        final List<Wrapper<T>> events = new ArrayList<>(this.heldBack);
+        this.heldBack.clear();
+        this.serializedEvents.drain(events::add);
+        // stable sort, nearly linear for the already ordered case
+        Collections.sort(events);
+        int end = events.size();
+        while (end > 0 && events.get(end - 1).getRelativeTimeNanos() >= cut) {
+            end--;
+        }
+        this.writeEvents(events.subList(0, end));
+        this.heldBack.addAll(events.subList(end, events.size()));
+        this.written += end;
     }
 
     /**
-     * Convert the events stored in the map to a single JSONObject for
-     * persisting.
+     * Serialize the events and write them to the sink.
+     *
+     * @param events
+     *            The events to write.
+     */
+    private void writeEvents(final List<Wrapper<T>> events) {
+        events.forEach(this.output::write);
+    }
+
+    /**
+     * Combination of a serializer and the sink for the serialized events.
+     *
+     * @author sjdpeste
      *
-     * @return The JSONObject containing all events and their relative
-     *         timestamps.
+     * @param <T>
+     *            The type of the captured events.
+     * @param <R>
+     *            The type of the serialized events.
      */
-    private JSONObject eventsToJSON() {
-        final JSONObject json = new JSONObject();
-        this.serializedEvents.forEach(wrap -> json.append(JSONNames.JSON_EVENTS,
-                wrap.toJSON(this.serializer)));
-        return json;
+    private static final class Output<T, R> {
+
+        /**
+         * Serializer for the events.
+         */
+        private final Function<T, R> serializer;
+
+        /**
+         * The sink for the serialized events.
+         */
+        private final EventSink<R> sink;
+
+        /**
+         * Create a new output.
+         *
+         * @param serializer
+         *            Serializer for the events.
+         * @param sink
+         *            The sink for the serialized events.
+         */
+        Output(final Function<T, R> serializer, final EventSink<R> sink) {
+            this.serializer = serializer;
+            this.sink = sink;
+        }
+
+        /**
+         * Serialize a wrapped event and write it to the sink.
+         *
+         * @param wrapper
+         *            The wrapped event.
+         */
+        void write(final Wrapper<T> wrapper) {
+            this.sink.write(new Wrapper<>(
+                    this.serializer.apply(wrapper.getEvent()),
+                    wrapper.getRelativeTimeNanos(), TimeUnit.NANOSECONDS));
+        }
     }
 
     /**
@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.function.Consumer;
+
+/**
+ * Storage for the wrapped events of a Capture that have not yet been
+ * persisted.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the captured events.
+ */
+interface CaptureBuffer<T> {
+
+    /**
+     * Add a wrapped event to the buffer.
+     *
+     * @param wrapper
+     *            The wrapped event to add.
+     */
+    void add(Wrapper<T> wrapper);
+
+    /**
+     * Get the total number of events that were added to this buffer.
+     *
+     * @return The number of added events.
+     */
+    long size();
+
+    /**
+     * Pass all events currently in the buffer to the given consumer, in the
+     * order in which they were added. The events remain in the buffer.
+     *
+     * @param consumer
+     *            The consumer for the buffered events.
+     */
+    void forEach(Consumer<Wrapper<T>> consumer);
+
+    /**
+     * Pass all events currently in the buffer to the given consumer, in the
+     * order in which they were added, and remove them from the buffer.
+     *
+     * @param consumer
+     *            The consumer for the buffered events.
+     */
+    void drain(Consumer<Wrapper<T>> consumer);
+
+    /**
+     * Get the number of events that are currently in the buffer, i.e., added
+     * but not yet drained.
+     *
+     * @return The number of buffered events.
+     */
+    long pending();
+
+}
@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+import org.json.JSONObject;
+
+/**
+ * Encodes events to and decodes events from bytes. Used with the binary
+ * format, a codec allows events to be captured and replayed without creating
+ * a JSONObject per event.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the events.
+ * @see BinaryFormat
+ */
+public interface Codec<T> {
+
+    /**
+     * Encode an event into the buffer, starting at its position.
+     *
+     * @param event
+     *            The event to encode.
+     * @param buffer
+     *            The buffer to encode the event into. Its position should be
+     *            advanced to the end of the encoded event.
+     * @throws BufferOverflowException
+     *             When the buffer is too small for the event. The event is
+     *             then encoded again into a larger buffer.
+     */
+    void encode(T event, ByteBuffer buffer);
+
+    /**
+     * Decode an event from the remaining bytes of the buffer.
+     *
+     * @param buffer
+     *            The buffer containing exactly one encoded event.
+     * @return The decoded event.
+     */
+    T decode(ByteBuffer buffer);
+
+    /**
+     * Create a codec that uses JSON serializers, with the same encoding as
+     * {@link BinaryFormat#encodeJSON(JSONObject)}.
+     *
+     * @param serializer
+     *            Function to serialize the event to a JSON object.
+     * @param deserializer
+     *            Function to deserialize the event from a JSON object.
+     * @param <T>
+     *            The type of the events.
+     * @return The codec.
+     */
+    static <T> Codec<T> ofJSON(final Function<T, JSONObject> serializer,
+            final Function<JSONObject, T> deserializer) {
+        return new Codec<T>() {
+
+            @Override
+            public void encode(final T event, final ByteBuffer buffer) {
+                buffer.put(
+                        BinaryFormat.encodeJSON(serializer.apply(event)));
+            }
+
+            @Override
+            public T decode(final ByteBuffer buffer) {
+                return deserializer.apply(BinaryFormat.decodeJSON(buffer));
+            }
+        };
+    }
+
+}
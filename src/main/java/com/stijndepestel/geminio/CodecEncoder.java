@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+/**
+ * Encodes events with a codec into a single, reused buffer. The returned
+ * buffer is only valid until the next event is encoded. Not thread-safe.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the events.
+ */
+final class CodecEncoder<T> implements Function<T, ByteBuffer> {
+
+    /**
+     * The initial size of the buffer.
+     */
+    static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * The codec.
+     */
+    private final Codec<T> codec;
+
+    /**
+     * The reused buffer.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Create a new CodecEncoder.
+     *
+     * @param codec
+     *            The codec to encode the events with.
+     */
+    CodecEncoder(final Codec<T> codec) {
+        this.codec = codec;
+        this.buffer = ByteBuffer.allocate(CodecEncoder.INITIAL_CAPACITY);
+    }
+
+    @Override
+    public ByteBuffer apply(final T event) {
+        while (true) {
+            this.buffer.clear();
+            try {
+                this.codec.encode(event, this.buffer);
+                this.buffer.flip();
+                return this.buffer;
+            } catch (final BufferOverflowException e) {
+                this.buffer = ByteBuffer.allocate(this.buffer.capacity() * 2);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free CaptureBuffer that accepts events from multiple producer threads
+ * and hands them to a single consumer.
+ *
+ * Producers claim a slot by incrementing a shared index and publish their
+ * event into a linked list of fixed size segments. No producer ever waits for
+ * another producer.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the captured events.
+ */
+final class ConcurrentCaptureBuffer<T> implements CaptureBuffer<T> {
+
+    /**
+     * Number of bits of an index that address a slot inside a segment.
+     */
+    private static final int SEGMENT_SHIFT = 10;
+
+    /**
+     * The number of slots in a segment.
+     */
+    static final int SEGMENT_SIZE = 1 << ConcurrentCaptureBuffer.SEGMENT_SHIFT;
+
+    /**
+     * Mask to get the slot inside a segment from an index.
+     */
+    private static final int SEGMENT_MASK = ConcurrentCaptureBuffer.SEGMENT_SIZE
+            - 1;
+
+    /**
+     * The index that will be claimed by the next producer.
+     */
+    private final AtomicLong producerIndex;
+
+    /**
+     * The most recently created segment.
+     */
+    private final AtomicReference<Segment<T>> tail;
+
+    /**
+     * The index of the next event to be read by the consumer.
+     */
+    private volatile long consumerIndex;
+
+    /**
+     * The segment containing the consumer index.
+     */
+    private Segment<T> consumerSegment;
+
+    /**
+     * Create a new, empty buffer.
+     */
+    ConcurrentCaptureBuffer() {
+        final Segment<T> first = new Segment<>(0, null);
+        this.producerIndex = new AtomicLong();
+        this.tail = new AtomicReference<>(first);
+        this.consumerSegment = first;
+    }
+
+    @Override
+    public void add(final Wrapper<T> wrapper) {
+        final long index = this.producerIndex.getAndIncrement();
+        final Segment<T> segment = this.segmentFor(
+                index >>> ConcurrentCaptureBuffer.SEGMENT_SHIFT);
+        segment.slots.lazySet(
+                (int) (index & ConcurrentCaptureBuffer.SEGMENT_MASK), wrapper);
+    }
+
+    @Override
+    public long size() {
+        return this.producerIndex.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only one thread may act as consumer. Events of which the slot was
+     * claimed, but which are not yet published by their producer, are waited
+     * for.
+     */
+    @Override
+    public void forEach(final Consumer<Wrapper<T>> consumer) {
+        final long limit = this.producerIndex.get();
+        Segment<T> segment = this.consumerSegment;
+        for (long index = this.consumerIndex; index < limit; index++) {
+            final long segmentId = index >>> ConcurrentCaptureBuffer.SEGMENT_SHIFT;
+            while (segment.id != segmentId) {
+                segment = ConcurrentCaptureBuffer.awaitNext(segment);
+            }
+            consumer.accept(ConcurrentCaptureBuffer.awaitSlot(segment,
+                    (int) (index & ConcurrentCaptureBuffer.SEGMENT_MASK)));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only one thread may act as consumer. Events of which the slot was
+     * claimed, but which are not yet published by their producer, are waited
+     * for.
+     */
+    @Override
+    public void drain(final Consumer<Wrapper<T>> consumer) {
+        final long limit = this.producerIndex.get();
+        Segment<T> segment = this.consumerSegment;
+        for (long index = this.consumerIndex; index < limit; index++) {
+            final long segmentId = index >>> ConcurrentCaptureBuffer.SEGMENT_SHIFT;
+            while (segment.id != segmentId) {
+                segment = ConcurrentCaptureBuffer.awaitNext(segment);
+                // All slots of the previous segment have been published and
+                // drained, so no producer will walk back to it anymore.
+                segment.previous = null;
+            }
+            final int slot = (int) (index
+                    & ConcurrentCaptureBuffer.SEGMENT_MASK);
+            consumer.accept(ConcurrentCaptureBuffer.awaitSlot(segment, slot));
+            segment.slots.lazySet(slot, null);
+        }
+        this.consumerSegment = segment;
+        this.consumerIndex = limit;
+    }
+
+    @Override
+    public long pending() {
+        return this.producerIndex.get() - this.consumerIndex;
+    }
+
+    /**
+     * Find the segment with the given id, creating it if it does not exist yet.
+     *
+     * @param segmentId
+     *            The id of the segment.
+     * @return The segment with the given id.
+     */
+    private Segment<T> segmentFor(final long segmentId) {
+        Segment<T> segment = this.tail.get();
+        // A producer that was preempted after claiming its index might find
+        // the tail already beyond its segment.
+        while (segment.id > segmentId) {
+            segment = segment.previous;
+        }
+        while (segment.id < segmentId) {
+            Segment<T> next = segment.next.get();
+            if (next == null) {
+                final Segment<T> created = new Segment<>(segment.id + 1,
+                        segment);
+                next = segment.next.compareAndSet(null, created) ? created
+                        : segment.next.get();
+            }
+            segment = next;
+        }
+        Segment<T> currentTail = this.tail.get();
+        while (currentTail.id < segment.id
+                && !this.tail.compareAndSet(currentTail, segment)) {
+            currentTail = this.tail.get();
+        }
+        return segment;
+    }
+
+    /**
+     * Wait until the successor of the given segment has been linked.
+     *
+     * @param segment
+     *            The segment.
+     * @return The next segment.
+     */
+    static <T> Segment<T> awaitNext(final Segment<T> segment) {
+        Segment<T> next = segment.next.get();
+        while (next == null) {
+            Thread.yield();
+            next = segment.next.get();
+        }
+        return next;
+    }
+
+    /**
+     * Wait until the producer that claimed the slot has published its event.
+     *
+     * @param segment
+     *            The segment of the slot.
+     * @param slot
+     *            The slot inside the segment.
+     * @return The published event.
+     */
+    static <T> Wrapper<T> awaitSlot(final Segment<T> segment, final int slot) {
+        Wrapper<T> wrapper = segment.slots.get(slot);
+        while (wrapper == null) {
+            Thread.yield();
+            wrapper = segment.slots.get(slot);
+        }
+        return wrapper;
+    }
+
+    /**
+     * Fixed size block of slots.
+     *
+     * @author sjdpeste
+     *
+     * @param <T>
+     *            The type of the captured events.
+     */
+    static final class Segment<T> {
+
+        /**
+         * Sequence number of this segment.
+         */
+        private final long id;
+
+        /**
+         * The slots of this segment.
+         */
+        private final AtomicReferenceArray<Wrapper<T>> slots;
+
+        /**
+         * The next segment, null while it has not been created.
+         */
+        private final AtomicReference<Segment<T>> next;
+
+        /**
+         * The previous segment.
+         */
+        private volatile Segment<T> previous;
+
+        /**
+         * Create a new segment.
+         *
+         * @param id
+         *            Sequence number of the segment.
+         * @param previous
+         *            The previous segment.
+         */
+        Segment(final long id, final Segment<T> previous) {
+            this.id = id;
+            this.previous = previous;
+            this.slots = new AtomicReferenceArray<>(
+                    ConcurrentCaptureBuffer.SEGMENT_SIZE);
+            this.next = new AtomicReference<>();
+        }
+    }
+
+}
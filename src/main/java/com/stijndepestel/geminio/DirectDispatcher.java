@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.function.Consumer;
+
+/**
+ * Dispatcher that calls the event catcher directly, on the replay thread.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the replayed events.
+ */
+final class DirectDispatcher<T> implements Dispatcher<T> {
+
+    /**
+     * Catcher of the replayed events.
+     */
+    private final Consumer<T> eventCatcher;
+
+    /**
+     * Create a new dispatcher.
+     *
+     * @param eventCatcher
+     *            Catcher of the replayed events.
+     */
+    DirectDispatcher(final Consumer<T> eventCatcher) {
+        this.eventCatcher = eventCatcher;
+    }
+
+    @Override
+    public boolean dispatch(final T event) {
+        this.eventCatcher.accept(event);
+        return true;
+    }
+
+    @Override
+    public long getDropped() {
+        return 0;
+    }
+
+    @Override
+    public long getLate() {
+        return 0;
+    }
+
+    @Override
+    public void close(final boolean discard, final Runnable closed) {
+        // every event has already been caught
+        closed.run();
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+/**
+ * Definitions of what a Replay with asynchronous dispatch does when the event
+ * catcher falls behind and its queue is full.
+ *
+ * @author sjdpeste
+ *
+ * @see Replay#setAsyncDispatch(java.util.concurrent.Executor, int,
+ *      DispatchPolicy)
+ */
+public enum DispatchPolicy {
+    /**
+     * Wait until the catcher has made room in the queue. No events are lost,
+     * but the replay is held back by the catcher and the following events
+     * drift.
+     */
+    BLOCK,
+    /**
+     * Drop the event. The replay keeps its schedule, the dropped events are
+     * counted in {@link ReplayEvent#getDroppedEvents()}.
+     */
+    DROP,
+    /**
+     * Queue the event beyond the capacity of the queue. The replay keeps its
+     * schedule and no events are lost, but the event will reach the catcher
+     * late. These events are counted in {@link ReplayEvent#getLateEvents()}.
+     */
+    LATE
+}
@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the replayed events to the event catcher.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the replayed events.
+ */
+interface Dispatcher<T> {
+
+    /**
+     * Hand an event to the event catcher. Called by the replay when the event
+     * is due.
+     *
+     * @param event
+     *            The event.
+     * @return true if the event was accepted, false if it was dropped.
+     */
+    boolean dispatch(T event);
+
+    /**
+     * Get the number of events that were dropped.
+     *
+     * @return The number of dropped events.
+     */
+    long getDropped();
+
+    /**
+     * Get the number of events that were accepted, but will reach the event
+     * catcher late.
+     *
+     * @return The number of late events.
+     */
+    long getLate();
+
+    /**
+     * Stop dispatching, without waiting. Once the accepted events have
+     * reached the event catcher, or have been discarded, the given callback
+     * is run, possibly on another thread.
+     *
+     * @param discard
+     *            Whether or not to discard the events that have not reached
+     *            the event catcher yet.
+     * @param closed
+     *            Run once when the dispatcher is closed.
+     */
+    void close(boolean discard, Runnable closed);
+
+    /**
+     * Create a callback that runs the given callback once it has been run a
+     * number of times, e.g., when all dispatchers of a group are closed.
+     *
+     * @param count
+     *            The number of times the callback should be run first.
+     * @param closed
+     *            The callback to run at the last time.
+     * @return The created callback.
+     */
+    static Runnable countDown(final int count, final Runnable closed) {
+        final AtomicInteger remaining = new AtomicInteger(count);
+        return () -> {
+            if (remaining.decrementAndGet() == 0) {
+                closed.run();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+/**
+ * Receives the captured events one by one, e.g., to write them to a file
+ * while the capture is still running.
+ *
+ * @author sjdpeste
+ *
+ * @param <R>
+ *            The type of the serialized events.
+ */
+public interface EventSink<R> {
+
+    /**
+     * Write a single serialized event and its relative timestamp. The event
+     * can be reused by the caller afterwards, so it should not be retained.
+     *
+     * @param event
+     *            The wrapped, serialized event.
+     */
+    void write(Wrapper<R> event);
+
+    /**
+     * Flush the events written so far to the underlying storage.
+     */
+    void flush();
+
+    /**
+     * Finalize the persisted events and release the underlying storage. No
+     * more events can be written afterwards.
+     */
+    void close();
+
+}
@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Supplies previously captured events one by one, e.g., while reading them
+ * from a file.
+ *
+ * @author sjdpeste
+ *
+ * @param <R>
+ *            The type of the serialized events.
+ */
+public interface EventSource<R> extends Iterator<Wrapper<R>>, AutoCloseable {
+
+    /**
+     * Release the underlying storage.
+     */
+    @Override
+    void close();
+
+    /**
+     * Only supply the events whose serialized form matches the predicate, e.g.,
+     * the events of a single device. The predicate is evaluated before the
+     * events are deserialized, so the other events are never deserialized.
+     *
+     * @param predicate
+     *            The predicate the serialized events should match.
+     * @return A source supplying the matching events. Closing it closes this
+     *         source.
+     */
+    default EventSource<R> filter(final Predicate<? super R> predicate) {
+        return new FilteredSource<>(this,
+                wrapper -> predicate.test(wrapper.getEvent()));
+    }
+
+    /**
+     * Only supply the events in a range of relative time. Sources that can
+     * skip events without reading them completely do so, by default the
+     * events outside the range are read and then dropped before they are
+     * deserialized. Unless a source knows that its events are in order of
+     * relative time, all events are read, since an event after the end of
+     * the range can be followed by events in the range.
+     *
+     * @param from
+     *            The start of the range, inclusive.
+     * @param to
+     *            The end of the range, exclusive.
+     * @param unit
+     *            The unit of the range.
+     * @return A source supplying the events in the range, which may be this
+     *         source. Closing it closes this source.
+     */
+    default EventSource<R> range(final long from, final long to,
+            final TimeUnit unit) {
+        final long fromNanos = unit.toNanos(from);
+        final long toNanos = unit.toNanos(to);
+        return new FilteredSource<>(this,
+                wrapper -> wrapper.getRelativeTimeNanos() >= fromNanos
+                        && wrapper.getRelativeTimeNanos() < toNanos);
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.List;
+
+/**
+ * Dispatcher that broadcasts every event to several dispatchers, one for each
+ * event catcher. With queued dispatchers, every catcher has its own queue, so
+ * a slow catcher does not hold back the others.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the replayed events.
+ */
+final class FanOutDispatcher<T> implements Dispatcher<T> {
+
+    /**
+     * The dispatchers of the event catchers.
+     */
+    private final List<Dispatcher<T>> dispatchers;
+
+    /**
+     * Create a new dispatcher.
+     *
+     * @param dispatchers
+     *            The dispatchers of the event catchers.
+     */
+    FanOutDispatcher(final List<Dispatcher<T>> dispatchers) {
+        this.dispatchers = dispatchers;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return true if the event was accepted by at least one of the
+     *         dispatchers.
+     */
+    @Override
+    public boolean dispatch(final T event) {
+        boolean accepted = false;
+        for (final Dispatcher<T> dispatcher : this.dispatchers) {
+            accepted |= dispatcher.dispatch(event);
+        }
+        return accepted;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return The number of events dropped by all dispatchers together.
+     */
+    @Override
+    public long getDropped() {
+        return this.dispatchers.stream().mapToLong(Dispatcher::getDropped)
+                .sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return The number of late events of all dispatchers together.
+     */
+    @Override
+    public long getLate() {
+        return this.dispatchers.stream().mapToLong(Dispatcher::getLate).sum();
+    }
+
+    @Override
+    public void close(final boolean discard, final Runnable closed) {
+        final Runnable allClosed = Dispatcher
+                .countDown(this.dispatchers.size(), closed);
+        this.dispatchers
+                .forEach(dispatcher -> dispatcher.close(discard, allClosed));
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * EventSource that only supplies the events of another source that match a
+ * predicate.
+ *
+ * @author sjdpeste
+ *
+ * @param <R>
+ *            The type of the serialized events.
+ */
+final class FilteredSource<R> implements EventSource<R> {
+
+    /**
+     * The source to filter.
+     */
+    private final EventSource<R> source;
+
+    /**
+     * The predicate the supplied events match.
+     */
+    private final Predicate<? super Wrapper<R>> predicate;
+
+    /**
+     * The next matching event, null if it has not been found yet.
+     */
+    private Wrapper<R> next;
+
+    /**
+     * Create a new FilteredSource.
+     *
+     * @param source
+     *            The source to filter. It is closed when this source is
+     *            closed.
+     * @param predicate
+     *            The predicate the supplied events match.
+     */
+    FilteredSource(final EventSource<R> source,
+            final Predicate<? super Wrapper<R>> predicate) {
+        this.source = source;
+        this.predicate = predicate;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (this.next == null && this.source.hasNext()) {
+            final Wrapper<R> candidate = this.source.next();
+            if (this.predicate.test(candidate)) {
+                this.next = candidate;
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Wrapper<R> next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Wrapper<R> result = this.next;
+        this.next = null;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        this.source.close();
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.json.JSONObject;
+import org.slf4j.LoggerFactory;
+
+/**
+ * EventSink that streams the events as JSON to a writer, one event at a time,
+ * without ever holding more than a single event in memory.
+ * The written document has the same structure as the one created by the
+ * Capture for a Consumer of JSONObject, i.e., the events are contained in an
+ * array under the {@link JSONNames#JSON_EVENTS} key.
+ *
+ * @author sjdpeste
+ *
+ */
+public final class JSONEventSink implements EventSink<JSONObject> {
+
+    /**
+     * The start of the document, up to the first event.
+     */
+    private static final String DOCUMENT_START = "{"
+            + JSONObject.quote(JSONNames.JSON_EVENTS) + ":[";
+
+    /**
+     * The start of a wrapped event, up to its relative time.
+     */
+    private static final String REL_TIME_KEY = "{"
+            + JSONObject.quote(JSONNames.JSON_REL_TIME) + ":";
+
+    /**
+     * The part of a wrapped event between the relative time in milliseconds
+     * and the one in nanoseconds.
+     */
+    private static final String REL_TIME_NANOS_KEY = ","
+            + JSONObject.quote(JSONNames.JSON_REL_TIME_NANOS) + ":";
+
+    /**
+     * The part of a wrapped event between the relative time and the event.
+     */
+    private static final String EVENT_KEY = ","
+            + JSONObject.quote(JSONNames.JSON_EVENT) + ":";
+
+    /**
+     * The writer to write the JSON to.
+     */
+    private final Writer writer;
+
+    /**
+     * Number of events written so far.
+     */
+    private long eventsWritten;
+
+    /**
+     * Create a new JSONEventSink.
+     *
+     * @param writer
+     *            The writer to write the JSON to. It is closed when the sink
+     *            is closed.
+     */
+    public JSONEventSink(final Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(final Wrapper<JSONObject> event) {
+        try {
+            this.writer.write(this.eventsWritten == 0
+                    ? JSONEventSink.DOCUMENT_START
+                    : ",");
+            // same structure as Wrapper.toJSON, without the intermediate
+            // JSONObject
+            this.writer.write(JSONEventSink.REL_TIME_KEY);
+            this.writer.write(Long.toString(event.getRelativeTimestamp()));
+            this.writer.write(JSONEventSink.REL_TIME_NANOS_KEY);
+            this.writer.write(Long.toString(event.getRelativeTimeNanos()));
+            this.writer.write(JSONEventSink.EVENT_KEY);
+            event.getEvent().write(this.writer);
+            this.writer.write('}');
+            this.eventsWritten++;
+        } catch (final IOException e) {
+            JSONEventSink.logError(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            this.writer.flush();
+        } catch (final IOException e) {
+            JSONEventSink.logError(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (this.eventsWritten == 0) {
+                this.writer.write(JSONEventSink.DOCUMENT_START);
+            }
+            this.writer.write("]}");
+            this.writer.close();
+        } catch (final IOException e) {
+            JSONEventSink.logError(e);
+        }
+    }
+
+    /**
+     * Log an IO exception that occurred while writing.
+     *
+     * @param e
+     *            The exception.
+     */
+    private static void logError(final IOException e) {
+        LoggerFactory.getLogger(JSONEventSink.class.getName())
+                .error("IO Exception during persisting.", e);
+    }
+
+}
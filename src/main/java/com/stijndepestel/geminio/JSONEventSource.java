@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.slf4j.LoggerFactory;
+
+/**
+ * EventSource that parses the JSON written by a Capture incrementally from a
+ * reader. Only a single event is kept in memory at a time.
+ *
+ * @author sjdpeste
+ *
+ */
+public final class JSONEventSource implements EventSource<JSONObject> {
+
+    /**
+     * The reader to read the JSON from.
+     */
+    private final Reader reader;
+
+    /**
+     * The tokener that parses the JSON.
+     */
+    private final JSONTokener tokener;
+
+    /**
+     * Flag indicating that the start of the array of events has been looked
+     * up.
+     */
+    private boolean started;
+
+    /**
+     * Flag indicating whether or not more events are available.
+     */
+    private boolean hasMore;
+
+    /**
+     * Create a new JSONEventSource.
+     *
+     * @param reader
+     *            The reader to read the JSON from. It is closed when the source
+     *            is closed.
+     */
+    public JSONEventSource(final Reader reader) {
+        this.reader = reader;
+        this.tokener = new JSONTokener(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!this.started) {
+            this.hasMore = this.findEvents();
+            this.started = true;
+        }
+        return this.hasMore;
+    }
+
+    @Override
+    public Wrapper<JSONObject> next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Object value = this.tokener.nextValue();
+        if (!(value instanceof JSONObject)) {
+            throw this.tokener.syntaxError("Expected a wrapped event");
+        }
+        switch (this.tokener.nextClean()) {
+        case ',':
+            break;
+        case ']':
+            this.hasMore = false;
+            break;
+        default:
+            throw this.tokener.syntaxError("Expected a ',' or ']'");
+        }
+        final JSONObject json = (JSONObject) value;
+        return new Wrapper<>(json.getJSONObject(JSONNames.JSON_EVENT),
+                Wrapper.relativeTimeNanos(json), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.reader.close();
+        } catch (final IOException e) {
+            LoggerFactory.getLogger(JSONEventSource.class.getName())
+                    .error("IO Exception while closing.", e);
+        }
+    }
+
+    /**
+     * Move the tokener to the first event of the array of events, skipping the
+     * values of all other keys.
+     *
+     * @return true if the array contains at least one event, false otherwise.
+     */
+    private boolean findEvents() {
+        if (this.tokener.nextClean() != '{') {
+            throw this.tokener
+                    .syntaxError("A JSONObject text must begin with '{'");
+        }
+        while (true) {
+            if (this.tokener.nextClean() == '}') {
+                // no events in the document
+                return false;
+            }
+            this.tokener.back();
+            final String key = this.tokener.nextValue().toString();
+            if (this.tokener.nextClean() != ':') {
+                throw this.tokener.syntaxError("Expected a ':' after a key");
+            }
+            if (JSONNames.JSON_EVENTS.equals(key)) {
+                if (this.tokener.nextClean() != '[') {
+                    throw this.tokener.syntaxError(
+                            "A JSONArray text must start with '['");
+                }
+                if (this.tokener.nextClean() == ']') {
+                    return false;
+                }
+                this.tokener.back();
+                return true;
+            }
+            // skip the value of any other key
+            this.tokener.nextValue();
+            switch (this.tokener.nextClean()) {
+            case ',':
+                break;
+            case '}':
+                return false;
+            default:
+                throw this.tokener.syntaxError("Expected a ',' or '}'");
+            }
+        }
+    }
+
+}
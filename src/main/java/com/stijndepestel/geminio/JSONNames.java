@@ -43,6 +43,10 @@ public final class JSONNames {
      * JSON key for the relative time for an event.
      */
     public static final String JSON_REL_TIME = "relative_time";
+    /**
+     * JSON key for the relative time for an event, in nanoseconds.
+     */
+    public static final String JSON_REL_TIME_NANOS = "relative_time_ns";
 
     /**
      * Default private constructor.
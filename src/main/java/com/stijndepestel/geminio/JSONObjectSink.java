@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.json.JSONObject;
+
+/**
+ * EventSink that collects all events in a single JSONObject and passes it to
+ * a consumer when the sink is closed.
+ *
+ * @author sjdpeste
+ *
+ */
+final class JSONObjectSink implements EventSink<JSONObject> {
+
+    /**
+     * Consumer to persist the collected events.
+     */
+    private final Consumer<JSONObject> persister;
+
+    /**
+     * The JSONObject collecting the events.
+     */
+    private JSONObject json;
+
+    /**
+     * Create a new JSONObjectSink.
+     *
+     * @param persister
+     *            The consumer of the JSONObject containing all events.
+     */
+    JSONObjectSink(final Consumer<JSONObject> persister) {
+        this.persister = persister;
+        this.json = new JSONObject();
+    }
+
+    @Override
+    public void write(final Wrapper<JSONObject> event) {
+        this.json.append(JSONNames.JSON_EVENTS,
+                event.toJSON(Function.identity()));
+    }
+
+    @Override
+    public void flush() {
+        // Nothing is persisted before closing.
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The sink can be reused afterwards, starting with an empty JSONObject.
+     */
+    @Override
+    public void close() {
+        this.persister.accept(this.json);
+        this.json = new JSONObject();
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * EventSource iterating over the events of a single JSONObject containing all
+ * previously captured events.
+ *
+ * @author sjdpeste
+ *
+ */
+final class JSONObjectSource implements EventSource<JSONObject> {
+
+    /**
+     * The array of wrapped events.
+     */
+    private final JSONArray events;
+
+    /**
+     * The index of the next event.
+     */
+    private int index;
+
+    /**
+     * Create a new JSONObjectSource.
+     *
+     * @param json
+     *            The JSONObject containing all events.
+     */
+    JSONObjectSource(final JSONObject json) {
+        this.events = json.getJSONArray(JSONNames.JSON_EVENTS);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.index < this.events.length();
+    }
+
+    @Override
+    public Wrapper<JSONObject> next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final JSONObject json = this.events.getJSONObject(this.index++);
+        return new Wrapper<>(json.getJSONObject(JSONNames.JSON_EVENT),
+                Wrapper.relativeTimeNanos(json), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release.
+    }
+
+}
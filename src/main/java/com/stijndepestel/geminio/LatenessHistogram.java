@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of the lateness of replayed events, in nanoseconds. Values are
+ * counted in buckets whose width grows with the magnitude of the value, so
+ * recording is a constant time array increment and the percentiles have a
+ * relative error of at most 1/{@link #SUB_BUCKETS}. Not thread safe, the
+ * histogram is only used by the replay thread.
+ *
+ * @author sjdpeste
+ *
+ */
+final class LatenessHistogram {
+
+    /**
+     * Number of bits of a value that are kept exactly.
+     */
+    static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * Number of buckets per power of two.
+     */
+    static final int SUB_BUCKETS = 1 << LatenessHistogram.SUB_BUCKET_BITS;
+
+    /**
+     * The number of values in every bucket.
+     */
+    private final long[] counts;
+
+    /**
+     * The number of recorded values.
+     */
+    private long count;
+
+    /**
+     * The largest recorded value.
+     */
+    private long max;
+
+    /**
+     * Create a new, empty histogram.
+     */
+    LatenessHistogram() {
+        this.counts = new long[(Long.SIZE - LatenessHistogram.SUB_BUCKET_BITS)
+                * LatenessHistogram.SUB_BUCKETS];
+    }
+
+    /**
+     * Record a value. Negative values, i.e., events that were early, are
+     * recorded as zero.
+     *
+     * @param value
+     *            The lateness in nanoseconds.
+     */
+    void record(final long value) {
+        final long lateness = Math.max(0, value);
+        this.counts[LatenessHistogram.indexOf(lateness)]++;
+        this.count++;
+        if (lateness > this.max) {
+            this.max = lateness;
+        }
+    }
+
+    /**
+     * Get the value below which the given percentage of the recorded values
+     * fall.
+     *
+     * @param percentile
+     *            The percentile, between 0 and 100.
+     * @return The highest value in the bucket of the percentile, or 0 if no
+     *         values were recorded.
+     */
+    long getPercentile(final double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1,
+                (long) Math.ceil(percentile / 100 * this.count));
+        long seen = 0;
+        for (int index = 0; index < this.counts.length; index++) {
+            seen += this.counts[index];
+            if (seen >= rank) {
+                return Math.min(LatenessHistogram.highestValueOf(index),
+                        this.max);
+            }
+        }
+        return this.max;
+    }
+
+    /**
+     * Get the largest recorded value.
+     *
+     * @return The largest value, or 0 if no values were recorded.
+     */
+    long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Remove all recorded values.
+     */
+    void clear() {
+        Arrays.fill(this.counts, 0);
+        this.count = 0;
+        this.max = 0;
+    }
+
+    /**
+     * Get the bucket of a value. The highest bits of the value, up to its
+     * most significant bit, select the bucket.
+     *
+     * @param value
+     *            A non negative value.
+     * @return The index of the bucket.
+     */
+    private static int indexOf(final long value) {
+        final int shift = Math.max(0, Long.SIZE - 1
+                - Long.numberOfLeadingZeros(value)
+                - LatenessHistogram.SUB_BUCKET_BITS);
+        return (shift << LatenessHistogram.SUB_BUCKET_BITS)
+                + (int) (value >>> shift);
+    }
+
+    /**
+     * Get the highest value that is counted in a bucket.
+     *
+     * @param index
+     *            The index of the bucket.
+     * @return The highest value of the bucket.
+     */
+    private static long highestValueOf(final int index) {
+        final int shift = Math.max(0,
+                (index >> LatenessHistogram.SUB_BUCKET_BITS) - 1);
+        final long mantissa = index
+                - (shift << LatenessHistogram.SUB_BUCKET_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * CaptureBuffer backed by a plain list. Not thread-safe.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the captured events.
+ */
+final class ListCaptureBuffer<T> implements CaptureBuffer<T> {
+
+    /**
+     * List containing the buffered events.
+     */
+    private final List<Wrapper<T>> events;
+
+    /**
+     * The number of events that were drained from the buffer.
+     */
+    private long drained;
+
+    /**
+     * Create a new, empty buffer.
+     */
+    ListCaptureBuffer() {
+        this.events = new ArrayList<>();
+    }
+
+    @Override
+    public void add(final Wrapper<T> wrapper) {
+        this.events.add(wrapper);
+    }
+
+    @Override
+    public long size() {
+        return this.drained + this.events.size();
+    }
+
+    @Override
+    public void forEach(final Consumer<Wrapper<T>> consumer) {
+        this.events.forEach(consumer);
+    }
+
+    @Override
+    public void drain(final Consumer<Wrapper<T>> consumer) {
+        this.events.forEach(consumer);
+        this.drained += this.events.size();
+        this.events.clear();
+    }
+
+    @Override
+    public long pending() {
+        return this.events.size();
+    }
+
+}
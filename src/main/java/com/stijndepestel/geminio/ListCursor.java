@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.List;
+
+/**
+ * ReplayCursor over events that have been loaded in a sorted list.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the replayed events.
+ */
+final class ListCursor<T> implements ReplayCursor<T> {
+
+    /**
+     * The sorted events.
+     */
+    private final List<Wrapper<T>> events;
+
+    /**
+     * Index of the next event.
+     */
+    private int index;
+
+    /**
+     * Create a new cursor at the first event.
+     *
+     * @param events
+     *            The sorted events.
+     */
+    ListCursor(final List<Wrapper<T>> events) {
+        this.events = events;
+    }
+
+    @Override
+    public Wrapper<T> peek() {
+        return this.index < this.events.size() ? this.events.get(this.index)
+                : null;
+    }
+
+    @Override
+    public void advance() {
+        this.index++;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Binary search in the sorted events, so both forward and backward.
+     */
+    @Override
+    public boolean seek(final long relativeTimeNanos) {
+        int low = 0;
+        int high = this.events.size();
+        // find the first event that is not before the time
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (this.events.get(middle)
+                    .getRelativeTimeNanos() < relativeTimeNanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        this.index = low;
+        return true;
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return this.index >= this.events.size();
+    }
+
+    @Override
+    public boolean hasFailed() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release.
+    }
+
+}
@@ -23,19 +23,30 @@
  */
 package com.stijndepestel.geminio;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
-import java.util.Scanner;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.slf4j.LoggerFactory;
 
 /**
- * Provides functionality for persisting a JSON object.
+ * Provides functionality for persisting a JSON object, or the events of a
+ * capture in JSON or binary format.
  *
  * @author sjdpeste
  *
@@ -103,8 +114,10 @@ public final class Persister {
             throw new IllegalStateException("Output stream not present.");
         }
         try (final BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(this.outputStream.get(), "UTF8"))) {
-            writer.append(json.toString());
+                new OutputStreamWriter(this.outputStream.get(),
+                        StandardCharsets.UTF_8))) {
+            // streams the document instead of building one large string
+            json.write(writer);
             writer.flush();
         } catch (final IOException e) {
             LoggerFactory.getLogger(Persister.class.getName())
@@ -112,6 +125,78 @@ public final class Persister {
         }
     }
 
+    /**
+     * Create a sink that writes the events one by one to the output stream,
+     * see {@link Capture#Capture(Function, EventSink)} and
+     * {@link Capture#Capture(Function, EventSink, int)}.
+     *
+     * @return The sink writing to the output stream.
+     */
+    public EventSink<JSONObject> sink() {
+        if (!this.outputStream.isPresent()) {
+            throw new IllegalStateException("Output stream not present.");
+        }
+        return new JSONEventSink(new BufferedWriter(new OutputStreamWriter(
+                this.outputStream.get(), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Create a source that parses the events one by one from the input stream,
+     * see {@link Replay#Replay(Supplier, Function, Consumer)}.
+     *
+     * @return The source reading from the input stream.
+     */
+    public EventSource<JSONObject> source() {
+        if (!this.inputStream.isPresent()) {
+            throw new IllegalStateException("Input stream not present.");
+        }
+        return new JSONEventSource(new BufferedReader(new InputStreamReader(
+                this.inputStream.get(), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Create a sink that writes the events to the output stream in the compact
+     * binary format.
+     *
+     * @return The sink writing to the output stream.
+     * @see BinaryFormat
+     */
+    public EventSink<ByteBuffer> binarySink() {
+        return this.binarySink(false);
+    }
+
+    /**
+     * Create a sink that writes the events to the output stream in the compact
+     * binary format, recording whether they are in order of relative time.
+     *
+     * @param sorted
+     *            Whether the events are written in order of relative time.
+     * @return The sink writing to the output stream.
+     * @see BinaryEventSink#BinaryEventSink(java.io.OutputStream, boolean)
+     */
+    public EventSink<ByteBuffer> binarySink(final boolean sorted) {
+        if (!this.outputStream.isPresent()) {
+            throw new IllegalStateException("Output stream not present.");
+        }
+        return new BinaryEventSink(
+                new BufferedOutputStream(this.outputStream.get()), sorted);
+    }
+
+    /**
+     * Create a source that reads events in the compact binary format from the
+     * input stream.
+     *
+     * @return The source reading from the input stream.
+     * @see BinaryFormat
+     */
+    public EventSource<ByteBuffer> binarySource() {
+        if (!this.inputStream.isPresent()) {
+            throw new IllegalStateException("Input stream not present.");
+        }
+        return new BinaryEventSource(
+                new BufferedInputStream(this.inputStream.get()));
+    }
+
     /**
      * The function that can act as a Supplier to Replay.
      *
@@ -121,13 +206,18 @@ public final class Persister {
         if (!this.inputStream.isPresent()) {
             throw new IllegalStateException("Input stream not present.");
         }
-        try (final Scanner scanner = new Scanner(this.inputStream.get(),
-                "UTF8")) {
-            final StringBuilder sb = new StringBuilder(1024);
-            while (scanner.hasNextLine()) {
-                sb.append(scanner.nextLine());
+        final Reader reader = new BufferedReader(new InputStreamReader(
+                this.inputStream.get(), StandardCharsets.UTF_8));
+        try {
+            // parses directly from the stream instead of concatenating lines
+            return new JSONObject(new JSONTokener(reader));
+        } finally {
+            try {
+                reader.close();
+            } catch (final IOException e) {
+                LoggerFactory.getLogger(Persister.class.getName())
+                        .error("IO Exception while closing.", e);
             }
-            return new JSONObject(sb.toString());
         }
     }
 }
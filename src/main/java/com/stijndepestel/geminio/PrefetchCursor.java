@@ -0,0 +1,213 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * ReplayCursor that reads and deserializes the events on a separate decoder
+ * thread, ahead of the replay, into a bounded queue.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the replayed events.
+ */
+final class PrefetchCursor<T> implements ReplayCursor<T> {
+
+    /**
+     * Marker put in the queue after the last event.
+     */
+    private final Wrapper<T> end;
+
+    /**
+     * The decoded events that have not been replayed yet.
+     */
+    private final BlockingQueue<Wrapper<T>> queue;
+
+    /**
+     * The thread reading and deserializing the events.
+     */
+    private final Thread decoder;
+
+    /**
+     * Events before this relative time, in nanoseconds, are skipped.
+     */
+    private long skipUntil;
+
+    /**
+     * The relative time of the last event that was moved past, in
+     * nanoseconds.
+     */
+    private long position;
+
+    /**
+     * Flag indicating that the decoder thread failed.
+     */
+    private volatile boolean failed;
+
+    /**
+     * Create a new cursor and start decoding.
+     *
+     * @param input
+     *            The input to decode the events from.
+     * @param lookahead
+     *            The maximum number of decoded events that are not replayed
+     *            yet.
+     * @param pool
+     *            The pool to deserialize the events on in parallel, if
+     *            present.
+     */
+    PrefetchCursor(final ReplayInput<?, T> input, final int lookahead,
+            final Optional<ForkJoinPool> pool) {
+        this.end = new Wrapper<>(null, 0);
+        this.skipUntil = Long.MIN_VALUE;
+        this.position = Long.MIN_VALUE;
+        this.queue = new ArrayBlockingQueue<>(lookahead);
+        this.decoder = new Thread(() -> this.decode(input, pool),
+                "geminio-prefetch");
+        this.decoder.setDaemon(true);
+        this.decoder.start();
+    }
+
+    @Override
+    public Wrapper<T> peek() {
+        final Wrapper<T> next = this.skip();
+        return next == this.end ? null : next;
+    }
+
+    @Override
+    public void advance() {
+        this.position = this.queue.poll().getRelativeTimeNanos();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The events are decoded in order, so this cursor can only move forward.
+     * When seeking back to an event that was already moved past, the cursor
+     * stays at the current event.
+     */
+    @Override
+    public boolean seek(final long relativeTimeNanos) {
+        if (relativeTimeNanos <= this.position) {
+            return false;
+        }
+        this.skipUntil = relativeTimeNanos;
+        return true;
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return this.skip() == this.end;
+    }
+
+    @Override
+    public boolean hasFailed() {
+        return this.failed;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Stops the decoder thread if it is still running.
+     */
+    @Override
+    public void close() {
+        this.decoder.interrupt();
+    }
+
+    /**
+     * Remove the decoded events that are skipped by a seek from the queue, and
+     * move past them, so that a later seek back to them is refused.
+     *
+     * @return The next decoded event, or null if it has not been decoded yet.
+     */
+    private Wrapper<T> skip() {
+        Wrapper<T> next = this.queue.peek();
+        while (next != null && next != this.end
+                && next.getRelativeTimeNanos() < this.skipUntil) {
+            this.advance();
+            next = this.queue.peek();
+        }
+        return next;
+    }
+
+    /**
+     * Decode all events into the queue, followed by the end marker.
+     *
+     * @param input
+     *            The input to decode the events from.
+     * @param pool
+     *            The pool to deserialize the events on in parallel, if
+     *            present.
+     */
+    private void decode(final ReplayInput<?, T> input,
+            final Optional<ForkJoinPool> pool) {
+        final Consumer<Wrapper<T>> producer = this::put;
+        try {
+            if (pool.isPresent()) {
+                input.forEach(producer, pool.get());
+            } else {
+                input.forEach(producer);
+            }
+        } catch (final CancellationException e) {
+            // the replay was stopped
+            return;
+        } catch (final RuntimeException e) {
+            LoggerFactory.getLogger(PrefetchCursor.class.getName())
+                    .error("Exception while decoding events.", e);
+            this.failed = true;
+        }
+        try {
+            this.queue.put(this.end);
+        } catch (final InterruptedException e) {
+            // the replay was stopped
+        }
+    }
+
+    /**
+     * Put a decoded event in the queue, waiting for space if necessary.
+     *
+     * @param wrapper
+     *            The decoded event.
+     * @throws CancellationException
+     *             When interrupted while waiting for space.
+     */
+    private void put(final Wrapper<T> wrapper) {
+        try {
+            this.queue.put(wrapper);
+        } catch (final InterruptedException e) {
+            throw new CancellationException();
+        }
+    }
+
+}
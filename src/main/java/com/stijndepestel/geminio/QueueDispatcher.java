@@ -0,0 +1,215 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatcher that hands the events to the event catcher through a queue, on
+ * an executor. At most one task drains the queue at any time, so the catcher
+ * receives the events one by one, in order. The task only runs while there
+ * are events in the queue, so many dispatchers can share an executor.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the replayed events.
+ */
+final class QueueDispatcher<T> implements Dispatcher<T> {
+
+    /**
+     * Catcher of the replayed events.
+     */
+    private final Consumer<T> eventCatcher;
+
+    /**
+     * Executor to run the event catcher on.
+     */
+    private final Executor executor;
+
+    /**
+     * The number of events the queue holds before the policy applies.
+     */
+    private final int capacity;
+
+    /**
+     * What to do when the queue is full.
+     */
+    private final DispatchPolicy policy;
+
+    /**
+     * The events that have not reached the event catcher yet.
+     */
+    private final BlockingQueue<T> queue;
+
+    /**
+     * Flag indicating that a task is draining the queue.
+     */
+    private final AtomicBoolean draining;
+
+    /**
+     * Run once the dispatcher is closed and the queue is empty, after a close
+     * was requested.
+     */
+    private final AtomicReference<Runnable> onClosed;
+
+    /**
+     * The number of dropped events. Only written by the replay.
+     */
+    private volatile long dropped;
+
+    /**
+     * The number of late events. Only written by the replay.
+     */
+    private volatile long late;
+
+    /**
+     * Create a new dispatcher.
+     *
+     * @param eventCatcher
+     *            Catcher of the replayed events.
+     * @param executor
+     *            Executor to run the event catcher on.
+     * @param capacity
+     *            The number of events the queue holds before the policy
+     *            applies.
+     * @param policy
+     *            What to do when the queue is full.
+     */
+    QueueDispatcher(final Consumer<T> eventCatcher, final Executor executor,
+            final int capacity, final DispatchPolicy policy) {
+        this.eventCatcher = eventCatcher;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.policy = policy;
+        // a late event is queued beyond the capacity
+        this.queue = policy == DispatchPolicy.LATE
+                ? new LinkedBlockingQueue<>()
+                : new LinkedBlockingQueue<>(capacity);
+        this.draining = new AtomicBoolean();
+        this.onClosed = new AtomicReference<>();
+    }
+
+    @Override
+    public boolean dispatch(final T event) {
+        switch (this.policy) {
+        case BLOCK:
+            try {
+                this.queue.put(event);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.dropped++;
+                return false;
+            }
+            break;
+        case DROP:
+            if (!this.queue.offer(event)) {
+                this.dropped++;
+                return false;
+            }
+            break;
+        default:
+            if (this.queue.size() >= this.capacity) {
+                this.late++;
+            }
+            this.queue.offer(event);
+            break;
+        }
+        if (this.draining.compareAndSet(false, true)) {
+            this.executor.execute(this::drain);
+        }
+        return true;
+    }
+
+    @Override
+    public long getDropped() {
+        return this.dropped;
+    }
+
+    @Override
+    public long getLate() {
+        return this.late;
+    }
+
+    @Override
+    public void close(final boolean discard, final Runnable closed) {
+        if (discard) {
+            this.queue.clear();
+        }
+        this.onClosed.set(closed);
+        if (this.draining.compareAndSet(false, true)) {
+            if (this.queue.isEmpty()) {
+                this.runClosed();
+            } else {
+                // an event was queued while the drain was handed over
+                this.executor.execute(this::drain);
+            }
+        }
+        // otherwise the draining task runs the callback
+    }
+
+    /**
+     * Hand the queued events to the event catcher until the queue is empty.
+     * Runs the close callback after the last event, if requested.
+     */
+    private void drain() {
+        do {
+            T event;
+            while ((event = this.queue.poll()) != null) {
+                try {
+                    this.eventCatcher.accept(event);
+                } catch (final RuntimeException e) {
+                    LoggerFactory.getLogger(QueueDispatcher.class.getName())
+                            .error("Exception while catching event.", e);
+                }
+            }
+            if (this.queue.isEmpty() && this.onClosed.get() != null) {
+                this.runClosed();
+                return;
+            }
+            this.draining.set(false);
+            // an event or a close may have arrived after the last poll
+        } while ((!this.queue.isEmpty() || this.onClosed.get() != null)
+                && this.draining.compareAndSet(false, true));
+    }
+
+    /**
+     * Run the close callback, once. Called while draining.
+     */
+    private void runClosed() {
+        final Runnable closed = this.onClosed.getAndSet(null);
+        this.draining.set(false);
+        if (closed != null) {
+            closed.run();
+        }
+    }
+
+}
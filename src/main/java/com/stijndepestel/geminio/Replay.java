@@ -23,16 +23,22 @@
  */
 package com.stijndepestel.geminio;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 /**
@@ -52,9 +58,42 @@ public final class Replay<T> {
     private static final String ERROR_MESSAGE = "Object is not in the right state.";
 
     /**
-     * Treshold defining the error margin of the sleep functionality.
+     * Time to wait for the decoder when the next event has not been decoded
+     * yet in pipelined mode, in nanoseconds.
      */
-    private static final long TRESHOLD = 200L;
+    private static final long DECODER_WAIT = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Maximum number of events thrown in a single step on a scheduler, so
+     * that an unthrottled or lagging replay does not starve the other replays
+     * on the scheduler.
+     */
+    private static final int STEP_LIMIT = 1024;
+
+    /**
+     * Time between two checks whether a paused replay was resumed, in
+     * nanoseconds. A resume wakes the replay, this is only a safety net.
+     */
+    private static final long PAUSE_WAIT = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Value of {@link #seekTarget} when no seek was requested.
+     */
+    private static final long NO_SEEK = Long.MIN_VALUE;
+
+    /**
+     * Value of {@link #pausedSince} when the replay is not paused.
+     */
+    private static final long NOT_PAUSED = Long.MIN_VALUE;
+
+    /**
+     * Speed at which events are replayed as fast as the event catcher accepts
+     * them, in order, without waiting.
+     *
+     * @see #setSpeed(double)
+     */
+    public static final double UNTHROTTLED = Double.POSITIVE_INFINITY;
+
 
     /**
      * The list of ReplayListeners.
@@ -62,16 +101,14 @@ public final class Replay<T> {
     private final List<ReplayListener> listeners;
 
     /**
-     * Deserializer for the events that will be replayed.
+     * Supplies and deserializes the events that will be replayed.
      */
-    private final Function<JSONObject, T> deserializer;
+    private final ReplayInput<?, T> input;
 
     /**
-     * Supplier of the JSONObject. Can f.e. be loaded from file.
-     *
-     * @see Persister
+     * Pool to deserialize the events in parallel on while loading, if present.
      */
-    private final Supplier<JSONObject> loader;
+    private Optional<ForkJoinPool> deserializationPool;
 
     /**
      * Catcher of the events that will be replayed.
@@ -79,35 +116,193 @@ public final class Replay<T> {
     private Consumer<T> eventCatcher;
 
     /**
-     * Set that holds the events that were loaded.
+     * Additional catchers that receive every replayed event as well.
      */
-    private final Set<Wrapper<T>> loadedEvents;
+    private final List<Consumer<T>> extraCatchers;
 
     /**
-     * Priority queue that holds the events that still have to be replayed.
-     * Ordered by the natural ordering (Comparable) of Wrapper.
+     * The relative time of the capture at which the replay starts, in
+     * nanoseconds.
      */
-    private PriorityQueue<Wrapper<T>> queue;
+    private long rangeStart;
+
+    /**
+     * Creates the dispatcher of a replay, from the event catcher.
+     */
+    private Function<Consumer<T>, Dispatcher<T>> dispatcherFactory;
+
+    /**
+     * Whether the events are handed to the event catcher asynchronously.
+     */
+    private boolean asyncDispatch;
+
+    /**
+     * Extracts the key to partition the events by, if the events are
+     * partitioned.
+     */
+    private Optional<Function<? super T, ?>> shardKey;
+
+    /**
+     * The number of partitions of the events.
+     */
+    private int shards;
+
+    /**
+     * Hands the events of the current replay to the event catcher.
+     */
+    private Dispatcher<T> dispatcher;
+
+    /**
+     * List that holds the events that were loaded, ordered by the natural
+     * ordering (Comparable) of Wrapper. Events with equal timestamps keep the
+     * order in which they were loaded.
+     */
+    private final List<Wrapper<T>> loadedEvents;
+
+    /**
+     * Position of the replay in the events.
+     */
+    private ReplayCursor<T> cursor;
+
+    /**
+     * The maximum number of events decoded ahead of the replay in pipelined
+     * mode, 0 when all events are loaded before replaying.
+     */
+    private int lookahead;
 
     /**
      * The current state of the replay object.
      */
-    private State currentState;
+    private volatile State currentState;
 
     /**
-     * Timestamp of when replay started.
+     * Timestamp of when the first event of the capture is due, in terms of
+     * {@link System#nanoTime()}. Moved by time ranges, pauses and seeks.
      */
     private long replayStart;
 
+    /**
+     * Timestamp of when the replay was started, in terms of
+     * {@link System#nanoTime()}.
+     */
+    private long startedAt;
+
+    /**
+     * The way to wait until the next event is due.
+     */
+    private WaitStrategy waitStrategy;
+
+    /**
+     * The factor by which the replay is sped up.
+     */
+    private double speed;
+
+    /**
+     * The thread that is replaying the events, when not replaying on a
+     * scheduler.
+     */
+    private volatile Thread replayThread;
+
+    /**
+     * Shared scheduler to replay the events on instead of a dedicated thread,
+     * if present.
+     */
+    private Optional<ScheduledExecutorService> scheduler;
+
+    /**
+     * The next step of the replay on the scheduler.
+     */
+    private ScheduledFuture<?> pendingStep;
+
+    /**
+     * The number of the step that may run next. A step that was cancelled but
+     * started anyway has an older number, and does nothing. Guarded by this
+     * replay.
+     */
+    private long stepNumber;
+
+    /**
+     * Flag indicating that a step is running on the scheduler. Guarded by
+     * this replay.
+     */
+    private boolean stepRunning;
+
+    /**
+     * Flag indicating that the running step was asked to run the next step
+     * immediately. Guarded by this replay.
+     */
+    private boolean wakeRequested;
+
+    /**
+     * The time at which the replay should continue, in terms of
+     * {@link System#nanoTime()}.
+     */
+    private long wakeup;
+
     /**
      * Counter for the number of replayed events.
      */
     private int replayCounter;
 
     /**
-     * Flag to indicate that a stop was requested.
+     * Lateness of the replayed events compared to their scaled offset.
+     */
+    private final LatenessHistogram lateness;
+
+    /**
+     * Interval between progress notifications in nanoseconds, 0 when
+     * disabled.
+     */
+    private long progressInterval;
+
+    /**
+     * Whether the offsets of the events count from the time the first event
+     * is thrown, instead of from the start of the replay.
+     */
+    private boolean anchoredStart;
+
+    /**
+     * Flag indicating that the first event of an anchored replay was not
+     * thrown yet. Only used by the replay thread.
+     */
+    private boolean anchorPending;
+
+    /**
+     * Timestamp of the next progress notification, in terms of
+     * {@link System#nanoTime()}.
+     */
+    private long nextProgress;
+
+    /**
+     * Flag to indicate that a pause was requested. Volatile since it is set
+     * from outside the replay thread.
+     */
+    private volatile boolean paused;
+
+    /**
+     * Timestamp of when the replay was paused, in terms of
+     * {@link System#nanoTime()}, or {@link #NOT_PAUSED}. Guarded by this
+     * replay.
+     */
+    private long pausedSince;
+
+    /**
+     * The time the replay was paused, in nanoseconds, that was not yet added
+     * to the start of the replay. Set from outside the replay thread.
+     */
+    private final AtomicLong pausedTime;
+
+    /**
+     * The relative time of the capture to continue the replay at, in
+     * nanoseconds, or {@link #NO_SEEK}. Set from outside the replay thread.
+     */
+    private final AtomicLong seekTarget;
+
+    /**
+     * Flag to indicate that a stop was requested. Volatile since it is set
+     * from outside the replay thread.
      */
-    private boolean stopRequested;
+    private volatile boolean stopRequested;
 
     /**
      * Create new Replay object.
@@ -125,12 +320,59 @@ public final class Replay<T> {
      */
     public Replay(final Function<JSONObject, T> deserializer,
             final Supplier<JSONObject> loader, final Consumer<T> eventCatcher) {
-        this.deserializer = deserializer;
-        this.loader = loader;
+        this(() -> new JSONObjectSource(loader.get()), deserializer,
+                eventCatcher);
+    }
+
+    /**
+     * Create new Replay object that reads the events one by one from a source,
+     * without first loading all serialized events in memory.
+     *
+     * @param source
+     *            Supplies the source of the previously captured events.
+     * @param deserializer
+     *            Deserializer for the events (converts from R to T (== event
+     *            type)).
+     * @param eventCatcher
+     *            Catcher of the event that will be thrown by the replay.
+     * @param <R>
+     *            The type of the serialized events.
+     * @see Persister#source()
+     */
+    public <R> Replay(final Supplier<? extends EventSource<R>> source,
+            final Function<R, T> deserializer, final Consumer<T> eventCatcher) {
+        this.input = new ReplayInput<>(source, deserializer);
         this.eventCatcher = eventCatcher;
         this.listeners = new ArrayList<>();
-        this.loadedEvents = new HashSet<>();
+        this.extraCatchers = new ArrayList<>();
+        this.loadedEvents = new ArrayList<>();
         this.currentState = State.CREATED;
+        this.waitStrategy = WaitStrategy.POWER_SAVING;
+        this.speed = 1D;
+        this.deserializationPool = Optional.empty();
+        this.lateness = new LatenessHistogram();
+        this.scheduler = Optional.empty();
+        this.dispatcherFactory = DirectDispatcher::new;
+        this.shardKey = Optional.empty();
+        this.seekTarget = new AtomicLong(Replay.NO_SEEK);
+        this.pausedTime = new AtomicLong();
+    }
+
+    /**
+     * Create new Replay object that decodes the events with a codec.
+     *
+     * @param source
+     *            Supplies the source of the previously captured events, e.g.,
+     *            a binary source.
+     * @param codec
+     *            The codec to decode the events with.
+     * @param eventCatcher
+     *            Catcher of the event that will be thrown by the replay.
+     * @see Persister#binarySource()
+     */
+    public Replay(final Supplier<? extends EventSource<ByteBuffer>> source,
+            final Codec<T> codec, final Consumer<T> eventCatcher) {
+        this(source, codec::decode, eventCatcher);
     }
 
     /**
@@ -144,7 +386,309 @@ public final class Replay<T> {
     }
 
     /**
-     * Load and deserialize the events from their persisted state.
+     * Add an event catcher that receives every replayed event as well. The
+     * events are read and deserialized once and broadcast to all catchers. To
+     * let every catcher receive the events from its own queue, so that a slow
+     * catcher does not hold back the others, use
+     * {@link #setAsyncDispatch(Executor, int, DispatchPolicy)}.
+     *
+     * @param eventCatcher
+     *            The additional catcher of the replayed events.
+     * @throws IllegalStateException
+     *             When the replay is running.
+     */
+    public void addEventCatcher(final Consumer<T> eventCatcher) {
+        if (this.currentState == State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.extraCatchers.add(eventCatcher);
+    }
+
+    /**
+     * Remove an event catcher that was added with
+     * {@link #addEventCatcher(Consumer)}.
+     *
+     * @param eventCatcher
+     *            The additional catcher to remove.
+     * @throws IllegalStateException
+     *             When the replay is running.
+     */
+    public void removeEventCatcher(final Consumer<T> eventCatcher) {
+        if (this.currentState == State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.extraCatchers.remove(eventCatcher);
+    }
+
+    /**
+     * Set the way the replay waits until the next event is due. The default is
+     * {@link WaitStrategy#POWER_SAVING}.
+     *
+     * @param waitStrategy
+     *            The wait strategy.
+     * @throws IllegalStateException
+     *             When the replay is running.
+     */
+    public void setWaitStrategy(final WaitStrategy waitStrategy) {
+        if (this.currentState == State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Set the speed of the replay relative to the captured pace, e.g., 10 to
+     * replay ten times faster or 0.5 to replay at half speed. Use
+     * {@link #UNTHROTTLED} to replay the events as fast as possible. The
+     * default is 1.
+     *
+     * @param speed
+     *            The speed factor, strictly positive.
+     * @throws IllegalArgumentException
+     *             When the speed is not strictly positive.
+     * @throws IllegalStateException
+     *             When the replay is running.
+     */
+    public void setSpeed(final double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException(
+                    "Speed should be strictly positive.");
+        }
+        if (this.currentState == State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * Deserialize the events in parallel on the given pool while loading. The
+     * events are still read sequentially from the source, and are passed on in
+     * the order of the source. By default, events are deserialized on the
+     * thread calling {@link #load()}.
+     *
+     * @param pool
+     *            The pool to deserialize the events on, e.g.,
+     *            {@link ForkJoinPool#commonPool()}.
+     * @throws IllegalStateException
+     *             When the events have already been loaded.
+     */
+    public void setDeserializationPool(final ForkJoinPool pool) {
+        if (this.currentState != State.CREATED) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.deserializationPool = Optional.of(pool);
+    }
+
+    /**
+     * Replay the events on a shared scheduler instead of on a dedicated
+     * thread. A replay on a scheduler does not block a thread while waiting
+     * for the next event, so a few threads can drive many concurrent replays.
+     * The replay schedules a step at the time the next event is due, which
+     * throws all events that are due at that time. The precision of the replay
+     * is then determined by the scheduler and the wait strategy is not used.
+     *
+     * The event catcher and the listeners are called on the threads of the
+     * scheduler. The scheduler is not shut down by the replay.
+     *
+     * @param scheduler
+     *            The scheduler to replay the events on.
+     * @throws IllegalStateException
+     *             When the replay is running.
+     */
+    public void setScheduler(final ScheduledExecutorService scheduler) {
+        if (this.currentState == State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.scheduler = Optional.of(scheduler);
+    }
+
+    /**
+     * Hand the events to the event catcher asynchronously, through a bounded
+     * queue, on the given executor. A slow event catcher then no longer holds
+     * back the replay, as long as the queue is not full. The event catcher
+     * still receives the events one by one, in order. A replay only ends when
+     * all queued events have been caught, while a stopped replay discards
+     * the events that are still queued. The replay does not wait for the
+     * queue to drain, so the listeners can be notified on the executor, which
+     * may be the scheduler of the replay. With the BLOCK policy, a full queue
+     * does block the replay, so the executor should then not be its
+     * scheduler.
+     *
+     * By default, the event catcher is called directly on the replay thread.
+     *
+     * @param executor
+     *            The executor to call the event catcher on.
+     * @param capacity
+     *            The number of events that can be queued before the policy
+     *            applies.
+     * @param policy
+     *            What to do with an event when the queue is full.
+     * @throws IllegalArgumentException
+     *             When the capacity is smaller than one event.
+     * @throws IllegalStateException
+     *             When the replay is running.
+     */
+    public void setAsyncDispatch(final Executor executor, final int capacity,
+            final DispatchPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                    "Capacity should be at least one event.");
+        }
+        if (this.currentState == State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.dispatcherFactory = catcher -> new QueueDispatcher<>(catcher,
+                executor, capacity, policy);
+        this.asyncDispatch = true;
+    }
+
+    /**
+     * Partition the events by a key over a number of shards. Every shard has
+     * its own dispatcher, so events with the same key are caught in order,
+     * while events with different keys can be caught in parallel. The events
+     * are still scheduled by a single thread, while the event catcher is
+     * called in parallel on the executor of
+     * {@link #setAsyncDispatch(Executor, int, DispatchPolicy)}, which is
+     * required and should have a thread for every shard. The event catcher
+     * should then be thread safe.
+     *
+     * @param keyExtractor
+     *            Extracts the key from an event, e.g., the identifier of the
+     *            device that sent it.
+     * @param shards
+     *            The number of shards.
+     * @throws IllegalArgumentException
+     *             When there is not at least one shard.
+     * @throws IllegalStateException
+     *             When the replay is running.
+     */
+    public void setSharding(final Function<? super T, ?> keyExtractor,
+            final int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException(
+                    "There should be at least one shard.");
+        }
+        if (this.currentState == State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.shardKey = Optional.of(keyExtractor);
+        this.shards = shards;
+    }
+
+    /**
+     * Only load the events in a range of relative time, e.g., a five minute
+     * window of a long capture. The events outside the range are dropped
+     * before they are deserialized; sources that support it, like the binary
+     * source, skip them without reading them. The replay starts at the start
+     * of the range, i.e., the events at the start of the range are due
+     * immediately.
+     *
+     * To filter the events on their serialized form, e.g., to only replay the
+     * events of a single device, use {@link EventSource#filter}.
+     *
+     * @param from
+     *            The start of the range, inclusive.
+     * @param to
+     *            The end of the range, exclusive.
+     * @param unit
+     *            The unit of the range.
+     * @throws IllegalArgumentException
+     *             When the range is empty or starts before the capture.
+     * @throws IllegalStateException
+     *             When the events have already been loaded.
+     */
+    public void setTimeRange(final long from, final long to,
+            final TimeUnit unit) {
+        if (from < 0 || from >= to) {
+            throw new IllegalArgumentException("Invalid time range.");
+        }
+        if (this.currentState != State.CREATED) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.rangeStart = unit.toNanos(from);
+        this.input.setTimeRange(this.rangeStart, unit.toNanos(to));
+    }
+
+    /**
+     * Enable the pipelined mode. In pipelined mode, {@link #load()} does not
+     * read any events. Instead, every replay starts a decoder thread that
+     * reads and deserializes the events while they are being replayed, at
+     * most the given number of events ahead of the replay. This bounds the
+     * memory usage and lets the replay start immediately.
+     *
+     * The source should supply the events ordered by their timestamp, since
+     * they cannot be sorted in this mode, and the supplier of the source
+     * should supply a new source for every replay, including after a
+     * {@link #reset()}.
+     *
+     * @param lookahead
+     *            The maximum number of decoded events that are not yet
+     *            replayed.
+     * @throws IllegalArgumentException
+     *             When the lookahead is smaller than one event.
+     * @throws IllegalStateException
+     *             When the events have already been loaded.
+     */
+    public void setPrefetch(final int lookahead) {
+        if (lookahead < 1) {
+            throw new IllegalArgumentException(
+                    "Lookahead should be at least one event.");
+        }
+        if (this.currentState != State.CREATED) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Notify the listeners of the progress of the replay at a fixed interval,
+     * see {@link ReplayListener#replayProgress(ReplayEvent)}. By default, no
+     * progress is notified.
+     *
+     * @param interval
+     *            The interval between two notifications, 0 to disable them.
+     * @param unit
+     *            The unit of the interval.
+     * @throws IllegalArgumentException
+     *             When the interval is negative.
+     * @throws IllegalStateException
+     *             When the replay is running.
+     */
+    public void setProgressInterval(final long interval, final TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException(
+                    "Interval should not be negative.");
+        }
+        if (this.currentState == State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.progressInterval = unit.toNanos(interval);
+    }
+
+    /**
+     * Count the offsets of the events from the time the first event is
+     * thrown, instead of from the start of the replay. The first event is
+     * due when the replay starts, so it is late by the time it takes to start
+     * the replay thread, while the later events are on time. An anchored
+     * replay moves the later events by the same time, which keeps the
+     * captured time between the first event and the next ones. By default,
+     * the offsets count from the start of the replay.
+     *
+     * @param anchored
+     *            Whether the offsets count from the first thrown event.
+     * @throws IllegalStateException
+     *             When the replay is running.
+     */
+    public void setAnchoredStart(final boolean anchored) {
+        if (this.currentState == State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.anchoredStart = anchored;
+    }
+
+    /**
+     * Load and deserialize the events from their persisted state. Does not
+     * read the events in pipelined mode, see {@link #setPrefetch(int)}.
      *
      * @return Reference to this instance.
      */
@@ -152,29 +696,61 @@ public final class Replay<T> {
         if (this.currentState != State.CREATED) {
             throw new IllegalStateException(Replay.ERROR_MESSAGE);
         }
-        // Get the json
-        final JSONArray jsonarr = this.loader.get()
-                .getJSONArray(JSONNames.JSON_EVENTS);
-        jsonarr.forEach(json -> this.loadedEvents
-                .add(new Wrapper<>((JSONObject) json, this.deserializer)));
+        if (this.lookahead > 0) {
+            this.currentState = State.LOADED;
+            return this;
+        }
+        if (this.deserializationPool.isPresent()) {
+            this.input.forEach(this.loadedEvents::add,
+                    this.deserializationPool.get());
+        } else {
+            this.input.forEach(this.loadedEvents::add);
+        }
+        Replay.sortIfNeeded(this.loadedEvents);
         this.currentState = State.LOADED;
         return this;
     }
 
     /**
-     * Start the replay, will load all events into a queue and start replaying
-     * them.
+     * Start the replay, will start replaying the loaded events from the
+     * first one.
+     *
+     * @throws IllegalStateException
+     *             When the events are not loaded, or when the events are
+     *             partitioned without asynchronous dispatch.
      */
     public void startReplay() {
-        if (this.currentState != State.LOADED) {
+        if (this.currentState != State.LOADED
+                || this.shardKey.isPresent() && !this.asyncDispatch) {
             throw new IllegalStateException(Replay.ERROR_MESSAGE);
         }
-        this.queue = new PriorityQueue<>(this.loadedEvents);
+        this.cursor = this.lookahead > 0
+                ? new PrefetchCursor<>(this.input, this.lookahead,
+                        this.deserializationPool)
+                : new ListCursor<>(this.loadedEvents);
+        this.dispatcher = this.createDispatcher();
         this.currentState = State.REPLAYING;
         this.replayCounter = 0;
-        this.replayStart = System.currentTimeMillis();
-        // start replay in a thread
-        new Thread(this::replay).start();
+        this.stopRequested = false;
+        synchronized (this) {
+            this.paused = false;
+            this.pausedSince = Replay.NOT_PAUSED;
+        }
+        this.pausedTime.set(0);
+        this.seekTarget.set(Replay.NO_SEEK);
+        this.anchorPending = this.anchoredStart;
+        this.lateness.clear();
+        this.startedAt = System.nanoTime();
+        this.replayStart = this.startedAt - this.scaledOffset(this.rangeStart);
+        this.nextProgress = this.startedAt + this.progressInterval;
+        if (this.scheduler.isPresent()) {
+            this.replayThread = null;
+            this.scheduleStep(0);
+        } else {
+            // start replay in a thread
+            this.replayThread = new Thread(this::replay);
+            this.replayThread.start();
+        }
     }
 
     /**
@@ -193,9 +769,109 @@ public final class Replay<T> {
             throw new IllegalStateException(Replay.ERROR_MESSAGE);
         }
         this.stopRequested = true;
+        this.wake();
         return true;
     }
 
+    /**
+     * Pause the running replay. No events are replayed until the replay is
+     * resumed, and the time while paused does not count towards the captured
+     * offsets of the events.
+     *
+     * @throws IllegalStateException
+     *             When the replay is not running.
+     */
+    public void pause() {
+        if (this.currentState != State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        synchronized (this) {
+            if (!this.paused) {
+                this.pausedSince = System.nanoTime();
+                this.paused = true;
+            }
+        }
+        this.wake();
+    }
+
+    /**
+     * Resume the paused replay at the event where it was paused.
+     *
+     * @throws IllegalStateException
+     *             When the replay is not running.
+     */
+    public void resume() {
+        if (this.currentState != State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        synchronized (this) {
+            if (this.paused) {
+                // the events are due later by the time paused
+                this.pausedTime.addAndGet(System.nanoTime() - this.pausedSince);
+                this.pausedSince = Replay.NOT_PAUSED;
+                this.paused = false;
+            }
+        }
+        this.wake();
+    }
+
+    /**
+     * Indicates whether or not the replay is paused.
+     *
+     * @return true if a pause was requested and the replay was not resumed
+     *         yet, false otherwise.
+     */
+    public boolean isPaused() {
+        return this.paused;
+    }
+
+    /**
+     * Continue the running replay at the given offset in the capture, e.g.,
+     * to skip to an issue 40 minutes into the capture. The next event is the
+     * first event at or after the offset, thrown as if the replay had been
+     * running since the start of the capture. A paused replay stays paused at
+     * the offset.
+     *
+     * Loaded events are looked up with a binary search. In pipelined mode,
+     * see {@link #setPrefetch(int)}, the replay can only skip forward, while
+     * the skipped events are still read and deserialized. Seeking back to an
+     * event that was already replayed is then ignored, and the replay
+     * continues at the current event, at its original time.
+     *
+     * @param offset
+     *            The offset in the capture, relative to its start.
+     * @param unit
+     *            The unit of the offset.
+     * @throws IllegalArgumentException
+     *             When the offset is negative.
+     * @throws IllegalStateException
+     *             When the replay is not running.
+     */
+    public void seek(final long offset, final TimeUnit unit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException(
+                    "Offset should not be negative.");
+        }
+        if (this.currentState != State.REPLAYING) {
+            throw new IllegalStateException(Replay.ERROR_MESSAGE);
+        }
+        this.seekTarget.set(unit.toNanos(offset));
+        this.wake();
+    }
+
+    /**
+     * Wake the replay if it is waiting for the next event, so that it handles
+     * a stop, pause, resume or seek immediately.
+     */
+    private void wake() {
+        final Thread thread = this.replayThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        } else if (this.scheduler.isPresent()) {
+            this.wakeScheduledStep();
+        }
+    }
+
     /**
      * Indicates whether or not the object is in the stopped state, i.e., the
      * replay has ended.
@@ -220,41 +896,282 @@ public final class Replay<T> {
     }
 
     /**
-     * Recursive replay function.
+     * Replay loop. Replays the events in order until all events have been
+     * replayed or a stop was requested. Runs at constant stack depth and does
+     * not allocate per event.
      */
     private void replay() {
         if (this.currentState != State.REPLAYING) {
             throw new IllegalStateException(Replay.ERROR_MESSAGE);
         }
-        if (this.queue.isEmpty()) {
-            // end of replay
-            this.currentState = State.STOPPED;
-            this.throwEnded();
+        while (!this.throwDueEvents(Integer.MAX_VALUE)) {
+            this.waitStrategy.await(this.wakeup);
+        }
+        this.finish();
+    }
+
+    /**
+     * Single step of a replay on the scheduler. Throws the events that are due
+     * and schedules the next step at the time the next event is due. Only one
+     * step runs at any time, and only the running step schedules the next.
+     *
+     * @param number
+     *            The number of the step.
+     */
+    private void step(final long number) {
+        synchronized (this) {
+            if (number != this.stepNumber || this.stepRunning) {
+                // cancelled, but started anyway
+                return;
+            }
+            this.stepRunning = true;
+            this.pendingStep = null;
+        }
+        if (this.throwDueEvents(Replay.STEP_LIMIT)) {
+            synchronized (this) {
+                this.stepRunning = false;
+            }
+            this.finish();
+        } else {
+            this.scheduleStep(this.wakeup - System.nanoTime());
+        }
+    }
+
+    /**
+     * Schedule the next step of the replay on the scheduler. If the replay was
+     * woken while the step was running, the next step runs immediately
+     * instead.
+     *
+     * @param delay
+     *            The delay until the step, in nanoseconds.
+     */
+    private synchronized void scheduleStep(final long delay) {
+        final long number = ++this.stepNumber;
+        this.pendingStep = this.scheduler.get().schedule(
+                () -> this.step(number), this.wakeRequested ? 0 : delay,
+                TimeUnit.NANOSECONDS);
+        this.stepRunning = false;
+        this.wakeRequested = false;
+    }
+
+    /**
+     * Run the pending step of the replay on the scheduler immediately. If a
+     * step is running, it runs the next step immediately instead.
+     */
+    private synchronized void wakeScheduledStep() {
+        if (this.stepRunning) {
+            this.wakeRequested = true;
             return;
         }
-        final long nextReplayTime = this.queue.peek().getRelativeTimestamp();
-        final long timerunning = System.currentTimeMillis() - this.replayStart;
-        final long toSleep = nextReplayTime - timerunning;
-        // if within treshold
-        if (toSleep < Replay.TRESHOLD) {
+        final ScheduledFuture<?> step = this.pendingStep;
+        if (step != null) {
+            step.cancel(false);
+            final long number = ++this.stepNumber;
+            this.pendingStep = this.scheduler.get().schedule(
+                    () -> this.step(number), 0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Create the dispatcher of a replay, with a dispatcher for every event
+     * catcher.
+     *
+     * @return The created dispatcher.
+     */
+    private Dispatcher<T> createDispatcher() {
+        final Dispatcher<T> main = this.createDispatcher(
+                event -> this.eventCatcher.accept(event));
+        if (this.extraCatchers.isEmpty()) {
+            return main;
+        }
+        final List<Dispatcher<T>> dispatchers = new ArrayList<>();
+        dispatchers.add(main);
+        for (final Consumer<T> catcher : this.extraCatchers) {
+            dispatchers.add(this.createDispatcher(catcher));
+        }
+        return new FanOutDispatcher<>(dispatchers);
+    }
+
+    /**
+     * Create the dispatcher of a single event catcher, partitioned over the
+     * shards if the events are partitioned.
+     *
+     * @param catcher
+     *            The event catcher.
+     * @return The created dispatcher.
+     */
+    private Dispatcher<T> createDispatcher(final Consumer<T> catcher) {
+        if (!this.shardKey.isPresent()) {
+            return this.dispatcherFactory.apply(catcher);
+        }
+        final List<Dispatcher<T>> dispatchers = new ArrayList<>();
+        for (int i = 0; i < this.shards; i++) {
+            dispatchers.add(this.dispatcherFactory.apply(catcher));
+        }
+        return new ShardedDispatcher<>(this.shardKey.get(), dispatchers);
+    }
+
+    /**
+     * Throw the events that are due, in order, without waiting. Notifies the
+     * progress of the replay when it is due.
+     *
+     * @param limit
+     *            The maximum number of events to throw.
+     * @return true if the replay has ended, false if the replay should
+     *         continue at {@link #wakeup}.
+     */
+    private boolean throwDueEvents(final int limit) {
+        int thrown = 0;
+        while (!this.stopRequested && !this.cursor.isExhausted()) {
+            final long now = System.nanoTime();
+            if (this.progressInterval > 0 && now - this.nextProgress >= 0) {
+                this.throwProgress();
+                this.nextProgress = now + this.progressInterval;
+            }
+            if (this.seekTarget.get() != Replay.NO_SEEK) {
+                this.applySeek(now);
+            }
+            if (this.paused) {
+                this.wakeup = this.untilProgress(now + Replay.PAUSE_WAIT);
+                return false;
+            }
+            if (this.pausedTime.get() != 0) {
+                this.replayStart += this.pausedTime.getAndSet(0);
+            }
+            final Wrapper<T> next = this.cursor.peek();
+            if (next == null) {
+                // the decoder has fallen behind
+                this.wakeup = this.untilProgress(now + Replay.DECODER_WAIT);
+                return false;
+            }
+            final long nextReplayTime = this.replayStart
+                    + this.scaledOffset(next.getRelativeTimeNanos());
+            long late = now - nextReplayTime;
+            if (late < 0) {
+                this.wakeup = this.untilProgress(nextReplayTime);
+                return false;
+            }
+            if (thrown == limit) {
+                // give other replays a turn
+                this.wakeup = now;
+                return false;
+            }
+            if (this.anchorPending) {
+                // the later events are due at their offsets from this one
+                this.anchorPending = false;
+                this.replayStart += late;
+                late = 0;
+            }
             // throw event
-            final T event = this.queue.poll().getEvent();
-            this.eventCatcher.accept(event);
-            this.replayCounter++;
-        } else {
-            try {
-                Thread.sleep(toSleep);
-            } catch (final InterruptedException e) {
-                // Ignore exception
+            this.cursor.advance();
+            if (this.speed != Replay.UNTHROTTLED) {
+                this.lateness.record(late);
+            }
+            if (this.dispatcher.dispatch(next.getEvent())) {
+                this.replayCounter++;
+            }
+            thrown++;
+        }
+        return true;
+    }
+
+    /**
+     * Move the cursor to the requested seek target, and shift the start of the
+     * replay so that the target is due now. Nothing changes when the cursor
+     * cannot move back to the target.
+     *
+     * @param now
+     *            The current time, in terms of {@link System#nanoTime()}.
+     */
+    private void applySeek(final long now) {
+        final long target = this.seekTarget.getAndSet(Replay.NO_SEEK);
+        if (!this.cursor.seek(target)) {
+            // the replay continues at the current event
+            return;
+        }
+        synchronized (this) {
+            this.replayStart = now - this.scaledOffset(target);
+            // the time paused before the seek no longer counts
+            this.pausedTime.set(0);
+            if (this.paused) {
+                // the pause starts over at the target
+                this.pausedSince = now;
             }
         }
-        // Recursion
-        if (this.stopRequested) {
+    }
+
+    /**
+     * End the replay, and notify the listeners once the dispatched events have
+     * been caught.
+     */
+    private void finish() {
+        this.cursor.close();
+        final boolean failed = this.stopRequested || this.cursor.hasFailed();
+        // without waiting for the catchers, which may share this thread
+        this.dispatcher.close(this.stopRequested, () -> this.ended(failed));
+    }
+
+    /**
+     * Notify the listeners once the dispatched events have been caught.
+     *
+     * @param failed
+     *            Whether or not the replay failed or was stopped.
+     */
+    private void ended(final boolean failed) {
+        this.currentState = State.STOPPED;
+        if (failed) {
             this.throwFailed();
         } else {
-            this.replay();
+            this.throwEnded();
         }
+    }
 
+    /**
+     * Sort the events by their relative timestamp, unless they already are.
+     * Captures are nearly always persisted in order, in which case this is a
+     * single linear pass. The sort is stable.
+     *
+     * @param events
+     *            The events to sort.
+     */
+    private static <T> void sortIfNeeded(final List<Wrapper<T>> events) {
+        for (int i = 1; i < events.size(); i++) {
+            if (events.get(i - 1).compareTo(events.get(i)) > 0) {
+                Collections.sort(events);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Convert the relative time of an event to the offset from the start of
+     * the replay, taking the speed into account.
+     *
+     * @param relativeTimeNanos
+     *            The relative time of the event, in nanoseconds.
+     * @return The offset from the start of the replay, in nanoseconds.
+     */
+    private long scaledOffset(final long relativeTimeNanos) {
+        if (this.speed == 1D) {
+            return relativeTimeNanos;
+        }
+        // zero for UNTHROTTLED
+        return (long) (relativeTimeNanos / this.speed);
+    }
+
+    /**
+     * Limit a deadline to the next progress notification, if any.
+     *
+     * @param deadline
+     *            The deadline, in terms of {@link System#nanoTime()}.
+     * @return The earliest of the deadline and the next progress
+     *         notification.
+     */
+    private long untilProgress(final long deadline) {
+        if (this.progressInterval > 0 && this.nextProgress - deadline < 0) {
+            return this.nextProgress;
+        }
+        return deadline;
     }
 
     /**
@@ -282,7 +1199,7 @@ public final class Replay<T> {
      * replay.
      */
     private void throwEnded() {
-        final ReplayEvent event = new ReplayEvent(this.replayCounter);
+        final ReplayEvent event = this.createEvent();
         this.listeners.forEach(l -> l.replayEnded(event));
     }
 
@@ -291,10 +1208,39 @@ public final class Replay<T> {
      * replay.
      */
     private void throwFailed() {
-        final ReplayEvent event = new ReplayEvent(this.replayCounter);
+        final ReplayEvent event = this.createEvent();
         this.listeners.forEach(l -> l.replayFailed(event));
     }
 
+    /**
+     * Throw a ReplayEvent to the listeners to notify them of the progress of
+     * the replay.
+     */
+    private void throwProgress() {
+        final ReplayEvent event = this.createEvent();
+        this.listeners.forEach(l -> l.replayProgress(event));
+    }
+
+    /**
+     * Create a ReplayEvent with the metrics of the replay so far. The drift of
+     * an unthrottled replay is not measured, since its events have no
+     * intended time.
+     *
+     * @return The created ReplayEvent.
+     */
+    private ReplayEvent createEvent() {
+        final long elapsed = System.nanoTime() - this.startedAt;
+        final double eventsPerSecond = elapsed > 0
+                ? this.replayCounter * (double) TimeUnit.SECONDS.toNanos(1)
+                        / elapsed
+                : 0;
+        return new ReplayEvent(this.replayCounter,
+                this.lateness.getPercentile(50),
+                this.lateness.getPercentile(99), this.lateness.getMax(),
+                eventsPerSecond, this.dispatcher.getDropped(),
+                this.dispatcher.getLate());
+    }
+
     /**
      * Definitions of the possible states of a Replay object.
      *
@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+/**
+ * Position of a Replay in the events it replays.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the replayed events.
+ */
+interface ReplayCursor<T> {
+
+    /**
+     * Get the next event to replay, without moving past it.
+     *
+     * @return The next event, or null when it is not available (yet).
+     */
+    Wrapper<T> peek();
+
+    /**
+     * Move past the event returned by {@link #peek()}.
+     */
+    void advance();
+
+    /**
+     * Move to the first event at or after the given time.
+     *
+     * @param relativeTimeNanos
+     *            The relative time of the capture to move to, in nanoseconds.
+     * @return true if the cursor moved, false if it cannot move back to the
+     *         time and stays at the current event.
+     */
+    boolean seek(long relativeTimeNanos);
+
+    /**
+     * Indicates whether or not all events have been passed.
+     *
+     * @return true if there are no more events, false otherwise.
+     */
+    boolean isExhausted();
+
+    /**
+     * Indicates whether or not the events could not be supplied completely.
+     *
+     * @return true if supplying the events failed, false otherwise.
+     */
+    boolean hasFailed();
+
+    /**
+     * Release the resources held by this cursor.
+     */
+    void close();
+
+}
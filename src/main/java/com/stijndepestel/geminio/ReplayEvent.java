@@ -23,6 +23,8 @@
  */
 package com.stijndepestel.geminio;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * A ReplayEvent contains information concerning the Replay and the state of the
  * replay when a specific event occurs.
@@ -38,14 +40,78 @@ public final class ReplayEvent {
     private final int totalEventsReplayed;
 
     /**
-     * Create a new ReplayEvent.
+     * The median lateness of the replayed events, in nanoseconds.
+     */
+    private final long medianDrift;
+
+    /**
+     * The 99th percentile of the lateness of the replayed events, in
+     * nanoseconds.
+     */
+    private final long p99Drift;
+
+    /**
+     * The largest lateness of the replayed events, in nanoseconds.
+     */
+    private final long maxDrift;
+
+    /**
+     * The average number of events replayed per second.
+     */
+    private final double eventsPerSecond;
+
+    /**
+     * The number of events that were dropped.
+     */
+    private final long droppedEvents;
+
+    /**
+     * The number of events that reached the event catcher late.
+     */
+    private final long lateEvents;
+
+    /**
+     * Create a new ReplayEvent without drift metrics.
      *
      * @param totalEventsReplayed
      *            The total number of events that were replayed before this
      *            event occurred.
      */
     public ReplayEvent(final int totalEventsReplayed) {
+        this(totalEventsReplayed, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Create a new ReplayEvent.
+     *
+     * @param totalEventsReplayed
+     *            The total number of events that were replayed before this
+     *            event occurred.
+     * @param medianDrift
+     *            The median lateness of the replayed events, in nanoseconds.
+     * @param p99Drift
+     *            The 99th percentile of the lateness of the replayed events,
+     *            in nanoseconds.
+     * @param maxDrift
+     *            The largest lateness of the replayed events, in nanoseconds.
+     * @param eventsPerSecond
+     *            The average number of events replayed per second.
+     * @param droppedEvents
+     *            The number of events that were dropped.
+     * @param lateEvents
+     *            The number of events that reached the event catcher late.
+     */
+    public ReplayEvent(final int totalEventsReplayed, final long medianDrift,
+            final long p99Drift, final long maxDrift,
+            final double eventsPerSecond, final long droppedEvents,
+            final long lateEvents) {
         this.totalEventsReplayed = totalEventsReplayed;
+        this.medianDrift = medianDrift;
+        this.p99Drift = p99Drift;
+        this.maxDrift = maxDrift;
+        this.eventsPerSecond = eventsPerSecond;
+        this.droppedEvents = droppedEvents;
+        this.lateEvents = lateEvents;
     }
 
     /**
@@ -57,4 +123,70 @@ public final class ReplayEvent {
         return this.totalEventsReplayed;
     }
 
+    /**
+     * Get the median drift, i.e., how late the replayed events were thrown
+     * compared to their captured (and scaled) offset.
+     *
+     * @param unit
+     *            The unit of the returned drift.
+     * @return The median drift.
+     */
+    public long getMedianDrift(final TimeUnit unit) {
+        return unit.convert(this.medianDrift, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the 99th percentile of the drift, i.e., 99% of the replayed events
+     * were thrown at most this late.
+     *
+     * @param unit
+     *            The unit of the returned drift.
+     * @return The 99th percentile of the drift.
+     */
+    public long getP99Drift(final TimeUnit unit) {
+        return unit.convert(this.p99Drift, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the largest drift of the replayed events.
+     *
+     * @param unit
+     *            The unit of the returned drift.
+     * @return The largest drift.
+     */
+    public long getMaxDrift(final TimeUnit unit) {
+        return unit.convert(this.maxDrift, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the average throughput of the replay since it started.
+     *
+     * @return The number of events replayed per second.
+     */
+    public double getEventsPerSecond() {
+        return this.eventsPerSecond;
+    }
+
+    /**
+     * Get the number of events that were dropped because the event catcher
+     * fell behind. Dropped events are not counted as replayed.
+     *
+     * @return The number of dropped events.
+     * @see DispatchPolicy#DROP
+     */
+    public long getDroppedEvents() {
+        return this.droppedEvents;
+    }
+
+    /**
+     * Get the number of events that were replayed on time, but reached the
+     * event catcher late because it fell behind.
+     *
+     * @return The number of late events.
+     * @see DispatchPolicy#LATE
+     */
+    public long getLateEvents() {
+        return this.lateEvents;
+    }
+
 }
@@ -0,0 +1,256 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Combination of the source of the serialized events of a Replay and their
+ * deserializer.
+ *
+ * @author sjdpeste
+ *
+ * @param <R>
+ *            The type of the serialized events.
+ * @param <T>
+ *            The type of the replayed events.
+ */
+final class ReplayInput<R, T> {
+
+    /**
+     * The number of events read from the source before they are deserialized
+     * in parallel.
+     */
+    static final int BATCH_SIZE = 4096;
+
+    /**
+     * The number of events below which a parallel deserialization task is not
+     * split any further.
+     */
+    private static final int SPLIT_THRESHOLD = 64;
+
+    /**
+     * Supplier of the source of the serialized events.
+     */
+    private final Supplier<? extends EventSource<R>> source;
+
+    /**
+     * Deserializer for the events.
+     */
+    private final Function<R, T> deserializer;
+
+    /**
+     * The start of the range of events to read, inclusive, in nanoseconds.
+     */
+    private long fromNanos;
+
+    /**
+     * The end of the range of events to read, exclusive, in nanoseconds.
+     */
+    private long toNanos;
+
+    /**
+     * Create a new input.
+     *
+     * @param source
+     *            Supplier of the source of the serialized events.
+     * @param deserializer
+     *            Deserializer for the events.
+     */
+    ReplayInput(final Supplier<? extends EventSource<R>> source,
+            final Function<R, T> deserializer) {
+        this.source = source;
+        this.deserializer = deserializer;
+        this.fromNanos = Long.MIN_VALUE;
+        this.toNanos = Long.MAX_VALUE;
+    }
+
+    /**
+     * Only read the events in a range of relative time. The range is pushed
+     * down to the source, see {@link EventSource#range(long, long, TimeUnit)}.
+     *
+     * @param fromNanos
+     *            The start of the range, inclusive, in nanoseconds.
+     * @param toNanos
+     *            The end of the range, exclusive, in nanoseconds.
+     */
+    void setTimeRange(final long fromNanos, final long toNanos) {
+        this.fromNanos = fromNanos;
+        this.toNanos = toNanos;
+    }
+
+    /**
+     * Open the source of the serialized events, restricted to the time range.
+     *
+     * @return The opened source.
+     */
+    private EventSource<R> open() {
+        final EventSource<R> events = this.source.get();
+        if (this.fromNanos == Long.MIN_VALUE
+                && this.toNanos == Long.MAX_VALUE) {
+            return events;
+        }
+        return events.range(this.fromNanos, this.toNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Read and deserialize the events one by one.
+     *
+     * @param consumer
+     *            Consumer of the deserialized, wrapped events.
+     */
+    void forEach(final Consumer<Wrapper<T>> consumer) {
+        try (final EventSource<R> events = this.open()) {
+            while (events.hasNext()) {
+                consumer.accept(this.deserialize(events.next()));
+            }
+        }
+    }
+
+    /**
+     * Read the events in batches and deserialize each batch in parallel on the
+     * pool. The events are passed to the consumer in the order of the source,
+     * on the calling thread.
+     *
+     * @param consumer
+     *            Consumer of the deserialized, wrapped events.
+     * @param pool
+     *            The pool to deserialize the events on.
+     */
+    void forEach(final Consumer<Wrapper<T>> consumer,
+            final ForkJoinPool pool) {
+        final List<Wrapper<R>> batch = new ArrayList<>(ReplayInput.BATCH_SIZE);
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final Wrapper<T>[] deserialized = new Wrapper[ReplayInput.BATCH_SIZE];
+        try (final EventSource<R> events = this.open()) {
+            while (events.hasNext()) {
+                batch.add(events.next());
+                if (batch.size() == ReplayInput.BATCH_SIZE
+                        || !events.hasNext()) {
+                    pool.invoke(new DeserializeTask(batch, deserialized, 0,
+                            batch.size()));
+                    for (int i = 0; i < batch.size(); i++) {
+                        consumer.accept(deserialized[i]);
+                        deserialized[i] = null;
+                    }
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deserialize a single wrapped event.
+     *
+     * @param wrapper
+     *            The wrapped, serialized event.
+     * @return The wrapped, deserialized event.
+     */
+    private Wrapper<T> deserialize(final Wrapper<R> wrapper) {
+        return new Wrapper<>(this.deserializer.apply(wrapper.getEvent()),
+                wrapper.getRelativeTimeNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Fork/join task deserializing a range of a batch.
+     *
+     * @author sjdpeste
+     *
+     */
+    private final class DeserializeTask extends RecursiveAction {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The batch of serialized events.
+         */
+        private final transient List<Wrapper<R>> batch;
+
+        /**
+         * The array to store the deserialized events in, at the same index.
+         */
+        private final transient Wrapper<T>[] deserialized;
+
+        /**
+         * The first index of the range.
+         */
+        private final int from;
+
+        /**
+         * The index after the last index of the range.
+         */
+        private final int to;
+
+        /**
+         * Create a new task.
+         *
+         * @param batch
+         *            The batch of serialized events.
+         * @param deserialized
+         *            The array to store the deserialized events in.
+         * @param from
+         *            The first index of the range.
+         * @param to
+         *            The index after the last index of the range.
+         */
+        DeserializeTask(final List<Wrapper<R>> batch,
+                final Wrapper<T>[] deserialized, final int from,
+                final int to) {
+            this.batch = batch;
+            this.deserialized = deserialized;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= ReplayInput.SPLIT_THRESHOLD) {
+                for (int i = this.from; i < this.to; i++) {
+                    this.deserialized[i] = ReplayInput.this
+                            .deserialize(this.batch.get(i));
+                }
+            } else {
+                final int middle = (this.from + this.to) >>> 1;
+                ForkJoinTask.invokeAll(
+                        new DeserializeTask(this.batch, this.deserialized,
+                                this.from, middle),
+                        new DeserializeTask(this.batch, this.deserialized,
+                                middle, this.to));
+            }
+        }
+    }
+
+}
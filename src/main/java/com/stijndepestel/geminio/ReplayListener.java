@@ -23,6 +23,8 @@
  */
 package com.stijndepestel.geminio;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Listener for events from the Replay.
  *
@@ -47,4 +49,16 @@ public interface ReplayListener {
      */
     void replayFailed(ReplayEvent event);
 
+    /**
+     * Called periodically while replaying, on the replay thread. Does nothing
+     * by default.
+     *
+     * @param event
+     *            The ReplayEvent, with the metrics of the replay so far.
+     * @see Replay#setProgressInterval(long, TimeUnit)
+     */
+    default void replayProgress(final ReplayEvent event) {
+        // ignore progress by default
+    }
+
 }
@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Dispatcher that partitions the events over several dispatchers by their
+ * key. All events with the same key go through the same dispatcher, so their
+ * order is preserved, while events with different keys can be caught in
+ * parallel.
+ *
+ * @author sjdpeste
+ *
+ * @param <T>
+ *            The type of the replayed events.
+ */
+final class ShardedDispatcher<T> implements Dispatcher<T> {
+
+    /**
+     * Extracts the key from an event.
+     */
+    private final Function<? super T, ?> keyExtractor;
+
+    /**
+     * The dispatchers of the shards.
+     */
+    private final List<Dispatcher<T>> shards;
+
+    /**
+     * Create a new dispatcher.
+     *
+     * @param keyExtractor
+     *            Extracts the key from an event.
+     * @param shards
+     *            The dispatchers of the shards.
+     */
+    ShardedDispatcher(final Function<? super T, ?> keyExtractor,
+            final List<Dispatcher<T>> shards) {
+        this.keyExtractor = keyExtractor;
+        this.shards = shards;
+    }
+
+    @Override
+    public boolean dispatch(final T event) {
+        final int hash = Objects.hashCode(this.keyExtractor.apply(event));
+        // spread the high bits, like HashMap does
+        final int spread = hash ^ (hash >>> 16);
+        return this.shards.get(Math.floorMod(spread, this.shards.size()))
+                .dispatch(event);
+    }
+
+    @Override
+    public long getDropped() {
+        return this.shards.stream().mapToLong(Dispatcher::getDropped).sum();
+    }
+
+    @Override
+    public long getLate() {
+        return this.shards.stream().mapToLong(Dispatcher::getLate).sum();
+    }
+
+    @Override
+    public void close(final boolean discard, final Runnable closed) {
+        final Runnable allClosed = Dispatcher.countDown(this.shards.size(),
+                closed);
+        this.shards.forEach(shard -> shard.close(discard, allClosed));
+    }
+
+}
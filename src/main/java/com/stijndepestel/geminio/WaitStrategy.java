@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Definitions of the ways a Replay can wait until the next event is due.
+ *
+ * @author sjdpeste
+ *
+ */
+public enum WaitStrategy {
+    /**
+     * Park the replay thread until the event is due. Uses hardly any CPU, but
+     * events can be delivered somewhat late, depending on the timer resolution
+     * of the operating system.
+     */
+    POWER_SAVING {
+        @Override
+        void await(final long deadline) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    },
+    /**
+     * Park the replay thread until shortly before the event is due and spin
+     * for the remaining time. Delivers events within microseconds of their
+     * intended time, at the cost of keeping a core busy while spinning.
+     */
+    PRECISE {
+        @Override
+        void await(final long deadline) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > WaitStrategy.SPIN_THRESHOLD) {
+                LockSupport.parkNanos(remaining - WaitStrategy.SPIN_THRESHOLD);
+                return;
+            }
+            while (remaining > 0) {
+                Thread.yield();
+                remaining = deadline - System.nanoTime();
+            }
+        }
+    };
+
+    /**
+     * The time before the deadline at which parking stops and spinning
+     * starts, in nanoseconds. Covers the usual oversleep of parking.
+     */
+    private static final long SPIN_THRESHOLD = TimeUnit.MILLISECONDS
+            .toNanos(2);
+
+    /**
+     * Wait until the deadline. Can return before the deadline, e.g., when the
+     * thread is unparked, so callers should check the time again.
+     *
+     * @param deadline
+     *            The deadline, in terms of {@link System#nanoTime()}.
+     */
+    abstract void await(long deadline);
+
+}
@@ -23,6 +23,7 @@
  */
 package com.stijndepestel.geminio;
 
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import org.json.JSONObject;
@@ -42,9 +43,9 @@ public final class Wrapper<T> implements Comparable<Wrapper<T>> {
      */
     private final T event;
     /**
-     * The relative timestamp.
+     * The relative timestamp, in nanoseconds.
      */
-    private final long relativeTimestamp;
+    private final long relativeTimeNanos;
 
     /**
      * Create a new wrapper given the event and the relativetimestamp.
@@ -52,11 +53,28 @@ public final class Wrapper<T> implements Comparable<Wrapper<T>> {
      * @param event
      *            Event to wrap.
      * @param relativeTimestamp
-     *            Relative timestamp of when the event occurred.
+     *            Relative timestamp of when the event occurred, in
+     *            milliseconds.
      */
     public Wrapper(final T event, final long relativeTimestamp) {
+        this(event, relativeTimestamp, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a new wrapper given the event and the relative time in the given
+     * unit.
+     *
+     * @param event
+     *            Event to wrap.
+     * @param relativeTime
+     *            Relative time of when the event occurred.
+     * @param unit
+     *            The unit of the relative time.
+     */
+    public Wrapper(final T event, final long relativeTime,
+            final TimeUnit unit) {
         this.event = event;
-        this.relativeTimestamp = relativeTimestamp;
+        this.relativeTimeNanos = unit.toNanos(relativeTime);
     }
 
     /**
@@ -70,15 +88,33 @@ public final class Wrapper<T> implements Comparable<Wrapper<T>> {
      */
     public Wrapper(final JSONObject json,
             final Function<JSONObject, T> deserializer) {
-        this.relativeTimestamp = json.getLong(JSONNames.JSON_REL_TIME);
+        this.relativeTimeNanos = Wrapper.relativeTimeNanos(json);
         this.event = deserializer
                 .apply(json.getJSONObject(JSONNames.JSON_EVENT));
     }
 
+    /**
+     * Get the relative time in nanoseconds from the JSON representation of a
+     * wrapper. Falls back to the relative time in milliseconds for JSON that
+     * was persisted without nanosecond precision.
+     *
+     * @param json
+     *            The JSON representation of a wrapper object.
+     * @return The relative time in nanoseconds.
+     */
+    static long relativeTimeNanos(final JSONObject json) {
+        if (json.has(JSONNames.JSON_REL_TIME_NANOS)) {
+            return json.getLong(JSONNames.JSON_REL_TIME_NANOS);
+        }
+        return TimeUnit.MILLISECONDS
+                .toNanos(json.getLong(JSONNames.JSON_REL_TIME));
+    }
+
     /**
      * Create JSON object of this wrapped event. The JSON consists of the
-     * relative timestamp and the event which will be serialized by the provided
-     * serializer in the parent Capture object.
+     * relative timestamp, both in milliseconds and in nanoseconds, and the
+     * event which will be serialized by the provided serializer in the parent
+     * Capture object.
      *
      * @param serializer
      *            The serializer for the event that is being wrapped.
@@ -86,7 +122,8 @@ public final class Wrapper<T> implements Comparable<Wrapper<T>> {
      */
     public JSONObject toJSON(final Function<T, JSONObject> serializer) {
         final JSONObject json = new JSONObject();
-        json.put(JSONNames.JSON_REL_TIME, this.relativeTimestamp);
+        json.put(JSONNames.JSON_REL_TIME, this.getRelativeTimestamp());
+        json.put(JSONNames.JSON_REL_TIME_NANOS, this.relativeTimeNanos);
         json.put(JSONNames.JSON_EVENT, serializer.apply(this.event));
         return json;
     }
@@ -101,26 +138,36 @@ public final class Wrapper<T> implements Comparable<Wrapper<T>> {
     }
 
     /**
-     * The relative timestamp linked to this event.
+     * The relative timestamp linked to this event, in milliseconds.
      *
      * @return The relative timestamp.
      * @see Capture
      */
     public long getRelativeTimestamp() {
-        return this.relativeTimestamp;
+        return TimeUnit.NANOSECONDS.toMillis(this.relativeTimeNanos);
+    }
+
+    /**
+     * The relative timestamp linked to this event, in nanoseconds.
+     *
+     * @return The relative timestamp.
+     * @see Capture
+     */
+    public long getRelativeTimeNanos() {
+        return this.relativeTimeNanos;
     }
 
     @Override
     public int compareTo(final Wrapper<T> wrapper) {
-        return Long.compare(this.getRelativeTimestamp(),
-                wrapper.getRelativeTimestamp());
+        return Long.compare(this.relativeTimeNanos,
+                wrapper.relativeTimeNanos);
     }
 
     @Override
     public boolean equals(final Object obj) {
         if (obj != null && obj.getClass() == this.getClass()) {
             final Wrapper<?> wrapper = (Wrapper<?>) obj;
-            return this.relativeTimestamp == wrapper.relativeTimestamp
+            return this.relativeTimeNanos == wrapper.relativeTimeNanos
                     && this.event.equals(wrapper.event);
         }
         return false;
@@ -128,6 +175,7 @@ public final class Wrapper<T> implements Comparable<Wrapper<T>> {
 
     @Override
     public int hashCode() {
-        return 13 * (int) this.relativeTimestamp + 17 * this.event.hashCode();
+        return 13 * Long.hashCode(this.relativeTimeNanos)
+                + 17 * this.event.hashCode();
     }
 }
@@ -0,0 +1,172 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+/**
+ * Framer that buffers the read bytes until they contain a complete message.
+ * Subclasses determine where a message ends.
+ *
+ * @author sjdpeste
+ *
+ */
+abstract class BufferedFramer implements Framer {
+
+    /**
+     * The initial size of the buffer, in bytes.
+     */
+    private static final int INITIAL_SIZE = 256;
+
+    /**
+     * The buffered bytes.
+     */
+    private byte[] buffer;
+
+    /**
+     * The index of the first buffered byte.
+     */
+    private int start;
+
+    /**
+     * The index after the last buffered byte.
+     */
+    private int end;
+
+    /**
+     * The time at which the last buffered byte was read.
+     */
+    private long lastRead;
+
+    /**
+     * Create a new BufferedFramer.
+     */
+    BufferedFramer() {
+        this.buffer = new byte[BufferedFramer.INITIAL_SIZE];
+    }
+
+    @Override
+    public void read(final byte[] bytes, final int offset, final int length,
+            final long nanoTime, final Output output) {
+        this.append(bytes, offset, length);
+        this.lastRead = nanoTime;
+        int messageLength = this.messageLength(this.buffer, this.start,
+                this.end - this.start);
+        while (messageLength > 0) {
+            this.emit(messageLength, output);
+            messageLength = this.messageLength(this.buffer, this.start,
+                    this.end - this.start);
+        }
+    }
+
+    @Override
+    public void flush(final Output output) {
+        if (this.end > this.start) {
+            this.emit(this.end - this.start, output);
+        }
+    }
+
+    /**
+     * Get the length of the first message in the buffered bytes.
+     *
+     * @param bytes
+     *            The array containing the buffered bytes.
+     * @param offset
+     *            The index of the first buffered byte.
+     * @param length
+     *            The number of buffered bytes.
+     * @return The number of bytes of the first message, or 0 when the bytes
+     *         do not contain a complete message yet.
+     */
+    abstract int messageLength(byte[] bytes, int offset, int length);
+
+    /**
+     * Indicates whether or not there are buffered bytes.
+     *
+     * @return true if bytes are buffered, false otherwise.
+     */
+    boolean isBuffering() {
+        return this.end > this.start;
+    }
+
+    /**
+     * Get the time at which the last buffered byte was read.
+     *
+     * @return The time, as returned by {@link System#nanoTime()}.
+     */
+    long getLastRead() {
+        return this.lastRead;
+    }
+
+    /**
+     * Pass the first bytes of the buffer to the output as a message.
+     *
+     * @param length
+     *            The number of bytes of the message.
+     * @param output
+     *            The receiver of the message.
+     */
+    private void emit(final int length, final Output output) {
+        output.message(this.buffer, this.start, length, this.lastRead);
+        this.start += length;
+        this.messageEmitted();
+    }
+
+    /**
+     * Called after a message was passed to the output, e.g., to reset the
+     * state of a search.
+     */
+    void messageEmitted() {
+        // No state by default.
+    }
+
+    /**
+     * Add read bytes to the buffer, compacting or growing it when needed.
+     *
+     * @param bytes
+     *            The array containing the read bytes.
+     * @param offset
+     *            The index of the first read byte.
+     * @param length
+     *            The number of read bytes.
+     */
+    private void append(final byte[] bytes, final int offset,
+            final int length) {
+        final int buffered = this.end - this.start;
+        if (this.end + length > this.buffer.length) {
+            if (buffered + length > this.buffer.length) {
+                final byte[] grown = new byte[Math
+                        .max(this.buffer.length * 2, buffered + length)];
+                System.arraycopy(this.buffer, this.start, grown, 0, buffered);
+                this.buffer = grown;
+            } else {
+                System.arraycopy(this.buffer, this.start, this.buffer, 0,
+                        buffered);
+            }
+            this.start = 0;
+            this.end = buffered;
+        }
+        System.arraycopy(bytes, offset, this.buffer, this.end, length);
+        this.end += length;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+/**
+ * Framer for messages that end with a delimiter.
+ *
+ * @author sjdpeste
+ *
+ */
+final class DelimiterFramer extends BufferedFramer {
+
+    /**
+     * The bytes ending a message.
+     */
+    private final byte[] delimiter;
+
+    /**
+     * The number of buffered bytes that were already searched for the
+     * delimiter, so that they are not searched again after the next read.
+     */
+    private int searched;
+
+    /**
+     * Create a new DelimiterFramer.
+     *
+     * @param delimiter
+     *            The bytes ending a message.
+     * @throws IllegalArgumentException
+     *             When the delimiter is empty.
+     */
+    DelimiterFramer(final byte[] delimiter) {
+        if (delimiter.length == 0) {
+            throw new IllegalArgumentException("The delimiter is empty.");
+        }
+        this.delimiter = delimiter.clone();
+    }
+
+    @Override
+    int messageLength(final byte[] bytes, final int offset, final int length) {
+        final int last = length - this.delimiter.length;
+        for (int i = this.searched; i <= last; i++) {
+            if (this.endsAt(bytes, offset + i)) {
+                return i + this.delimiter.length;
+            }
+        }
+        this.searched = Math.max(this.searched, last + 1);
+        return 0;
+    }
+
+    @Override
+    void messageEmitted() {
+        this.searched = 0;
+    }
+
+    /**
+     * Indicates whether or not the delimiter starts at the given index.
+     *
+     * @param bytes
+     *            The array containing the buffered bytes.
+     * @param index
+     *            The index to check.
+     * @return true if the delimiter starts at the index, false otherwise.
+     */
+    private boolean endsAt(final byte[] bytes, final int index) {
+        for (int j = 0; j < this.delimiter.length; j++) {
+            if (bytes[index + j] != this.delimiter[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
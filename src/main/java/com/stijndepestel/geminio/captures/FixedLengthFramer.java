@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+/**
+ * Framer for messages of a fixed length.
+ *
+ * @author sjdpeste
+ *
+ */
+final class FixedLengthFramer extends BufferedFramer {
+
+    /**
+     * The number of bytes of a message.
+     */
+    private final int length;
+
+    /**
+     * Create a new FixedLengthFramer.
+     *
+     * @param length
+     *            The number of bytes of a message.
+     * @throws IllegalArgumentException
+     *             When the length is not positive.
+     */
+    FixedLengthFramer(final int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException(
+                    "The length of a message should be positive.");
+        }
+        this.length = length;
+    }
+
+    @Override
+    int messageLength(final byte[] bytes, final int offset,
+            final int buffered) {
+        return buffered >= this.length ? this.length : 0;
+    }
+
+}
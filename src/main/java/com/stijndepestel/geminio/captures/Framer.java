@@ -0,0 +1,196 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reassembles the bytes read from a port into messages before they are
+ * captured, so that one message of a device is captured as one event instead
+ * of as many small reads. The bytes of the messages are exactly the bytes
+ * that were read, in order, so replaying the messages reproduces the read
+ * data. A framer keeps state between reads and is therefore used for a
+ * single capture only.
+ *
+ * @author sjdpeste
+ *
+ */
+@FunctionalInterface
+public interface Framer {
+
+    /**
+     * Receiver of the messages of a framer.
+     *
+     * @author sjdpeste
+     *
+     */
+    @FunctionalInterface
+    interface Output {
+
+        /**
+         * Receive a complete message.
+         *
+         * @param bytes
+         *            The array containing the message. It is only valid
+         *            during the call.
+         * @param offset
+         *            The index of the first byte of the message.
+         * @param length
+         *            The number of bytes of the message.
+         * @param nanoTime
+         *            The time at which the last byte of the message was read,
+         *            as returned by {@link System#nanoTime()}.
+         */
+        void message(byte[] bytes, int offset, int length, long nanoTime);
+    }
+
+    /**
+     * Handle bytes read from the port, passing every message they complete to
+     * the output.
+     *
+     * @param bytes
+     *            The array containing the read bytes. It can be reused after
+     *            this call.
+     * @param offset
+     *            The index of the first read byte.
+     * @param length
+     *            The number of read bytes.
+     * @param nanoTime
+     *            The time at which the bytes were read, as returned by
+     *            {@link System#nanoTime()}.
+     * @param output
+     *            The receiver of the messages.
+     */
+    void read(byte[] bytes, int offset, int length, long nanoTime,
+            Output output);
+
+    /**
+     * Pass the bytes that do not form a complete message yet to the output as
+     * a message of their own, e.g., when the capture stops.
+     *
+     * @param output
+     *            The receiver of the message.
+     */
+    default void flush(final Output output) {
+        // Nothing is buffered by default.
+    }
+
+    /**
+     * Create a framer that does not reassemble the reads, i.e., every read is
+     * a message.
+     *
+     * @return The framer.
+     */
+    static Framer none() {
+        return (bytes, offset, length, nanoTime, output) -> output
+                .message(bytes, offset, length, nanoTime);
+    }
+
+    /**
+     * Create a framer for messages that end with a delimiter, e.g., a line
+     * feed. The delimiter is part of the message.
+     *
+     * @param delimiter
+     *            The bytes ending a message.
+     * @return The framer.
+     * @throws IllegalArgumentException
+     *             When the delimiter is empty.
+     */
+    static Framer delimiter(final byte... delimiter) {
+        return new DelimiterFramer(delimiter);
+    }
+
+    /**
+     * Create a framer for messages of a fixed length.
+     *
+     * @param length
+     *            The number of bytes of a message.
+     * @return The framer.
+     * @throws IllegalArgumentException
+     *             When the length is not positive.
+     */
+    static Framer fixedLength(final int length) {
+        return new FixedLengthFramer(length);
+    }
+
+    /**
+     * Create a framer for messages that start with their length. The length
+     * is an unsigned integer of 1, 2 or 4 bytes, counting the bytes after it.
+     * The length is part of the message. A length above 1 MiB is treated as
+     * corrupt, see {@link #lengthPrefix(int, ByteOrder, int)}.
+     *
+     * @param prefixLength
+     *            The number of bytes of the length: 1, 2 or 4.
+     * @param order
+     *            The byte order of the length.
+     * @return The framer.
+     * @throws IllegalArgumentException
+     *             When the number of bytes of the length is not 1, 2 or 4.
+     */
+    static Framer lengthPrefix(final int prefixLength, final ByteOrder order) {
+        return new LengthPrefixFramer(prefixLength, order,
+                LengthPrefixFramer.DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Create a framer for messages that start with their length, with a
+     * maximum length. A length above the maximum, e.g., of a corrupt length,
+     * is not waited for: the buffered bytes are then passed on as a message
+     * and the framer starts again with the next read.
+     *
+     * @param prefixLength
+     *            The number of bytes of the length: 1, 2 or 4.
+     * @param order
+     *            The byte order of the length.
+     * @param maxLength
+     *            The maximum number of bytes after the length.
+     * @return The framer.
+     * @throws IllegalArgumentException
+     *             When the number of bytes of the length is not 1, 2 or 4,
+     *             or when the maximum is negative.
+     */
+    static Framer lengthPrefix(final int prefixLength, final ByteOrder order,
+            final int maxLength) {
+        return new LengthPrefixFramer(prefixLength, order, maxLength);
+    }
+
+    /**
+     * Create a framer for messages that are separated by a period without
+     * any bytes being read, i.e., a message ends when no byte follows it
+     * within the timeout.
+     *
+     * @param timeout
+     *            The minimum time between two messages.
+     * @param unit
+     *            The unit of the timeout.
+     * @return The framer.
+     * @throws IllegalArgumentException
+     *             When the timeout is not positive.
+     */
+    static Framer idleTimeout(final long timeout, final TimeUnit unit) {
+        return new IdleTimeoutFramer(unit.toNanos(timeout));
+    }
+
+}
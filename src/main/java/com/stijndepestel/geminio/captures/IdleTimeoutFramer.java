@@ -0,0 +1,72 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+/**
+ * Framer for messages that are separated by a period without any bytes being
+ * read. A message is passed on when the next bytes are read or when the
+ * framer is flushed, but with the time at which its last byte was read.
+ *
+ * @author sjdpeste
+ *
+ */
+final class IdleTimeoutFramer extends BufferedFramer {
+
+    /**
+     * The minimum time between two messages, in nanoseconds.
+     */
+    private final long timeout;
+
+    /**
+     * Create a new IdleTimeoutFramer.
+     *
+     * @param timeout
+     *            The minimum time between two messages, in nanoseconds.
+     * @throws IllegalArgumentException
+     *             When the timeout is not positive.
+     */
+    IdleTimeoutFramer(final long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException(
+                    "The timeout should be positive.");
+        }
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void read(final byte[] bytes, final int offset, final int length,
+            final long nanoTime, final Output output) {
+        if (this.isBuffering()
+                && nanoTime - this.getLastRead() >= this.timeout) {
+            this.flush(output);
+        }
+        super.read(bytes, offset, length, nanoTime, output);
+    }
+
+    @Override
+    int messageLength(final byte[] bytes, final int offset, final int length) {
+        return 0;
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import jssc.SerialPort;
+import jssc.SerialPortEventListener;
+import jssc.SerialPortException;
+
+/**
+ * Port reading from and writing to a serial port using jSSC.
+ *
+ * @author sjdpeste
+ *
+ */
+public final class JsscPort implements Port {
+
+    /**
+     * The amount of integer parameters that can be passed to the serial port.
+     */
+    private static final int SERIAL_PORT_INTEGER_PARAMS_LENGTH = 4;
+    /**
+     * The amount of boolean parameters that can be passed to the serial port.
+     */
+    private static final int SERIAL_PORT_BOOLEAN_PARAMS_LENGTH = 2;
+
+    /**
+     * The largest value of the parity parameter, see
+     * {@link SerialPort#PARITY_SPACE}.
+     */
+    private static final int MAX_PARITY = SerialPort.PARITY_SPACE;
+
+    /**
+     * Name of the serial port (e.g., /dev/ttyUSB0 ).
+     */
+    private final String serialPortName;
+    /**
+     * Parameters of the SerialPort (integers).
+     */
+    private final int[] serialPortParamsInts;
+    /**
+     * Parameters of the SerialPort (booleans).
+     */
+    private final boolean[] serialPortParamsBools;
+    /**
+     * The opened serial port, null when closed.
+     */
+    private SerialPort serialPort;
+
+    /**
+     * Create a new JsscPort with the default parameters of the serial port.
+     *
+     * @param serialPortName
+     *            The name of the serial port.
+     */
+    public JsscPort(final String serialPortName) {
+        this(serialPortName, new int[] {}, new boolean[] {});
+    }
+
+    /**
+     * Create a new JsscPort. The parameters are checked when the port is
+     * opened.
+     *
+     * @param serialPortName
+     *            The name of the serial port.
+     * @param serialPortParamsInts
+     *            Integer parameters for the serial port, see
+     *            {@link jssc.SerialPort#setParams(int, int, int, int, boolean, boolean)}
+     *            , or none to keep the parameters of the port.
+     * @param serialPortParamsBools
+     *            Boolean parameters for the serial port, see
+     *            {@link jssc.SerialPort#setParams(int, int, int, int, boolean, boolean)}
+     *            , or none for the defaults.
+     */
+    public JsscPort(final String serialPortName,
+            final int[] serialPortParamsInts,
+            final boolean[] serialPortParamsBools) {
+        this.serialPortName = serialPortName;
+        this.serialPortParamsInts = serialPortParamsInts.clone();
+        this.serialPortParamsBools = serialPortParamsBools.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Sets the parameters of the serial port, if any.
+     *
+     * @throws IOException
+     *             When the parameters are not valid or are not accepted by the
+     *             serial port, or when the port cannot be opened.
+     */
+    @Override
+    public void open() throws IOException {
+        JsscPort.checkParams(this.serialPortParamsInts,
+                this.serialPortParamsBools);
+        try {
+            this.serialPort = JsscPort.openSerialPort(this.serialPortName,
+                    this.serialPortParamsInts, this.serialPortParamsBools);
+        } catch (final SerialPortException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Writes the backing array of a heap buffer without copying it.
+     */
+    @Override
+    public void write(final ByteBuffer bytes) throws IOException {
+        final byte[] data;
+        if (bytes.hasArray() && bytes.arrayOffset() == 0
+                && bytes.position() == 0
+                && bytes.limit() == bytes.array().length) {
+            data = bytes.array();
+        } else {
+            data = new byte[bytes.remaining()];
+            bytes.duplicate().get(data);
+        }
+        try {
+            if (!this.serialPort.writeBytes(data)) {
+                throw new IOException(
+                        "Could not write to " + this.serialPortName);
+            }
+        } catch (final SerialPortException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void addEventListener(final SerialPortEventListener listener)
+            throws IOException {
+        try {
+            this.serialPort.addEventListener(listener);
+        } catch (final SerialPortException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public byte[] read(final int count) throws IOException {
+        try {
+            return this.serialPort.readBytes(count);
+        } catch (final SerialPortException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.serialPortName;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.serialPort != null) {
+            try {
+                this.serialPort.closePort();
+            } catch (final SerialPortException e) {
+                throw new IOException(e);
+            } finally {
+                this.serialPort = null;
+            }
+        }
+    }
+
+    /**
+     * Check the parameters of the serial port: none, or four integers with a
+     * positive baud rate, five to eight data bits, one, two or one and a half
+     * stop bits and a parity up to space, optionally followed by two booleans.
+     *
+     * @param serialPortParamsInts
+     *            Integer parameters for the serial port.
+     * @param serialPortParamsBools
+     *            Boolean parameters for the serial port.
+     * @throws IOException
+     *             When the parameters are not valid.
+     */
+    static void checkParams(final int[] serialPortParamsInts,
+            final boolean[] serialPortParamsBools) throws IOException {
+        final int ints = serialPortParamsInts.length;
+        final int bools = serialPortParamsBools.length;
+        if (ints == 0 && bools == 0) {
+            return;
+        }
+        if (ints != JsscPort.SERIAL_PORT_INTEGER_PARAMS_LENGTH || bools != 0
+                && bools != JsscPort.SERIAL_PORT_BOOLEAN_PARAMS_LENGTH) {
+            throw new IOException("Expected "
+                    + JsscPort.SERIAL_PORT_INTEGER_PARAMS_LENGTH
+                    + " integer and 0 or "
+                    + JsscPort.SERIAL_PORT_BOOLEAN_PARAMS_LENGTH
+                    + " boolean serial port parameters.");
+        }
+        final int baudRate = serialPortParamsInts[0];
+        final int dataBits = serialPortParamsInts[1];
+        final int stopBits = serialPortParamsInts[2];
+        final int parity = serialPortParamsInts[3];
+        if (baudRate <= 0) {
+            throw new IOException("Invalid baud rate: " + baudRate);
+        }
+        if (dataBits < SerialPort.DATABITS_5
+                || dataBits > SerialPort.DATABITS_8) {
+            throw new IOException("Invalid number of data bits: " + dataBits);
+        }
+        if (stopBits != SerialPort.STOPBITS_1
+                && stopBits != SerialPort.STOPBITS_2
+                && stopBits != SerialPort.STOPBITS_1_5) {
+            throw new IOException("Invalid number of stop bits: " + stopBits);
+        }
+        if (parity < SerialPort.PARITY_NONE || parity > JsscPort.MAX_PARITY) {
+            throw new IOException("Invalid parity: " + parity);
+        }
+    }
+
+    /**
+     * Open a serial port and set its parameters as necessary. The port is
+     * closed again when it does not accept the parameters.
+     *
+     * @param serialPortName
+     *            The name of the serial port.
+     * @param serialPortParamsInts
+     *            Integer parameters for the serial port, ignored unless there
+     *            are four.
+     * @param serialPortParamsBools
+     *            Boolean parameters for the serial port, ignored unless there
+     *            are two.
+     * @return The opened serial port.
+     * @throws SerialPortException
+     *             When the port cannot be opened or configured.
+     */
+    static SerialPort openSerialPort(final String serialPortName,
+            final int[] serialPortParamsInts,
+            final boolean[] serialPortParamsBools)
+            throws SerialPortException {
+        final SerialPort serialPort = new SerialPort(serialPortName);
+        serialPort.openPort();
+        if (serialPortParamsInts.length == JsscPort.SERIAL_PORT_INTEGER_PARAMS_LENGTH) {
+            final boolean accepted;
+            if (serialPortParamsBools.length == JsscPort.SERIAL_PORT_BOOLEAN_PARAMS_LENGTH) {
+                accepted = serialPort.setParams(serialPortParamsInts[0],
+                        serialPortParamsInts[1], serialPortParamsInts[2],
+                        serialPortParamsInts[3], serialPortParamsBools[0],
+                        serialPortParamsBools[1]);
+            } else {
+                accepted = serialPort.setParams(serialPortParamsInts[0],
+                        serialPortParamsInts[1], serialPortParamsInts[2],
+                        serialPortParamsInts[3]);
+            }
+            if (!accepted) {
+                serialPort.closePort();
+                throw new SerialPortException(serialPortName, "setParams",
+                        "Parameters not accepted.");
+            }
+        }
+        return serialPort;
+    }
+
+}
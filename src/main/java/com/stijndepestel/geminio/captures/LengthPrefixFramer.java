@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.nio.ByteOrder;
+
+/**
+ * Framer for messages that start with the number of bytes that follow. A
+ * length above the maximum, e.g., of a corrupt prefix, is not waited for:
+ * the buffered bytes are then passed on as a message, so that the framer
+ * starts again with the next read instead of buffering without limit.
+ *
+ * @author sjdpeste
+ *
+ */
+final class LengthPrefixFramer extends BufferedFramer {
+
+    /**
+     * The default maximum length, 1 MiB.
+     */
+    static final int DEFAULT_MAX_LENGTH = 1 << 20;
+
+    /**
+     * The number of bytes of the length.
+     */
+    private final int prefixLength;
+
+    /**
+     * Flag indicating that the length is stored big endian.
+     */
+    private final boolean bigEndian;
+
+    /**
+     * The maximum number of bytes after the length.
+     */
+    private final int maxLength;
+
+    /**
+     * Create a new LengthPrefixFramer.
+     *
+     * @param prefixLength
+     *            The number of bytes of the length: 1, 2 or 4.
+     * @param order
+     *            The byte order of the length.
+     * @param maxLength
+     *            The maximum number of bytes after the length.
+     * @throws IllegalArgumentException
+     *             When the number of bytes of the length is not 1, 2 or 4,
+     *             or when the maximum is negative.
+     */
+    LengthPrefixFramer(final int prefixLength, final ByteOrder order,
+            final int maxLength) {
+        if (prefixLength != 1 && prefixLength != 2 && prefixLength != 4) {
+            throw new IllegalArgumentException(
+                    "The length should consist of 1, 2 or 4 bytes.");
+        }
+        if (maxLength < 0) {
+            throw new IllegalArgumentException(
+                    "The maximum length should not be negative.");
+        }
+        this.prefixLength = prefixLength;
+        this.bigEndian = order == ByteOrder.BIG_ENDIAN;
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    int messageLength(final byte[] bytes, final int offset, final int length) {
+        if (length < this.prefixLength) {
+            return 0;
+        }
+        long payload = 0;
+        for (int i = 0; i < this.prefixLength; i++) {
+            final int index = this.bigEndian ? i : this.prefixLength - 1 - i;
+            payload = payload << 8 | bytes[offset + index] & 0xFF;
+        }
+        if (payload > this.maxLength) {
+            return length;
+        }
+        final long messageLength = this.prefixLength + payload;
+        return messageLength <= length ? (int) messageLength : 0;
+    }
+
+}
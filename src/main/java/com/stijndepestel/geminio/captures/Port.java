@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import jssc.SerialPortEventListener;
+
+/**
+ * Port that replayed bytes are written to and captured bytes are read from,
+ * e.g., a serial port. Allows a replay or a capture to be tested against an
+ * in-memory stand-in instead of real hardware.
+ *
+ * @author sjdpeste
+ *
+ */
+public interface Port {
+
+    /**
+     * Open the port.
+     *
+     * @throws IOException
+     *             When the port cannot be opened.
+     */
+    void open() throws IOException;
+
+    /**
+     * Write bytes to the port.
+     *
+     * @param bytes
+     *            The bytes to write, from the position to the limit. The
+     *            buffer is only valid during the call and should not be
+     *            modified.
+     * @throws IOException
+     *             When writing fails.
+     */
+    void write(ByteBuffer bytes) throws IOException;
+
+    /**
+     * Listen to the events of the opened port, e.g., the arrival of bytes.
+     * The listener is removed when the port is closed.
+     *
+     * @param listener
+     *            Called with every event of the port, on the event thread of
+     *            the port.
+     * @throws IOException
+     *             When the listener cannot be added.
+     */
+    void addEventListener(SerialPortEventListener listener) throws IOException;
+
+    /**
+     * Read bytes that have arrived at the port.
+     *
+     * @param count
+     *            The number of bytes to read, e.g., the value of a
+     *            {@link jssc.SerialPortEvent#RXCHAR} event.
+     * @return The read bytes, or null when no bytes were read.
+     * @throws IOException
+     *             When reading fails.
+     */
+    byte[] read(int count) throws IOException;
+
+    /**
+     * Close the port.
+     *
+     * @throws IOException
+     *             When the port cannot be closed.
+     */
+    void close() throws IOException;
+
+}
@@ -23,10 +23,16 @@
  */
 package com.stijndepestel.geminio.captures;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Optional;
-import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -34,9 +40,9 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.stijndepestel.geminio.Capture;
+import com.stijndepestel.geminio.ByteCapture;
+import com.stijndepestel.geminio.EventSink;
 
-import jssc.SerialPort;
 import jssc.SerialPortEvent;
 import jssc.SerialPortException;
 
@@ -56,35 +62,55 @@ public final class SerialPortCapture {
             .getLogger(SerialPortCapture.class);
 
     /**
-     * The amount of integer parameters that can be passed to the serial port.
+     * Key of the Base64 encoded bytes of an event in the JSON format.
      */
-    private static final int SERIAL_PORT_INTEGER_PARAMS_LENGTH = 4;
-    /**
-     * The amount of boolean parameters that can be passed to the serial port.
-     */
-    private static final int SERIAL_PORT_BOOLEAN_PARAMS_LENGTH = 2;
+    static final String JSON_BYTES = "bytearray";
 
     /**
-     * Name of the serial port (e.g., /dev/ttyUSB0 ).
+     * Error message when the capture is in the wrong state.
      */
-    private final String serialPortName;
+    private static final String ERROR_MESSAGE = "Object is not in the right state.";
+
     /**
-     * Parameters of the SerialPort (integers).
+     * Value of the maximum duration when the capture is not stopped
+     * automatically.
      */
-    private final int[] serialPortParamsInts;
+    private static final long UNLIMITED = 0L;
+
     /**
-     * Parameters of the SerialPort (booleans).
+     * The port on which to capture data.
      */
-    private final boolean[] serialPortParamsBools;
+    private final Port port;
     /**
      * Filter for the captured events. Can be used to prevent certain
      * SerialPortEvents to be captured.
      */
     private final Optional<Function<SerialPortEvent, Boolean>> filter;
     /**
-     * Persister for the captured data.
+     * Creates the capture for the data, which persists it.
+     */
+    private final Supplier<ByteCapture> capture;
+    /**
+     * Creates the framer that reassembles the reads into messages.
+     */
+    private Supplier<? extends Framer> framer;
+    /**
+     * The maximum duration of the capture in nanoseconds, or
+     * {@link #UNLIMITED}.
+     */
+    private long maxDuration;
+    /**
+     * The maximum number of captured events.
      */
-    private final Consumer<JSONObject> persister;
+    private int maxEvents;
+    /**
+     * The running capture, if any.
+     */
+    private Optional<Session> session;
+    /**
+     * Counted down when the last started capture has stopped.
+     */
+    private volatile CountDownLatch stopped;
 
     /**
      * Create a new SerialPortCapture.
@@ -96,8 +122,8 @@ public final class SerialPortCapture {
      */
     public SerialPortCapture(final String serialPortName,
             final Consumer<JSONObject> persister) {
-        this(serialPortName, persister, Optional.empty(), new int[] {},
-                new boolean[] {});
+        this(new JsscPort(serialPortName),
+                SerialPortCapture.jsonCapture(persister), Optional.empty());
     }
 
     /**
@@ -114,8 +140,8 @@ public final class SerialPortCapture {
     public SerialPortCapture(final String serialPortName,
             final Consumer<JSONObject> persister,
             final Function<SerialPortEvent, Boolean> filter) {
-        this(serialPortName, persister, Optional.of(filter), new int[] {},
-                new boolean[] {});
+        this(new JsscPort(serialPortName),
+                SerialPortCapture.jsonCapture(persister), Optional.of(filter));
     }
 
     /**
@@ -136,8 +162,9 @@ public final class SerialPortCapture {
             final Consumer<JSONObject> persister,
             final Function<SerialPortEvent, Boolean> filter,
             final int[] serialPortParamsInts) {
-        this(serialPortName, persister, Optional.of(filter),
-                serialPortParamsInts, new boolean[] {});
+        this(new JsscPort(serialPortName, serialPortParamsInts,
+                new boolean[] {}), SerialPortCapture.jsonCapture(persister),
+                Optional.of(filter));
     }
 
     /**
@@ -164,8 +191,9 @@ public final class SerialPortCapture {
             final Function<SerialPortEvent, Boolean> filter,
             final int[] serialPortParamsInts,
             final boolean[] serialPortParamsBools) {
-        this(serialPortName, persister, Optional.of(filter),
-                serialPortParamsInts, serialPortParamsBools);
+        this(new JsscPort(serialPortName, serialPortParamsInts,
+                serialPortParamsBools),
+                SerialPortCapture.jsonCapture(persister), Optional.of(filter));
     }
 
     /**
@@ -187,21 +215,38 @@ public final class SerialPortCapture {
             final Consumer<JSONObject> persister,
             final int[] serialPortParamsInts,
             final boolean[] serialPortParamsBools) {
-        this(serialPortName, persister, Optional.empty(), serialPortParamsInts,
-                serialPortParamsBools);
+        this(new JsscPort(serialPortName, serialPortParamsInts,
+                serialPortParamsBools),
+                SerialPortCapture.jsonCapture(persister), Optional.empty());
     }
 
     /**
-     * Create a new SerialPortCapture. Internal use.
+     * Create a new SerialPortCapture that writes the captured bytes to a sink,
+     * e.g., a binary sink, without boxing or encoding them. Every start of
+     * the capture writes to a new sink, since stopping the capture closes
+     * its sink.
      *
      * @param serialPortName
      *            The name of the serial port on which to capture data.
-     * @param persister
-     *            The persister for the captured data.
-     * @param filter
-     *            A filter for the received serial port events to filter out
-     *            events which should not be captured. This is an Optional field
-     *            since a filter is not obliged to exist.
+     * @param sinks
+     *            Creates the sink for the captured data of a capture.
+     * @see com.stijndepestel.geminio.Persister#binarySink()
+     */
+    public SerialPortCapture(final String serialPortName,
+            final Supplier<EventSink<ByteBuffer>> sinks) {
+        this(new JsscPort(serialPortName), SerialPortCapture.sinkCapture(sinks),
+                Optional.empty());
+    }
+
+    /**
+     * Create a new SerialPortCapture that writes the captured bytes to a sink,
+     * e.g., a binary sink, without boxing or encoding them. Every start of
+     * the capture writes to a new sink.
+     *
+     * @param serialPortName
+     *            The name of the serial port on which to capture data.
+     * @param sinks
+     *            Creates the sink for the captured data of a capture.
      * @param serialPortParamsInts
      *            Integer parameters for the serial port, see
      *            {@link jssc.SerialPort#setParams(int, int, int, int, boolean, boolean)}
@@ -210,113 +255,415 @@ public final class SerialPortCapture {
      *            Boolean parameters for the serial port, see
      *            {@link jssc.SerialPort#setParams(int, int, int, int, boolean, boolean)}
      */
-    private SerialPortCapture(final String serialPortName,
-            final Consumer<JSONObject> persister,
-            final Optional<Function<SerialPortEvent, Boolean>> filter,
+    public SerialPortCapture(final String serialPortName,
+            final Supplier<EventSink<ByteBuffer>> sinks,
             final int[] serialPortParamsInts,
             final boolean[] serialPortParamsBools) {
-        // TODO check serial port parameters
-        this.serialPortName = serialPortName;
-        this.persister = persister;
-        this.serialPortParamsInts = serialPortParamsInts.clone();
-        this.serialPortParamsBools = serialPortParamsBools.clone();
+        this(new JsscPort(serialPortName, serialPortParamsInts,
+                serialPortParamsBools), SerialPortCapture.sinkCapture(sinks),
+                Optional.empty());
+    }
+
+    /**
+     * Create a new SerialPortCapture on a port, e.g., a {@link JsscPort}.
+     *
+     * @param port
+     *            The port on which to capture data.
+     * @param persister
+     *            The persister for the captured data.
+     */
+    public SerialPortCapture(final Port port,
+            final Consumer<JSONObject> persister) {
+        this(port, SerialPortCapture.jsonCapture(persister), Optional.empty());
+    }
+
+    /**
+     * Create a new SerialPortCapture on a port, e.g., a {@link JsscPort}.
+     *
+     * @param port
+     *            The port on which to capture data.
+     * @param persister
+     *            The persister for the captured data.
+     * @param filter
+     *            A filter for the received serial port events to filter out
+     *            events which should not be captured.
+     */
+    public SerialPortCapture(final Port port,
+            final Consumer<JSONObject> persister,
+            final Function<SerialPortEvent, Boolean> filter) {
+        this(port, SerialPortCapture.jsonCapture(persister),
+                Optional.of(filter));
+    }
+
+    /**
+     * Create a new SerialPortCapture on a port, e.g., a {@link JsscPort},
+     * that writes the captured bytes to a sink. Every start of the capture
+     * writes to a new sink.
+     *
+     * @param port
+     *            The port on which to capture data.
+     * @param sinks
+     *            Creates the sink for the captured data of a capture.
+     */
+    public SerialPortCapture(final Port port,
+            final Supplier<EventSink<ByteBuffer>> sinks) {
+        this(port, SerialPortCapture.sinkCapture(sinks), Optional.empty());
+    }
+
+    /**
+     * Create a new SerialPortCapture. Internal use.
+     *
+     * @param port
+     *            The port on which to capture data.
+     * @param capture
+     *            Creates the capture for the data.
+     * @param filter
+     *            A filter for the received serial port events to filter out
+     *            events which should not be captured. This is an Optional field
+     *            since a filter is not obliged to exist.
+     */
+    private SerialPortCapture(final Port port,
+            final Supplier<ByteCapture> capture,
+            final Optional<Function<SerialPortEvent, Boolean>> filter) {
+        this.port = port;
+        this.capture = capture;
         this.filter = filter;
+        this.framer = Framer::none;
+        this.maxDuration = SerialPortCapture.UNLIMITED;
+        this.maxEvents = Integer.MAX_VALUE;
+        this.session = Optional.empty();
+        this.stopped = new CountDownLatch(0);
+    }
 
+    /**
+     * Set the framer that reassembles the bytes read from the serial port
+     * into messages, so that every message is captured as one event. By
+     * default, every read is captured as an event. Should be set before
+     * starting the capture.
+     *
+     * @param framer
+     *            Creates the framer for a capture, e.g.,
+     *            {@code () -> Framer.delimiter((byte) '\n')}.
+     */
+    public void setFramer(final Supplier<? extends Framer> framer) {
+        this.framer = framer;
     }
 
     /**
-     * Start the capture on the serial port.
+     * Stop the capture automatically after the given duration. Should be set
+     * before starting the capture.
+     *
+     * @param duration
+     *            The maximum duration of the capture.
+     * @param unit
+     *            The unit of the duration.
+     * @throws IllegalArgumentException
+     *             When the duration is not positive.
+     */
+    public void setMaxDuration(final long duration, final TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException(
+                    "The duration should be positive.");
+        }
+        this.maxDuration = unit.toNanos(duration);
+    }
+
+    /**
+     * Stop the capture automatically after capturing the given number of
+     * events. Should be set before starting the capture.
+     *
+     * @param maxEvents
+     *            The maximum number of captured events.
+     * @throws IllegalArgumentException
+     *             When the number of events is not positive.
+     */
+    public void setMaxEvents(final int maxEvents) {
+        if (maxEvents <= 0) {
+            throw new IllegalArgumentException(
+                    "The number of events should be positive.");
+        }
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * Start the capture on the serial port. Returns immediately; the data is
+     * captured until {@link #stop()} is called or until the maximum duration
+     * or number of events is reached.
      *
      * @throws SerialPortException
      *             When something went wrong during the start of the capture.
+     * @throws IllegalStateException
+     *             When the capture is already running.
+     */
+    public synchronized void start() throws SerialPortException {
+        if (this.session.isPresent()) {
+            throw new IllegalStateException(SerialPortCapture.ERROR_MESSAGE);
+        }
+        try {
+            this.port.open();
+        } catch (final IOException e) {
+            throw this.serialPortException("open", e);
+        }
+        final Session session = new Session();
+        try {
+            this.port.addEventListener(event -> this.read(session, event));
+        } catch (final IOException e) {
+            session.close();
+            throw this.serialPortException("addEventListener", e);
+        }
+        if (this.maxDuration != SerialPortCapture.UNLIMITED) {
+            session.scheduleStop(this.maxDuration);
+        }
+        this.stopped = new CountDownLatch(1);
+        this.session = Optional.of(session);
+    }
+
+    /**
+     * Convert a failure of the port to the exception of the serial port.
+     *
+     * @param method
+     *            The method of the port that failed.
+     * @param e
+     *            The failure of the port.
+     * @return The exception of the serial port that caused the failure, if
+     *         any, or else a new one describing it.
+     */
+    private SerialPortException serialPortException(final String method,
+            final IOException e) {
+        if (e.getCause() instanceof SerialPortException) {
+            return (SerialPortException) e.getCause();
+        }
+        return new SerialPortException(String.valueOf(this.port), method,
+                e.getMessage());
+    }
+
+    /**
+     * Stop the capture, close the serial port and persist the captured data.
+     *
+     * @return true if the capture was stopped, false if it was not running.
      */
-    public void start() throws SerialPortException {
-        // Create capture object.
-        final Capture<Byte[]> capture = new Capture<>(
-                arr -> new JSONObject().put("bytearray",
-                        DatatypeConverter.printBase64Binary(
-                                SerialPortCapture.unboxByteArray(arr))),
-                this.persister);
-
-        // CCreate serial port
-        final SerialPort serialPort = new SerialPort(this.serialPortName);
-        serialPort.openPort();
-
-        // Set parameters as necessary.
-        if (this.serialPortParamsInts.length == SerialPortCapture.SERIAL_PORT_INTEGER_PARAMS_LENGTH) {
-            if (this.serialPortParamsBools.length == SerialPortCapture.SERIAL_PORT_BOOLEAN_PARAMS_LENGTH) {
-                serialPort.setParams(this.serialPortParamsInts[0],
-                        this.serialPortParamsInts[1],
-                        this.serialPortParamsInts[2],
-                        this.serialPortParamsInts[3],
-                        this.serialPortParamsBools[0],
-                        this.serialPortParamsBools[1]);
+    public synchronized boolean stop() {
+        if (!this.session.isPresent()) {
+            return false;
+        }
+        this.session.get().close();
+        this.session = Optional.empty();
+        this.stopped.countDown();
+        return true;
+    }
+
+    /**
+     * Stop the capture if the given session is still running, e.g., when its
+     * maximum duration has elapsed.
+     *
+     * @param running
+     *            The session to stop.
+     */
+    private synchronized void stop(final Session running) {
+        if (this.session.isPresent() && this.session.get() == running) {
+            this.stop();
+        }
+    }
+
+    /**
+     * Indicates whether or not the capture is running.
+     *
+     * @return true if the capture is running, false otherwise.
+     */
+    public synchronized boolean isCapturing() {
+        return this.session.isPresent();
+    }
+
+    /**
+     * Wait until the capture has stopped, e.g., because the maximum duration
+     * or number of events was reached.
+     *
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The unit of the timeout.
+     * @return true if the capture has stopped, false if the timeout elapsed.
+     * @throws InterruptedException
+     *             When interrupted while waiting.
+     */
+    public boolean awaitStop(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        return this.stopped.await(timeout, unit);
+    }
+
+    /**
+     * Indicates whether or not the capture stops automatically.
+     *
+     * @return true if a maximum duration or number of events is set, false
+     *         otherwise.
+     */
+    private boolean stopsAutomatically() {
+        return this.maxDuration != SerialPortCapture.UNLIMITED
+                || this.maxEvents != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Read the bytes of a serial port event, unless the filter rejects it.
+     *
+     * @param session
+     *            The running capture.
+     * @param event
+     *            The serial port event.
+     */
+    private void read(final Session session, final SerialPortEvent event) {
+        if (this.filter.isPresent() && !this.filter.get().apply(event)) {
+            return;
+        }
+        try {
+            final byte[] bytes = this.port.read(event.getEventValue());
+            if (bytes != null) {
+                session.read(bytes, System.nanoTime());
+            }
+        } catch (final IOException e) {
+            SerialPortCapture.LOGGER.error(
+                    "Something went wrong while reading the serial port input.",
+                    e);
+        }
+    }
+
+    /**
+     * A running capture on the serial port.
+     *
+     * @author sjdpeste
+     *
+     */
+    private final class Session implements Framer.Output {
+
+        /**
+         * The capture of the messages.
+         */
+        private final ByteCapture capture;
+
+        /**
+         * The framer reassembling the reads into messages.
+         */
+        private final Framer framer;
+
+        /**
+         * Executes the automatic stop, if any.
+         */
+        private final Optional<ScheduledExecutorService> timer;
+
+        /**
+         * Flag indicating that the session is closed, after which reads are
+         * ignored. Guarded by this session.
+         */
+        private boolean closed;
+
+        /**
+         * Create and start a new Session on the opened port.
+         */
+        Session() {
+            this.capture = SerialPortCapture.this.capture.get();
+            this.framer = SerialPortCapture.this.framer.get();
+            if (!SerialPortCapture.this.stopsAutomatically()) {
+                this.timer = Optional.empty();
             } else {
-                serialPort.setParams(this.serialPortParamsInts[0],
-                        this.serialPortParamsInts[1],
-                        this.serialPortParamsInts[2],
-                        this.serialPortParamsInts[3]);
+                this.timer = Optional
+                        .of(Executors.newSingleThreadScheduledExecutor(r -> {
+                            final Thread thread = new Thread(r);
+                            thread.setDaemon(true);
+                            return thread;
+                        }));
+            }
+            this.capture.startCapture();
+        }
+
+        /**
+         * Pass read bytes to the framer.
+         *
+         * @param bytes
+         *            The read bytes.
+         * @param readTime
+         *            The time at which the bytes were read.
+         */
+        synchronized void read(final byte[] bytes, final long readTime) {
+            if (!this.closed) {
+                this.framer.read(bytes, 0, bytes.length, readTime, this);
             }
         }
 
-        // Set event listener
-        serialPort.addEventListener(event -> {
-            this.filter.ifPresent(f -> {
-                if (!f.apply(event)) {
-                    return;
+        @Override
+        public void message(final byte[] bytes, final int offset,
+                final int length, final long nanoTime) {
+            final int captured = this.capture.getNumberOfCapturedEvents();
+            if (captured < SerialPortCapture.this.maxEvents) {
+                this.capture.capture(bytes, offset, length, nanoTime);
+                if (captured + 1 == SerialPortCapture.this.maxEvents) {
+                    this.scheduleStop(0);
                 }
-            });
+            }
+        }
+
+        /**
+         * Stop the capture after a delay, on the timer thread, so that the
+         * serial port is not closed from its own event thread.
+         *
+         * @param delay
+         *            The delay in nanoseconds.
+         */
+        void scheduleStop(final long delay) {
+            this.timer.ifPresent(t -> t.schedule(
+                    () -> SerialPortCapture.this.stop(this), delay,
+                    TimeUnit.NANOSECONDS));
+        }
+
+        /**
+         * Close the serial port, capture the last, incomplete message and
+         * persist the captured data.
+         */
+        void close() {
             try {
-                System.out.print("x");
-                final int nrOfBytes = event.getEventValue();
-                capture.capture(SerialPortCapture
-                        .boxByteArray(serialPort.readBytes(nrOfBytes)));
-            } catch (final SerialPortException e) {
+                SerialPortCapture.this.port.close();
+            } catch (final IOException e) {
                 SerialPortCapture.LOGGER.error(
-                        "Something went wrong while reading the serial port input.",
+                        "Something went wrong while closing the serial port.",
                         e);
             }
-        });
-
-        final Scanner scan = new Scanner(System.in);
-        System.out.println("Starting capture. Press return to stop.");
-        capture.startCapture();
-        // wait for return
-        scan.nextLine();
-        // stop capture
-        capture.stopCapture();
-        capture.saveEvents();
-        scan.close();
+            synchronized (this) {
+                this.closed = true;
+                this.framer.flush(this);
+            }
+            this.capture.stopCapture();
+            this.capture.saveEvents();
+            this.timer.ifPresent(ScheduledExecutorService::shutdownNow);
+        }
     }
 
     /**
-     * Box the byte array into a wrapper class array.
+     * Create the supplier of a capture that persists the data as JSON, with
+     * the bytes of every event encoded in Base64.
      *
-     * @param arr
-     *            The array of the primitive types.
-     * @return The array of the wrapper types.
-     */
-    private static Byte[] boxByteArray(final byte[] arr) {
-        final Byte[] boxedBytes = new Byte[arr.length];
-        for (int i = 0; i < arr.length; i++) {
-            boxedBytes[i] = Byte.valueOf(arr[i]);
-        }
-        return boxedBytes;
+     * @param persister
+     *            The persister for the captured data.
+     * @return The supplier of the capture.
+     */
+    private static Supplier<ByteCapture> jsonCapture(
+            final Consumer<JSONObject> persister) {
+        return () -> new ByteCapture(bytes -> {
+            final byte[] copy = new byte[bytes.remaining()];
+            bytes.duplicate().get(copy);
+            return new JSONObject().put(SerialPortCapture.JSON_BYTES,
+                    DatatypeConverter.printBase64Binary(copy));
+        }, persister);
     }
 
     /**
-     * Unbox the byte array into a primitive type array.
+     * Create the supplier of a capture that writes the captured bytes to a
+     * new sink.
      *
-     * @param arr
-     *            The array of the wrapper types.
-     * @return The array of the primitive types.
-     */
-    private static byte[] unboxByteArray(final Byte[] arr) {
-        final byte[] unboxedBytes = new byte[arr.length];
-        for (int i = 0; i < arr.length; i++) {
-            unboxedBytes[i] = arr[i].byteValue();
-        }
-        return unboxedBytes;
+     * @param sinks
+     *            Creates the sink for the captured data of a capture.
+     * @return The supplier of the capture.
+     */
+    private static Supplier<ByteCapture> sinkCapture(
+            final Supplier<EventSink<ByteBuffer>> sinks) {
+        return () -> new ByteCapture(sinks.get());
     }
 
 }
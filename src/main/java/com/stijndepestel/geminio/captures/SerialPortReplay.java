@@ -0,0 +1,241 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.stijndepestel.geminio.EventSource;
+import com.stijndepestel.geminio.Replay;
+import com.stijndepestel.geminio.ReplayEvent;
+import com.stijndepestel.geminio.ReplayListener;
+import com.stijndepestel.geminio.WaitStrategy;
+
+/**
+ * Class to replay captured data onto a serial port, or any other port. Every
+ * captured chunk of bytes is written to the port at its captured offset,
+ * using the precise wait strategy. The offsets count from the first write, so
+ * that a first write that is late while the replay thread starts does not
+ * shorten the time to the next writes.
+ *
+ * @author sjdpeste
+ *
+ */
+public final class SerialPortReplay {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(SerialPortReplay.class);
+
+    /**
+     * The port to write the data to.
+     */
+    private final Port port;
+
+    /**
+     * The replay of the captured data.
+     */
+    private final Replay<ByteBuffer> replay;
+
+    /**
+     * Flag indicating that the replay is loaded, but not started. Guarded by
+     * this.
+     */
+    private boolean loaded;
+
+    /**
+     * Flag indicating that the replay was started at least once. Guarded by
+     * this.
+     */
+    private boolean started;
+
+    /**
+     * Create a new SerialPortReplay for data captured in a sink, e.g., a
+     * binary capture.
+     *
+     * @param port
+     *            The port to write the data to, e.g., a {@link JsscPort}.
+     * @param source
+     *            Supplies the source of the captured data.
+     * @see com.stijndepestel.geminio.Persister#binarySource()
+     */
+    public SerialPortReplay(final Port port,
+            final Supplier<? extends EventSource<ByteBuffer>> source) {
+        this(port, new Replay<ByteBuffer>(source, Function.identity(),
+                bytes -> {
+                }));
+    }
+
+    /**
+     * Create a new SerialPortReplay for data captured as JSON by a
+     * {@link SerialPortCapture}.
+     *
+     * @param port
+     *            The port to write the data to, e.g., a {@link JsscPort}.
+     * @param loader
+     *            Supplies the JSONObject containing the captured data.
+     * @return The new SerialPortReplay.
+     */
+    public static SerialPortReplay ofJSON(final Port port,
+            final Supplier<JSONObject> loader) {
+        return new SerialPortReplay(port,
+                new Replay<>(SerialPortReplay::decode, loader, bytes -> {
+                }));
+    }
+
+    /**
+     * Create a new SerialPortReplay.
+     *
+     * @param port
+     *            The port to write the data to.
+     * @param replay
+     *            The replay of the captured data.
+     */
+    private SerialPortReplay(final Port port,
+            final Replay<ByteBuffer> replay) {
+        this.port = port;
+        this.replay = replay;
+        this.replay.setEventCatcher(this::write);
+        this.replay.setWaitStrategy(WaitStrategy.PRECISE);
+        this.replay.setAnchoredStart(true);
+        this.replay.addReplayListener(new ReplayListener() {
+
+            @Override
+            public void replayEnded(final ReplayEvent event) {
+                SerialPortReplay.this.closePort();
+            }
+
+            @Override
+            public void replayFailed(final ReplayEvent event) {
+                SerialPortReplay.this.closePort();
+            }
+        });
+    }
+
+    /**
+     * Get the replay of the captured data, e.g., to change its speed or to add
+     * listeners before starting it.
+     *
+     * @return The replay.
+     */
+    public Replay<ByteBuffer> getReplay() {
+        return this.replay;
+    }
+
+    /**
+     * Load the captured data, open the port and start replaying the data onto
+     * it. The port is closed when the replay has ended. Can be called again
+     * after the replay has ended to replay the data again, or after the port
+     * could not be opened.
+     *
+     * @throws IOException
+     *             When the port cannot be opened.
+     * @throws IllegalStateException
+     *             When the replay is running.
+     */
+    public synchronized void start() throws IOException {
+        if (!this.loaded) {
+            if (this.replay.hasEnded()) {
+                this.replay.reset();
+            } else {
+                this.replay.load();
+            }
+            this.loaded = true;
+        }
+        this.port.open();
+        try {
+            this.replay.startReplay();
+        } catch (final RuntimeException e) {
+            this.closePort();
+            throw e;
+        }
+        this.loaded = false;
+        this.started = true;
+    }
+
+    /**
+     * Stop replaying. The port is closed when the replay has stopped.
+     *
+     * @return true if the stop was requested, false if the replay was not
+     *         running.
+     */
+    public synchronized boolean stop() {
+        if (!this.started || this.loaded) {
+            return false;
+        }
+        return this.replay.stopReplay();
+    }
+
+    /**
+     * Write replayed bytes to the port. Stops the replay when writing fails.
+     *
+     * @param bytes
+     *            The replayed bytes.
+     */
+    private void write(final ByteBuffer bytes) {
+        try {
+            this.port.write(bytes);
+        } catch (final IOException e) {
+            SerialPortReplay.LOGGER.error(
+                    "Something went wrong while writing to the port.", e);
+            this.replay.stopReplay();
+        }
+    }
+
+    /**
+     * Close the port after the replay.
+     */
+    private void closePort() {
+        try {
+            this.port.close();
+        } catch (final IOException e) {
+            SerialPortReplay.LOGGER
+                    .error("Something went wrong while closing the port.", e);
+        }
+    }
+
+    /**
+     * Decode the Base64 encoded bytes of an event captured as JSON by a
+     * {@link SerialPortCapture}.
+     *
+     * @param json
+     *            The captured event.
+     * @return The captured bytes.
+     */
+    private static ByteBuffer decode(final JSONObject json) {
+        final String bytes = json.getString(SerialPortCapture.JSON_BYTES);
+        return ByteBuffer.wrap(DatatypeConverter.parseBase64Binary(bytes));
+    }
+
+}
@@ -0,0 +1,701 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.stijndepestel.geminio.ByteCapture;
+import com.stijndepestel.geminio.EventSink;
+
+/**
+ * Class to capture the data received on TCP connections and UDP sockets. All
+ * channels are handled by a single thread using a selector, reading into one
+ * direct buffer, so that many connections can be captured at once. The data
+ * of every connection and of every UDP sender is captured in a sink of its
+ * own, relative to the same start. The sinks are written on a writer thread,
+ * so that a slow sink does not delay the reads.
+ *
+ * @author sjdpeste
+ *
+ */
+public final class SocketCapture {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(SocketCapture.class);
+
+    /**
+     * Error message when the capture is in the wrong state.
+     */
+    private static final String ERROR_MESSAGE = "Object is not in the right state.";
+
+    /**
+     * The size of the read buffer, which holds the largest UDP datagram.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The size of a chunk of the capture of a remote address, kept small
+     * since many remote addresses can be captured at once.
+     */
+    private static final int CHUNK_SIZE = 1 << 12;
+
+    /**
+     * The number of chunks of the capture of a remote address that are kept
+     * in memory before they are written to its sink.
+     */
+    private static final int MAX_CHUNKS = 16;
+
+    /**
+     * Creates the sink for the data of a remote address, given its sequence
+     * number.
+     */
+    private final BiFunction<? super SocketAddress, Integer, ? extends EventSink<ByteBuffer>> sinks;
+
+    /**
+     * The number of recordings created by this capture, which numbers the
+     * next recording.
+     */
+    private final AtomicInteger recordings;
+
+    /**
+     * The local addresses on which to accept TCP connections.
+     */
+    private final List<SocketAddress> tcpListenAddresses;
+
+    /**
+     * The remote addresses to open TCP connections to.
+     */
+    private final List<SocketAddress> tcpConnectAddresses;
+
+    /**
+     * The local addresses on which to receive UDP datagrams.
+     */
+    private final List<SocketAddress> udpAddresses;
+
+    /**
+     * The local addresses that the channels are bound to while capturing.
+     */
+    private final List<SocketAddress> localAddresses;
+
+    /**
+     * The buffer that all channels are read into.
+     */
+    private final ByteBuffer readBuffer;
+
+    /**
+     * The array that the read bytes are copied to for the framers.
+     */
+    private final byte[] readBytes;
+
+    /**
+     * The number of captured events.
+     */
+    private final AtomicInteger capturedEvents;
+
+    /**
+     * Creates the framer that reassembles the data of a TCP connection into
+     * messages.
+     */
+    private Supplier<? extends Framer> framer;
+
+    /**
+     * The thread running the selector loop while capturing.
+     */
+    private Optional<Thread> selectorThread;
+
+    /**
+     * The writer of the sinks of the last started capture, if any.
+     */
+    private Optional<ExecutorService> writer;
+
+    /**
+     * The selector of the running capture, if any.
+     */
+    private Optional<Selector> selector;
+
+    /**
+     * Flag indicating that the selector loop should keep running.
+     */
+    private volatile boolean running;
+
+    /**
+     * The start of the capture, as returned by {@link System#nanoTime()}.
+     */
+    private long captureStart;
+
+    /**
+     * Create a new SocketCapture.
+     *
+     * @param sinks
+     *            Creates the sink for the data of a connection or a UDP
+     *            sender, given its remote address and a sequence number, e.g.,
+     *            a binary sink writing to a file named after both. The
+     *            sequence number is unique for this capture, also when the
+     *            same remote address connects again or the capture is
+     *            restarted.
+     * @see com.stijndepestel.geminio.Persister#binarySink()
+     */
+    public SocketCapture(
+            final BiFunction<? super SocketAddress, Integer, ? extends EventSink<ByteBuffer>> sinks) {
+        this.sinks = sinks;
+        this.recordings = new AtomicInteger();
+        this.tcpListenAddresses = new ArrayList<>();
+        this.tcpConnectAddresses = new ArrayList<>();
+        this.udpAddresses = new ArrayList<>();
+        this.localAddresses = new ArrayList<>();
+        this.readBuffer = ByteBuffer.allocateDirect(SocketCapture.BUFFER_SIZE);
+        this.readBytes = new byte[SocketCapture.BUFFER_SIZE];
+        this.capturedEvents = new AtomicInteger();
+        this.framer = Framer::none;
+        this.selectorThread = Optional.empty();
+        this.writer = Optional.empty();
+        this.selector = Optional.empty();
+    }
+
+    /**
+     * Accept TCP connections on a local address and capture the data they
+     * receive. Should be called before starting the capture.
+     *
+     * @param local
+     *            The local address, e.g., with port 0 to use any free port.
+     */
+    public synchronized void listenTcp(final SocketAddress local) {
+        this.tcpListenAddresses.add(local);
+    }
+
+    /**
+     * Open a TCP connection to a remote address, e.g., a device, and capture
+     * the data it receives. Should be called before starting the capture.
+     *
+     * @param remote
+     *            The remote address.
+     */
+    public synchronized void connectTcp(final SocketAddress remote) {
+        this.tcpConnectAddresses.add(remote);
+    }
+
+    /**
+     * Capture the UDP datagrams received on a local address. Every datagram
+     * is captured as one event. Should be called before starting the capture.
+     *
+     * @param local
+     *            The local address, e.g., with port 0 to use any free port.
+     */
+    public synchronized void bindUdp(final SocketAddress local) {
+        this.udpAddresses.add(local);
+    }
+
+    /**
+     * Set the framer that reassembles the data of a TCP connection into
+     * messages, so that every message is captured as one event. By default,
+     * every read is captured as an event. Should be set before starting the
+     * capture.
+     *
+     * @param framer
+     *            Creates the framer for a connection.
+     */
+    public synchronized void setFramer(
+            final Supplier<? extends Framer> framer) {
+        this.framer = framer;
+    }
+
+    /**
+     * Open the channels and start capturing on a new thread.
+     *
+     * @throws IOException
+     *             When a channel cannot be opened.
+     * @throws IllegalStateException
+     *             When the capture is already running.
+     */
+    public synchronized void start() throws IOException {
+        if (this.selectorThread.isPresent()) {
+            throw new IllegalStateException(SocketCapture.ERROR_MESSAGE);
+        }
+        this.captureStart = System.nanoTime();
+        this.capturedEvents.set(0);
+        this.localAddresses.clear();
+        final ExecutorService newWriter = Executors
+                .newSingleThreadExecutor(r -> {
+                    final Thread thread = new Thread(r);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.writer = Optional.of(newWriter);
+        final Selector newSelector = Selector.open();
+        try {
+            this.openChannels(newSelector);
+        } catch (final IOException e) {
+            this.closeAll(newSelector);
+            newWriter.shutdown();
+            this.writer = Optional.empty();
+            throw e;
+        }
+        this.running = true;
+        final Thread thread = new Thread(() -> {
+            try {
+                this.run(newSelector);
+            } finally {
+                newWriter.shutdown();
+            }
+        });
+        this.selector = Optional.of(newSelector);
+        this.selectorThread = Optional.of(thread);
+        thread.start();
+    }
+
+    /**
+     * Stop capturing, close the channels and persist the captured data. Waits
+     * until all sinks are closed.
+     *
+     * @return true if the capture was stopped, false if it was not running.
+     */
+    public boolean stop() {
+        final Thread thread;
+        final ExecutorService stoppedWriter;
+        synchronized (this) {
+            if (!this.selectorThread.isPresent()) {
+                return false;
+            }
+            this.running = false;
+            this.selector.ifPresent(Selector::wakeup);
+            thread = this.selectorThread.get();
+            stoppedWriter = this.writer.get();
+            this.selectorThread = Optional.empty();
+            this.selector = Optional.empty();
+        }
+        try {
+            thread.join();
+            stoppedWriter.awaitTermination(Long.MAX_VALUE,
+                    TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            SocketCapture.LOGGER.error("Interrupted while stopping.", e);
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether or not the capture is running.
+     *
+     * @return true if the capture is running, false otherwise.
+     */
+    public synchronized boolean isCapturing() {
+        return this.selectorThread.isPresent();
+    }
+
+    /**
+     * Get the local addresses that the listening TCP channels and the UDP
+     * channels are bound to, e.g., to find the port that was chosen for port
+     * 0.
+     *
+     * @return The local addresses, in the order they were added.
+     */
+    public synchronized List<SocketAddress> getLocalAddresses() {
+        return new ArrayList<>(this.localAddresses);
+    }
+
+    /**
+     * Get the number of events captured since the capture started.
+     *
+     * @return The number of captured events.
+     */
+    public int getNumberOfCapturedEvents() {
+        return this.capturedEvents.get();
+    }
+
+    /**
+     * Open the channels and register them with the selector.
+     *
+     * @param newSelector
+     *            The selector.
+     * @throws IOException
+     *             When a channel cannot be opened.
+     */
+    private void openChannels(final Selector newSelector) throws IOException {
+        for (final SocketAddress local : this.tcpListenAddresses) {
+            final ServerSocketChannel channel = ServerSocketChannel.open();
+            channel.configureBlocking(false);
+            channel.register(newSelector, SelectionKey.OP_ACCEPT,
+                    new Acceptor());
+            channel.bind(local);
+            this.localAddresses.add(channel.getLocalAddress());
+        }
+        for (final SocketAddress remote : this.tcpConnectAddresses) {
+            final SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            final SelectionKey key = channel.register(newSelector,
+                    SelectionKey.OP_CONNECT, new Connection(remote));
+            if (channel.connect(remote)) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+        for (final SocketAddress local : this.udpAddresses) {
+            final DatagramChannel channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.register(newSelector, SelectionKey.OP_READ,
+                    new Receiver());
+            channel.bind(local);
+            this.localAddresses.add(channel.getLocalAddress());
+        }
+    }
+
+    /**
+     * Selector loop. Handles the ready channels until the capture is stopped,
+     * and then closes all channels.
+     *
+     * @param loopSelector
+     *            The selector.
+     */
+    private void run(final Selector loopSelector) {
+        try {
+            while (this.running) {
+                loopSelector.select();
+                final Iterator<SelectionKey> keys = loopSelector
+                        .selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    this.handle(key);
+                }
+            }
+        } catch (final IOException e) {
+            SocketCapture.LOGGER.error(
+                    "Something went wrong while selecting the channels.", e);
+        } finally {
+            this.closeAll(loopSelector);
+        }
+    }
+
+    /**
+     * Handle a ready channel. Closes the channel when handling it fails.
+     *
+     * @param key
+     *            The key of the ready channel.
+     */
+    private void handle(final SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        try {
+            ((Handler) key.attachment()).ready(key);
+        } catch (final IOException e) {
+            SocketCapture.LOGGER.error(
+                    "Something went wrong while reading a channel.", e);
+            this.close(key);
+        }
+    }
+
+    /**
+     * Close the channels of a selector, persist their data and close the
+     * selector.
+     *
+     * @param closedSelector
+     *            The selector.
+     */
+    private void closeAll(final Selector closedSelector) {
+        for (final SelectionKey key : new ArrayList<>(closedSelector.keys())) {
+            // a cancelled key stays in the set until the next select
+            if (key.isValid()) {
+                this.close(key);
+            }
+        }
+        try {
+            closedSelector.close();
+        } catch (final IOException e) {
+            SocketCapture.LOGGER.error(
+                    "Something went wrong while closing the selector.", e);
+        }
+    }
+
+    /**
+     * Close a channel and persist its data.
+     *
+     * @param key
+     *            The key of the channel.
+     */
+    private void close(final SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (final IOException e) {
+            SocketCapture.LOGGER.error(
+                    "Something went wrong while closing a channel.", e);
+        }
+        ((Handler) key.attachment()).close();
+    }
+
+    /**
+     * Copy the bytes in the read buffer to the read array.
+     *
+     * @return The number of read bytes.
+     */
+    private int takeReadBytes() {
+        this.readBuffer.flip();
+        final int length = this.readBuffer.remaining();
+        this.readBuffer.get(this.readBytes, 0, length);
+        this.readBuffer.clear();
+        return length;
+    }
+
+    /**
+     * Handler of a ready channel, attached to its key.
+     *
+     * @author sjdpeste
+     *
+     */
+    private interface Handler {
+
+        /**
+         * Handle the ready channel.
+         *
+         * @param key
+         *            The key of the channel.
+         * @throws IOException
+         *             When handling the channel fails.
+         */
+        void ready(SelectionKey key) throws IOException;
+
+        /**
+         * Persist the captured data after the channel was closed. Does nothing
+         * when called again.
+         */
+        void close();
+    }
+
+    /**
+     * Accepts the TCP connections on a listening channel.
+     *
+     * @author sjdpeste
+     *
+     */
+    private final class Acceptor implements Handler {
+
+        @Override
+        public void ready(final SelectionKey key) throws IOException {
+            final SocketChannel channel = ((ServerSocketChannel) key
+                    .channel()).accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                channel.register(key.selector(), SelectionKey.OP_READ,
+                        new Connection(channel.getRemoteAddress()));
+            }
+        }
+
+        @Override
+        public void close() {
+            // Nothing captured.
+        }
+    }
+
+    /**
+     * Captures the data received on a TCP connection.
+     *
+     * @author sjdpeste
+     *
+     */
+    private final class Connection implements Handler {
+
+        /**
+         * The capture of the data of the connection.
+         */
+        private final Recording recording;
+
+        /**
+         * Create a new Connection.
+         *
+         * @param remote
+         *            The remote address of the connection.
+         */
+        Connection(final SocketAddress remote) {
+            this.recording = new Recording(remote,
+                    SocketCapture.this.framer.get());
+        }
+
+        @Override
+        public void ready(final SelectionKey key) throws IOException {
+            final SocketChannel channel = (SocketChannel) key.channel();
+            if (key.isConnectable()) {
+                if (channel.finishConnect()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+                return;
+            }
+            final int read = channel.read(SocketCapture.this.readBuffer);
+            final long readTime = System.nanoTime();
+            if (read < 0) {
+                SocketCapture.this.close(key);
+            } else if (read > 0) {
+                this.recording.read(SocketCapture.this.takeReadBytes(),
+                        readTime);
+            }
+        }
+
+        @Override
+        public void close() {
+            this.recording.close();
+        }
+    }
+
+    /**
+     * Captures the UDP datagrams received on a channel, per sender.
+     *
+     * @author sjdpeste
+     *
+     */
+    private final class Receiver implements Handler {
+
+        /**
+         * The captures of the data of the senders.
+         */
+        private final Map<SocketAddress, Recording> recordings;
+
+        /**
+         * Create a new Receiver.
+         */
+        Receiver() {
+            this.recordings = new HashMap<>();
+        }
+
+        @Override
+        public void ready(final SelectionKey key) throws IOException {
+            final SocketAddress sender = ((DatagramChannel) key.channel())
+                    .receive(SocketCapture.this.readBuffer);
+            final long readTime = System.nanoTime();
+            if (sender != null) {
+                this.recordings
+                        .computeIfAbsent(sender,
+                                s -> new Recording(s, Framer.none()))
+                        .read(SocketCapture.this.takeReadBytes(), readTime);
+            }
+        }
+
+        @Override
+        public void close() {
+            this.recordings.values().forEach(Recording::close);
+        }
+    }
+
+    /**
+     * The capture of the data of a remote address.
+     *
+     * @author sjdpeste
+     *
+     */
+    private final class Recording implements Framer.Output {
+
+        /**
+         * The capture of the messages.
+         */
+        private final ByteCapture capture;
+
+        /**
+         * The framer reassembling the reads into messages.
+         */
+        private final Framer recordingFramer;
+
+        /**
+         * Flag indicating that the captured data was persisted.
+         */
+        private boolean closed;
+
+        /**
+         * Create and start a new Recording.
+         *
+         * @param remote
+         *            The remote address.
+         * @param recordingFramer
+         *            The framer reassembling the reads into messages.
+         */
+        Recording(final SocketAddress remote, final Framer recordingFramer) {
+            this.capture = new ByteCapture(Function.<ByteBuffer> identity(),
+                    SocketCapture.this.sinks.apply(remote,
+                            SocketCapture.this.recordings.getAndIncrement()),
+                    SocketCapture.CHUNK_SIZE, SocketCapture.MAX_CHUNKS);
+            this.recordingFramer = recordingFramer;
+            SocketCapture.this.writer.ifPresent(this.capture::setWriter);
+            this.capture.startCapture(SocketCapture.this.captureStart);
+        }
+
+        /**
+         * Pass the bytes in the read array to the framer.
+         *
+         * @param length
+         *            The number of read bytes.
+         * @param readTime
+         *            The time at which the bytes were read.
+         */
+        void read(final int length, final long readTime) {
+            this.recordingFramer.read(SocketCapture.this.readBytes, 0, length,
+                    readTime, this);
+        }
+
+        @Override
+        public void message(final byte[] bytes, final int offset,
+                final int length, final long nanoTime) {
+            this.capture.capture(bytes, offset, length, nanoTime);
+            SocketCapture.this.capturedEvents.incrementAndGet();
+        }
+
+        /**
+         * Capture the last, incomplete message and persist the captured data
+         * on the writer.
+         */
+        void close() {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.recordingFramer.flush(this);
+            this.capture.stopCapture();
+            this.capture.saveEvents();
+        }
+    }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the binary format and its sink and source.
+ *
+ * @author sjdpeste
+ *
+ */
+public class BinaryFormatTest {
+
+    /**
+     * Test that variable length integers are read as they were written.
+     *
+     * @throws IOException
+     *             Never, streams are in memory.
+     */
+    @Test
+    public void varLongTest() throws IOException {
+        final long[] values = { 0, 1, 127, 128, 300, -1, Long.MIN_VALUE,
+                Long.MAX_VALUE, -300 };
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final long value : values) {
+            BinaryFormat.writeVarLong(out, BinaryFormat.zigzag(value));
+        }
+        final ByteArrayInputStream in = new ByteArrayInputStream(
+                out.toByteArray());
+        for (final long value : values) {
+            Assert.assertEquals("Value read as written", value,
+                    BinaryFormat.unzigzag(
+                            BinaryFormat.readVarLong(in, in.read())));
+        }
+    }
+
+    /**
+     * Test that small values take up a single byte.
+     *
+     * @throws IOException
+     *             Never, streams are in memory.
+     */
+    @Test
+    public void smallVarLongIsSingleByteTest() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryFormat.writeVarLong(out, BinaryFormat.zigzag(-5));
+        Assert.assertEquals("Single byte", 1, out.size());
+    }
+
+    /**
+     * Test that events written to the binary sink are read by the binary
+     * source, including direct buffers and out of order timestamps.
+     */
+    @Test
+    public void roundTripTest() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final EventSink<ByteBuffer> sink = new Persister(out).binarySink();
+        final ByteBuffer direct = ByteBuffer.allocateDirect(3);
+        direct.put(new byte[] { 7, 8, 9 }).flip();
+        sink.write(new Wrapper<>(ByteBuffer.wrap(new byte[] { 1, 2 }), 5));
+        sink.write(new Wrapper<>(direct, 1000));
+        sink.write(new Wrapper<>(ByteBuffer.allocate(0), 999));
+        sink.close();
+        Assert.assertEquals("Direct buffer position unchanged", 0,
+                direct.position());
+        try (final EventSource<ByteBuffer> source = new Persister(
+                new ByteArrayInputStream(out.toByteArray())).binarySource()) {
+            this.assertRecord(source.next(), 5, 1, 2);
+            this.assertRecord(source.next(), 1000, 7, 8, 9);
+            this.assertRecord(source.next(), 999);
+            Assert.assertFalse("No more events", source.hasNext());
+        }
+    }
+
+    /**
+     * Test that a binary source restricted to a time range skips the payloads
+     * of the events before the range without reading them, and stops at the
+     * end of the range of a sorted capture.
+     */
+    @Test
+    public void rangeSkipsPayloadsTest() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final EventSink<ByteBuffer> sink = new Persister(out)
+                .binarySink(true);
+        for (int i = 0; i < 10; i++) {
+            sink.write(new Wrapper<>(ByteBuffer.allocate(1000), i * 10));
+        }
+        sink.close();
+        final int[] read = new int[1];
+        final ByteArrayInputStream in = new ByteArrayInputStream(
+                out.toByteArray()) {
+
+            @Override
+            public synchronized int read(final byte[] b, final int off,
+                    final int len) {
+                final int result = super.read(b, off, len);
+                read[0] += Math.max(0, result);
+                return result;
+            }
+        };
+        try (final EventSource<ByteBuffer> source = new BinaryEventSource(in)
+                .range(30, 50, TimeUnit.MILLISECONDS)) {
+            Assert.assertEquals("First event in the range", 30,
+                    source.next().getRelativeTimestamp());
+            Assert.assertEquals("Last event in the range", 40,
+                    source.next().getRelativeTimestamp());
+            Assert.assertFalse("No more events", source.hasNext());
+        }
+        Assert.assertTrue("Only the payloads in the range were read",
+                read[0] < 3000);
+        Assert.assertTrue("Stopped at the end of the range",
+                in.available() > 4000);
+    }
+
+    /**
+     * Test that a range of a capture that is unsorted across a window
+     * boundary keeps reading after the first event past its end.
+     */
+    @Test
+    public void rangeUnsortedTest() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final EventSink<ByteBuffer> sink = new Persister(out).binarySink();
+        // first window
+        for (final long timestamp : new long[] { 0, 10, 30 }) {
+            sink.write(new Wrapper<>(ByteBuffer.allocate(1), timestamp));
+        }
+        sink.flush();
+        // second window, with an event before the end of the first one
+        for (final long timestamp : new long[] { 20, 40 }) {
+            sink.write(new Wrapper<>(ByteBuffer.allocate(1), timestamp));
+        }
+        sink.close();
+        try (final EventSource<ByteBuffer> source = new Persister(
+                new ByteArrayInputStream(out.toByteArray())).binarySource()
+                        .range(0, 25, TimeUnit.MILLISECONDS)) {
+            Assert.assertEquals("First event", 0,
+                    source.next().getRelativeTimestamp());
+            Assert.assertEquals("Second event", 10,
+                    source.next().getRelativeTimestamp());
+            Assert.assertEquals("Event of the second window", 20,
+                    source.next().getRelativeTimestamp());
+            Assert.assertFalse("No more events", source.hasNext());
+        }
+    }
+
+    /**
+     * Test that a sorted sink rejects an event before the previous one.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void exceptionOnUnsortedWriteTest() {
+        final EventSink<ByteBuffer> sink = new BinaryEventSink(
+                new ByteArrayOutputStream(), true);
+        sink.write(new Wrapper<>(ByteBuffer.allocate(1), 10));
+        sink.write(new Wrapper<>(ByteBuffer.allocate(1), 5));
+    }
+
+    /**
+     * Test that an empty capture only contains the header.
+     */
+    @Test
+    public void emptyCaptureTest() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Persister(out).binarySink().close();
+        Assert.assertEquals("Only the header", BinaryFormat.MAGIC.length + 2,
+                out.size());
+        Assert.assertFalse("No events",
+                new Persister(new ByteArrayInputStream(out.toByteArray()))
+                        .binarySource().hasNext());
+    }
+
+    /**
+     * Test that JSON serialized events survive the binary format.
+     */
+    @Test
+    public void jsonPayloadTest() {
+        final JSONObject json = TestHelper.serialize(new TestEvent(3, 4));
+        Assert.assertEquals("JSON decoded as encoded",
+                TestHelper.deserialize(json), TestHelper.deserialize(
+                        BinaryFormat.decodeJSON(BinaryFormat.encodeJSON(json))));
+    }
+
+    /**
+     * Test that captures of the first version, with relative timestamps in
+     * milliseconds, can still be read.
+     */
+    @Test
+    public void millisecondVersionTest() {
+        final byte[] capture = { 'G', 'M', 'I', 'O',
+                BinaryFormat.VERSION_MILLIS, 10, 1, 42, 4, 0 };
+        try (final EventSource<ByteBuffer> source = new BinaryEventSource(
+                new ByteArrayInputStream(capture))) {
+            Assert.assertEquals("First event at 5 ms", 5000000,
+                    source.next().getRelativeTimeNanos());
+            Assert.assertEquals("Second event at 7 ms", 7000000,
+                    source.next().getRelativeTimeNanos());
+            Assert.assertFalse("No more events", source.hasNext());
+        }
+    }
+
+    /**
+     * Test that other content is rejected.
+     */
+    @Test(expected = UncheckedIOException.class)
+    public void exceptionOnInvalidMagicTest() {
+        new BinaryEventSource(new ByteArrayInputStream("{}".getBytes()))
+                .hasNext();
+    }
+
+    /**
+     * Test that a truncated event is rejected.
+     */
+    @Test(expected = UncheckedIOException.class)
+    public void exceptionOnTruncatedEventTest() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final EventSink<ByteBuffer> sink = new BinaryEventSink(out);
+        sink.write(new Wrapper<>(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), 0));
+        sink.close();
+        final byte[] bytes = out.toByteArray();
+        new BinaryEventSource(new ByteArrayInputStream(
+                Arrays.copyOf(bytes, bytes.length - 1))).next();
+    }
+
+    /**
+     * Assert the content of a read record.
+     *
+     * @param record
+     *            The record.
+     * @param timestamp
+     *            The expected relative timestamp.
+     * @param payload
+     *            The expected payload.
+     */
+    private void assertRecord(final Wrapper<ByteBuffer> record,
+            final long timestamp, final int... payload) {
+        Assert.assertEquals("Relative timestamp", timestamp,
+                record.getRelativeTimestamp());
+        final ByteBuffer buffer = record.getEvent();
+        Assert.assertEquals("Payload length", payload.length,
+                buffer.remaining());
+        for (final int b : payload) {
+            Assert.assertEquals("Payload byte", b, buffer.get());
+        }
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.stijndepestel.geminio.TestHelper.CollectingSink;
+
+/**
+ * Unit tests for the ByteCapture class.
+ *
+ * @author sjdpeste
+ *
+ */
+public class ByteCaptureTest {
+
+    /**
+     * Create an event of the given length, filled with the given value.
+     *
+     * @param length
+     *            The length of the event.
+     * @param value
+     *            The value of the bytes.
+     * @return The event.
+     */
+    private byte[] event(final int length, final int value) {
+        final byte[] event = new byte[length];
+        for (int i = 0; i < length; i++) {
+            event[i] = (byte) (value + i);
+        }
+        return event;
+    }
+
+    /**
+     * Test that events are written in order with their bytes, including empty
+     * events, events that do not fit in the rest of a chunk and events larger
+     * than a chunk, also when the chunks are written while capturing.
+     */
+    @Test
+    public void chunksTest() {
+        final CollectingSink sink = new CollectingSink();
+        final ByteCapture capture = new ByteCapture(b -> b, sink, 8, 2);
+        final int[] lengths = { 3, 4, 0, 2, 20, 1, 8, 5, 5, 0, 7 };
+        capture.startCapture();
+        for (int i = 0; i < lengths.length; i++) {
+            capture.capture(this.event(lengths[i], i * 10));
+        }
+        Assert.assertTrue("Chunks written while capturing",
+                sink.getFlushes() > 0);
+        capture.stopCapture();
+        capture.saveEvents();
+        Assert.assertTrue("Sink closed", sink.isClosed());
+        Assert.assertEquals("All events captured", lengths.length,
+                capture.getNumberOfCapturedEvents());
+        Assert.assertEquals("All events written", lengths.length,
+                sink.getEvents().size());
+        for (int i = 0; i < lengths.length; i++) {
+            Assert.assertArrayEquals("Bytes of the event",
+                    this.event(lengths[i], i * 10), sink.getEvents().get(i));
+            if (i > 0) {
+                Assert.assertTrue("Events in order",
+                        sink.getTimestamps().get(i - 1) <= sink
+                                .getTimestamps().get(i));
+            }
+        }
+    }
+
+    /**
+     * Test that the chunks and the remaining events are written on the
+     * writer, in order, and that the sink is closed there.
+     *
+     * @throws InterruptedException
+     *             When interrupted while waiting for the writer.
+     */
+    @Test
+    public void writerTest() throws InterruptedException {
+        final CollectingSink copies = new CollectingSink();
+        final Set<Thread> threads = Collections
+                .synchronizedSet(new HashSet<>());
+        final ByteCapture capture = new ByteCapture(b -> b,
+                new EventSink<ByteBuffer>() {
+
+                    @Override
+                    public void write(final Wrapper<ByteBuffer> event) {
+                        threads.add(Thread.currentThread());
+                        copies.write(event);
+                    }
+
+                    @Override
+                    public void flush() {
+                        threads.add(Thread.currentThread());
+                        copies.flush();
+                    }
+
+                    @Override
+                    public void close() {
+                        threads.add(Thread.currentThread());
+                        copies.close();
+                    }
+                }, 8, 2);
+        final ExecutorService writer = Executors.newSingleThreadExecutor();
+        capture.setWriter(writer);
+        capture.startCapture();
+        for (int i = 0; i < 100; i++) {
+            capture.capture(this.event(i % 7, i));
+        }
+        capture.stopCapture();
+        capture.saveEvents();
+        writer.shutdown();
+        Assert.assertTrue("Writer done",
+                writer.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertFalse("Not written on the capturing thread",
+                threads.contains(Thread.currentThread()));
+        Assert.assertTrue("Chunks written while capturing",
+                copies.getFlushes() > 0);
+        Assert.assertTrue("Sink closed", copies.isClosed());
+        Assert.assertEquals("All events written", 100,
+                copies.getEvents().size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertArrayEquals("Bytes of the event",
+                    this.event(i % 7, i), copies.getEvents().get(i));
+        }
+    }
+
+    /**
+     * Test that a range of an array is captured and copied.
+     */
+    @Test
+    public void rangeIsCopiedTest() {
+        final CollectingSink sink = new CollectingSink();
+        final ByteCapture capture = new ByteCapture(b -> b, sink, 16, 1);
+        final byte[] data = { 1, 2, 3, 4, 5 };
+        capture.startCapture();
+        capture.capture(data, 1, 3);
+        data[2] = 9;
+        capture.stopCapture();
+        capture.saveEvents();
+        Assert.assertArrayEquals("Copy of the range", new byte[] { 2, 3, 4 },
+                sink.getEvents().get(0));
+    }
+
+    /**
+     * Test that events are captured at the given time, and that a time before
+     * the previous event keeps the events in order.
+     */
+    @Test
+    public void givenTimeTest() {
+        final CollectingSink sink = new CollectingSink();
+        final ByteCapture capture = new ByteCapture(b -> b, sink, 16, 1);
+        final long start = System.nanoTime();
+        capture.startCapture();
+        final long first = System.nanoTime() + 1000;
+        capture.capture(new byte[] { 1 }, 0, 1, first);
+        capture.capture(new byte[] { 2 }, 0, 1, start);
+        capture.stopCapture();
+        capture.saveEvents();
+        Assert.assertTrue("Given time", sink.getTimestamps().get(0) >= 1000);
+        Assert.assertEquals("Events in order", sink.getTimestamps().get(0),
+                sink.getTimestamps().get(1));
+    }
+
+    /**
+     * Test that the captured bytes can be read from a binary capture.
+     */
+    @Test
+    public void binaryRoundTripTest() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteCapture capture = new ByteCapture(
+                new Persister(out).binarySink());
+        capture.startCapture();
+        capture.capture(new byte[] { 1, 2, 3 });
+        capture.capture(new byte[] { 4 });
+        capture.stopCapture();
+        capture.saveEvents();
+        try (final EventSource<ByteBuffer> source = new Persister(
+                new ByteArrayInputStream(out.toByteArray())).binarySource()) {
+            Assert.assertEquals("First event", ByteBuffer.wrap(
+                    new byte[] { 1, 2, 3 }), source.next().getEvent());
+            Assert.assertEquals("Second event",
+                    ByteBuffer.wrap(new byte[] { 4 }),
+                    source.next().getEvent());
+            Assert.assertFalse("No more events", source.hasNext());
+        }
+    }
+
+    /**
+     * Test that the events are persisted as a JSONObject when saving.
+     */
+    @Test
+    public void jsonTest() {
+        final JSONObject[] persisted = new JSONObject[1];
+        final ByteCapture capture = new ByteCapture(
+                bytes -> new JSONObject().put("length", bytes.remaining()),
+                json -> persisted[0] = json);
+        capture.startCapture();
+        capture.capture(new byte[] { 1, 2, 3 });
+        capture.stopCapture();
+        capture.saveEvents();
+        Assert.assertEquals("Serialized event", 3,
+                persisted[0].getJSONArray(JSONNames.JSON_EVENTS)
+                        .getJSONObject(0).getJSONObject(JSONNames.JSON_EVENT)
+                        .getInt("length"));
+    }
+
+    /**
+     * Test that capturing before starting is rejected.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void exceptionOnCaptureWithStateCreatedTest() {
+        new ByteCapture(new CollectingSink()).capture(new byte[] { 1 });
+    }
+
+}
@@ -23,7 +23,14 @@
  */
 package com.stijndepestel.geminio;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -140,4 +147,292 @@ public class CaptureTest {
         this.capture.saveEvents();
     }
 
+    /**
+     * Test to see if events captured concurrently by multiple threads are all
+     * persisted, ordered by their relative timestamp.
+     *
+     * @throws InterruptedException
+     *             When interrupted while waiting for the producer threads.
+     */
+    @Test
+    public void concurrentCaptureTest() throws InterruptedException {
+        final int numberOfThreads = 8;
+        final int eventsPerThread = 5000;
+        this.capture = new Capture<>(TestHelper::serialize, x -> {
+            final JSONArray jsonArray = x.getJSONArray(JSONNames.JSON_EVENTS);
+            Assert.assertEquals("All concurrently captured events are stored.",
+                    numberOfThreads * eventsPerThread, jsonArray.length());
+            for (int i = 1; i < jsonArray.length(); i++) {
+                Assert.assertTrue("Events are ordered by their timestamp.",
+                        jsonArray.getJSONObject(i - 1)
+                                .getLong(JSONNames.JSON_REL_TIME) <= jsonArray
+                                        .getJSONObject(i)
+                                        .getLong(JSONNames.JSON_REL_TIME));
+            }
+        });
+        this.capture.setConcurrent(true);
+        this.capture.startCapture();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numberOfThreads; t++) {
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    this.capture.capture(new TestEvent(i, i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        this.capture.stopCapture();
+        Assert.assertEquals("All events should have been captured.",
+                numberOfThreads * eventsPerThread,
+                this.capture.getNumberOfCapturedEvents());
+        this.capture.saveEvents();
+    }
+
+    /**
+     * Test to see if the concurrent mode cannot be changed after the capture
+     * has started.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void exceptionOnSetConcurrentWhenCapturingTest() {
+        this.capture.startCapture();
+        this.capture.setConcurrent(true);
+    }
+
+    /**
+     * Test to see if events are written to the sink while capturing, without
+     * keeping more events in memory than twice the window size.
+     */
+    @Test
+    public void windowedSinkTest() {
+        final int window = 10;
+        final int numberOfEventsToGenerate = 95;
+        final List<Wrapper<JSONObject>> written = Collections
+                .synchronizedList(new ArrayList<>());
+        final AtomicIntegerArray flushesAndCloses = new AtomicIntegerArray(2);
+        this.capture = new Capture<>(TestHelper::serialize,
+                new EventSink<JSONObject>() {
+
+                    @Override
+                    public void write(final Wrapper<JSONObject> event) {
+                        written.add(event);
+                    }
+
+                    @Override
+                    public void flush() {
+                        flushesAndCloses.incrementAndGet(0);
+                    }
+
+                    @Override
+                    public void close() {
+                        flushesAndCloses.incrementAndGet(1);
+                    }
+                }, window);
+        this.capture.startCapture();
+        for (int i = 0; i < numberOfEventsToGenerate; i++) {
+            this.capture.capture(new TestEvent(i, i));
+            Assert.assertTrue("No more than two windows are buffered.",
+                    this.capture.getNumberOfCapturedEvents()
+                            - written.size() < 2 * window);
+        }
+        Assert.assertTrue("Windows have been flushed while capturing.",
+                flushesAndCloses.get(0) > 0);
+        this.capture.stopCapture();
+        this.capture.saveEvents();
+        Assert.assertEquals("All events have been written.",
+                numberOfEventsToGenerate, written.size());
+        Assert.assertEquals("The sink has been closed once.", 1,
+                flushesAndCloses.get(1));
+        for (int i = 0; i < numberOfEventsToGenerate; i++) {
+            Assert.assertEquals("Events are written in order.",
+                    new TestEvent(i, i),
+                    TestHelper.deserialize(written.get(i).getEvent()));
+        }
+    }
+
+    /**
+     * Test to see if concurrently captured events are written in order of
+     * their timestamps across the windows, while the windows are written.
+     *
+     * @throws InterruptedException
+     *             When interrupted while waiting for the producer threads.
+     */
+    @Test
+    public void concurrentWindowedSinkTest() throws InterruptedException {
+        final int numberOfThreads = 8;
+        final int eventsPerThread = 5000;
+        final List<Long> timestamps = Collections
+                .synchronizedList(new ArrayList<>());
+        this.capture = new Capture<>(TestHelper::serialize,
+                new EventSink<JSONObject>() {
+
+                    @Override
+                    public void write(final Wrapper<JSONObject> event) {
+                        timestamps.add(event.getRelativeTimeNanos());
+                    }
+
+                    @Override
+                    public void flush() {
+                        // nothing to flush
+                    }
+
+                    @Override
+                    public void close() {
+                        // nothing to close
+                    }
+                }, 64);
+        this.capture.setConcurrent(true);
+        this.capture.startCapture();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numberOfThreads; t++) {
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    this.capture.capture(new TestEvent(i, i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        this.capture.stopCapture();
+        this.capture.saveEvents();
+        Assert.assertEquals("All events have been written.",
+                numberOfThreads * eventsPerThread, timestamps.size());
+        for (int i = 1; i < timestamps.size(); i++) {
+            Assert.assertTrue("Events are written in order.",
+                    timestamps.get(i - 1) <= timestamps.get(i));
+        }
+    }
+
+    /**
+     * Test to see if an event of a producer that is delayed after taking its
+     * timestamp is written before the later events of the next window.
+     *
+     * @throws InterruptedException
+     *             When interrupted while waiting for the delayed producer.
+     */
+    @Test
+    public void delayedProducerTest() throws InterruptedException {
+        final int window = 10;
+        final List<Wrapper<JSONObject>> written = Collections
+                .synchronizedList(new ArrayList<>());
+        this.capture = new Capture<>(TestHelper::serialize,
+                new EventSink<JSONObject>() {
+
+                    @Override
+                    public void write(final Wrapper<JSONObject> event) {
+                        written.add(event);
+                    }
+
+                    @Override
+                    public void flush() {
+                        // nothing to flush
+                    }
+
+                    @Override
+                    public void close() {
+                        // nothing to close
+                    }
+                }, window);
+        final CountDownLatch timestamped = new CountDownLatch(1);
+        final CountDownLatch resumed = new CountDownLatch(1);
+        final CountDownLatch cut = new CountDownLatch(1);
+        final Thread main = Thread.currentThread();
+        final Thread delayed = new Thread(
+                () -> this.capture.capture(new TestEvent(-1, -1)));
+        this.capture.setClock(() -> {
+            final long now = System.nanoTime();
+            if (Thread.currentThread() != main
+                    && Thread.currentThread() != delayed) {
+                // the writer takes the cut of the window
+                cut.countDown();
+            } else if (Thread.currentThread() == delayed) {
+                timestamped.countDown();
+                try {
+                    resumed.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return now;
+        });
+        this.capture.startCapture();
+        delayed.start();
+        timestamped.await();
+        for (int i = 0; i < window; i++) {
+            this.capture.capture(new TestEvent(i, i));
+        }
+        // give the writer time to write the window before the delayed event
+        cut.await();
+        Thread.sleep(100);
+        resumed.countDown();
+        delayed.join();
+        this.capture.stopCapture();
+        this.capture.saveEvents();
+        Assert.assertEquals("All events have been written.", window + 1,
+                written.size());
+        Assert.assertEquals("Delayed event is written first.",
+                new TestEvent(-1, -1),
+                TestHelper.deserialize(written.get(0).getEvent()));
+        for (int i = 1; i < written.size(); i++) {
+            Assert.assertTrue("Events are written in order.",
+                    written.get(i - 1).getRelativeTimeNanos() <= written
+                            .get(i).getRelativeTimeNanos());
+        }
+    }
+
+    /**
+     * Test to see if a window smaller than one event is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void exceptionOnInvalidWindowTest() {
+        new Capture<>(TestHelper::serialize, new Persister(System.out).sink(),
+                0);
+    }
+
+    /**
+     * Test to see if a burst of events gets increasing nanosecond timestamps
+     * and keeps its order.
+     */
+    @Test
+    public void nanosecondTimestampsTest() {
+        final List<Wrapper<JSONObject>> written = new ArrayList<>();
+        this.capture = new Capture<>(TestHelper::serialize,
+                new EventSink<JSONObject>() {
+
+                    @Override
+                    public void write(final Wrapper<JSONObject> event) {
+                        written.add(event);
+                    }
+
+                    @Override
+                    public void flush() {
+                        // nothing to flush
+                    }
+
+                    @Override
+                    public void close() {
+                        // nothing to close
+                    }
+                });
+        this.capture.startCapture();
+        for (int i = 0; i < 100; i++) {
+            this.capture.capture(new TestEvent(i, i));
+        }
+        this.capture.stopCapture();
+        this.capture.saveEvents();
+        for (int i = 1; i < written.size(); i++) {
+            Assert.assertTrue("Timestamps increase",
+                    written.get(i - 1).getRelativeTimeNanos() <= written.get(i)
+                            .getRelativeTimeNanos());
+            Assert.assertEquals("Order is preserved", new TestEvent(i, i),
+                    TestHelper.deserialize(written.get(i).getEvent()));
+        }
+    }
+
 }
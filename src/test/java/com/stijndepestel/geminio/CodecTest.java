@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jayway.awaitility.Awaitility;
+
+/**
+ * Unit tests for the Codec interface and its use by Capture and Replay.
+ *
+ * @author sjdpeste
+ *
+ */
+public class CodecTest {
+
+    /**
+     * Binary codec for test events.
+     */
+    private static final Codec<TestEvent> TEST_CODEC = new Codec<TestEvent>() {
+
+        @Override
+        public void encode(final TestEvent event, final ByteBuffer buffer) {
+            buffer.putLong(event.getTimestamp()).putLong(event.getRandom());
+        }
+
+        @Override
+        public TestEvent decode(final ByteBuffer buffer) {
+            return new TestEvent(buffer.getLong(), buffer.getLong());
+        }
+    };
+
+    /**
+     * Test that the JSON codec decodes what it encoded.
+     */
+    @Test
+    public void jsonCodecTest() {
+        final Codec<TestEvent> codec = Codec.ofJSON(TestHelper::serialize,
+                TestHelper::deserialize);
+        final ByteBuffer buffer = ByteBuffer.allocate(128);
+        codec.encode(new TestEvent(5, 6), buffer);
+        buffer.flip();
+        Assert.assertEquals("Decoded as encoded", new TestEvent(5, 6),
+                codec.decode(buffer));
+    }
+
+    /**
+     * Test that the encoder grows its buffer for large events.
+     */
+    @Test
+    public void encoderGrowsBufferTest() {
+        final int size = 3 * CodecEncoder.INITIAL_CAPACITY;
+        final CodecEncoder<byte[]> encoder = new CodecEncoder<>(
+                new Codec<byte[]>() {
+
+                    @Override
+                    public void encode(final byte[] event,
+                            final ByteBuffer buffer) {
+                        buffer.put(event);
+                    }
+
+                    @Override
+                    public byte[] decode(final ByteBuffer buffer) {
+                        return null;
+                    }
+                });
+        Assert.assertEquals("Complete event encoded", size,
+                encoder.apply(new byte[size]).remaining());
+        Assert.assertEquals("Buffer reused for smaller events", 1,
+                encoder.apply(new byte[1]).remaining());
+    }
+
+    /**
+     * Test that events captured and replayed with a codec are equal.
+     */
+    @Test
+    public void captureReplayWithCodecTest() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Capture<TestEvent> capture = new Capture<>(CodecTest.TEST_CODEC,
+                new Persister(out).binarySink(), 2);
+        capture.startCapture();
+        for (int i = 0; i < 5; i++) {
+            capture.capture(new TestEvent(i, -i));
+        }
+        capture.stopCapture();
+        capture.saveEvents();
+        // two longs, a single byte length and a nanosecond delta per event
+        Assert.assertTrue("Compact encoding",
+                out.size() <= BinaryFormat.MAGIC.length + 1
+                        + 5 * (2 * Long.BYTES + 1 + 5));
+
+        final Persister persister = new Persister(
+                new ByteArrayInputStream(out.toByteArray()));
+        final List<TestEvent> replayed = new ArrayList<>();
+        final Replay<TestEvent> replay = new Replay<>(persister::binarySource,
+                CodecTest.TEST_CODEC, replayed::add);
+        final TestReplayListener listener = new TestReplayListener();
+        replay.addReplayListener(listener);
+        replay.load().startReplay();
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(listener::hasReplayEnded);
+        Assert.assertEquals("All events replayed", 5, replayed.size());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("Event replayed", new TestEvent(i, -i),
+                    replayed.get(i));
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the ConcurrentCaptureBuffer class.
+ *
+ * @author sjdpeste
+ *
+ */
+public class ConcurrentCaptureBufferTest {
+
+    /**
+     * Test that events spanning multiple segments are returned in insertion
+     * order by a single producer.
+     */
+    @Test
+    public void insertionOrderTest() {
+        final ConcurrentCaptureBuffer<TestEvent> buffer = new ConcurrentCaptureBuffer<>();
+        final int numberOfEvents = 3 * ConcurrentCaptureBuffer.SEGMENT_SIZE
+                + 7;
+        for (int i = 0; i < numberOfEvents; i++) {
+            buffer.add(new Wrapper<>(new TestEvent(i, i), i));
+        }
+        Assert.assertEquals("Size equals the number of added events.",
+                numberOfEvents, buffer.size());
+        final List<Wrapper<TestEvent>> events = new ArrayList<>();
+        buffer.forEach(events::add);
+        Assert.assertEquals("All events are returned.", numberOfEvents,
+                events.size());
+        for (int i = 0; i < numberOfEvents; i++) {
+            Assert.assertEquals("Events are in insertion order.", i,
+                    events.get(i).getRelativeTimestamp());
+        }
+    }
+
+    /**
+     * Test that no events are lost when multiple producers add events at the
+     * same time.
+     *
+     * @throws InterruptedException
+     *             When interrupted while waiting for the producer threads.
+     */
+    @Test
+    public void multipleProducersTest() throws InterruptedException {
+        final ConcurrentCaptureBuffer<TestEvent> buffer = new ConcurrentCaptureBuffer<>();
+        final int numberOfThreads = 4;
+        final int eventsPerThread = 10 * ConcurrentCaptureBuffer.SEGMENT_SIZE;
+        final Thread[] threads = new Thread[numberOfThreads];
+        for (int t = 0; t < numberOfThreads; t++) {
+            final long offset = (long) t * eventsPerThread;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    buffer.add(new Wrapper<>(new TestEvent(), offset + i));
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final Set<Long> timestamps = new HashSet<>();
+        buffer.forEach(w -> timestamps.add(w.getRelativeTimestamp()));
+        Assert.assertEquals("Every added event is present exactly once.",
+                numberOfThreads * eventsPerThread, timestamps.size());
+    }
+
+}
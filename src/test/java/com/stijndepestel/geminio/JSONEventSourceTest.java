@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.io.StringReader;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the JSONEventSource class.
+ *
+ * @author sjdpeste
+ *
+ */
+public class JSONEventSourceTest {
+
+    /**
+     * Create a source for the given JSON.
+     *
+     * @param json
+     *            The JSON to parse.
+     * @return The source.
+     */
+    private JSONEventSource source(final String json) {
+        return new JSONEventSource(new StringReader(json));
+    }
+
+    /**
+     * Test that the events are returned one by one, in order.
+     */
+    @Test
+    public void eventsInOrderTest() {
+        try (final JSONEventSource source = this.source(
+                "{\"events\":[{\"relative_time\":0,\"event\":{\"id\":0}},"
+                        + "{\"relative_time\":10,\"event\":{\"id\":1}}]}")) {
+            Assert.assertTrue("First event available", source.hasNext());
+            final Wrapper<JSONObject> first = source.next();
+            Assert.assertEquals("Relative time of first event", 0,
+                    first.getRelativeTimestamp());
+            Assert.assertEquals("First event", 0,
+                    first.getEvent().getInt("id"));
+            final Wrapper<JSONObject> second = source.next();
+            Assert.assertEquals("Relative time of second event", 10,
+                    second.getRelativeTimestamp());
+            Assert.assertEquals("Second event", 1,
+                    second.getEvent().getInt("id"));
+            Assert.assertFalse("No more events", source.hasNext());
+        }
+    }
+
+    /**
+     * Test that filtered sources only supply the matching events, in order.
+     */
+    @Test
+    public void filterAndRangeTest() {
+        try (final EventSource<JSONObject> source = this.source(
+                "{\"events\":[{relative_time:0,event:{id:0,device:\"a\"}},"
+                        + "{relative_time:10,event:{id:1,device:\"b\"}},"
+                        + "{relative_time:20,event:{id:2,device:\"a\"}},"
+                        + "{relative_time:30,event:{id:3,device:\"a\"}}]}")
+                .filter(json -> "a".equals(json.getString("device")))
+                .range(10, 30, TimeUnit.MILLISECONDS)) {
+            Assert.assertEquals("Only the matching event", 2,
+                    source.next().getEvent().getInt("id"));
+            Assert.assertFalse("No more events", source.hasNext());
+        }
+    }
+
+    /**
+     * Test that a time range keeps reading after an event past its end, since
+     * the events may not be in order of relative time.
+     */
+    @Test
+    public void rangeUnsortedTest() {
+        try (final EventSource<JSONObject> source = this.source(
+                "{events:[{relative_time:0,event:{id:0}},"
+                        + "{relative_time:20,event:{id:1}},"
+                        + "{relative_time:10,event:{id:2}}]}")
+                .range(0, 15, TimeUnit.MILLISECONDS)) {
+            Assert.assertEquals("First event in the range", 0,
+                    source.next().getEvent().getInt("id"));
+            Assert.assertEquals("Event after the end of the range", 2,
+                    source.next().getEvent().getInt("id"));
+            Assert.assertFalse("No more events", source.hasNext());
+        }
+    }
+
+    /**
+     * Test that other keys before the events are skipped.
+     */
+    @Test
+    public void otherKeysSkippedTest() {
+        try (final JSONEventSource source = this.source(
+                "{\"meta\":{\"a\":[1,2]},\"events\":[{relative_time:5,"
+                        + "event:{}}],\"other\":true}")) {
+            Assert.assertEquals("Event after skipped key", 5,
+                    source.next().getRelativeTimestamp());
+            Assert.assertFalse("No more events", source.hasNext());
+        }
+    }
+
+    /**
+     * Test that documents without events result in an empty source.
+     */
+    @Test
+    public void noEventsTest() {
+        Assert.assertFalse("Empty object",
+                this.source("{}").hasNext());
+        Assert.assertFalse("Empty array",
+                this.source("{\"events\":[]}").hasNext());
+    }
+
+    /**
+     * Test that next fails when no more events are available.
+     */
+    @Test(expected = NoSuchElementException.class)
+    public void exceptionOnNextWithoutEventsTest() {
+        this.source("{\"events\":[]}").next();
+    }
+
+    /**
+     * Test that malformed documents are rejected.
+     */
+    @Test(expected = JSONException.class)
+    public void exceptionOnMalformedDocumentTest() {
+        final JSONEventSource source = this
+                .source("{\"events\":[{relative_time:0,event:{}} {}]}");
+        source.next();
+    }
+
+}
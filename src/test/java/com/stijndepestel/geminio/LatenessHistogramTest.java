@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the LatenessHistogram class.
+ *
+ * @author sjdpeste
+ *
+ */
+public class LatenessHistogramTest {
+
+    /**
+     * The histogram under test.
+     */
+    private LatenessHistogram histogram;
+
+    /**
+     * Create a new histogram before each test.
+     */
+    @Before
+    public void before() {
+        this.histogram = new LatenessHistogram();
+    }
+
+    /**
+     * Test that an empty histogram reports zero.
+     */
+    @Test
+    public void emptyTest() {
+        Assert.assertEquals("No values", 0, this.histogram.getCount());
+        Assert.assertEquals("No median", 0,
+                this.histogram.getPercentile(50));
+        Assert.assertEquals("No max", 0, this.histogram.getMax());
+    }
+
+    /**
+     * Test that small values are counted exactly.
+     */
+    @Test
+    public void smallValuesTest() {
+        for (int value = 1; value <= 10; value++) {
+            this.histogram.record(value);
+        }
+        Assert.assertEquals("Median", 5, this.histogram.getPercentile(50));
+        Assert.assertEquals("Max", 10, this.histogram.getMax());
+        Assert.assertEquals("Count", 10, this.histogram.getCount());
+    }
+
+    /**
+     * Test that the percentiles of large values stay within the relative error
+     * of the histogram.
+     */
+    @Test
+    public void percentileErrorTest() {
+        final int numberOfValues = 100000;
+        for (int i = 1; i <= numberOfValues; i++) {
+            this.histogram.record(i * 1000L);
+        }
+        final double[] percentiles = { 1, 50, 90, 99, 99.9 };
+        for (final double percentile : percentiles) {
+            final double exact = percentile / 100 * numberOfValues * 1000;
+            final long measured = this.histogram.getPercentile(percentile);
+            Assert.assertTrue("Not below the exact value: " + percentile,
+                    measured >= exact);
+            Assert.assertTrue("Within the relative error: " + percentile,
+                    measured <= exact
+                            * (1 + 1D / LatenessHistogram.SUB_BUCKETS));
+        }
+        Assert.assertEquals("Exact max", numberOfValues * 1000L,
+                this.histogram.getPercentile(100));
+    }
+
+    /**
+     * Test that the largest possible value can be recorded.
+     */
+    @Test
+    public void largestValueTest() {
+        this.histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals("Max", Long.MAX_VALUE,
+                this.histogram.getPercentile(50));
+    }
+
+    /**
+     * Test that early events count as on time and that clearing removes all
+     * values.
+     */
+    @Test
+    public void negativeAndClearTest() {
+        this.histogram.record(-5);
+        Assert.assertEquals("Early is on time", 0,
+                this.histogram.getPercentile(100));
+        this.histogram.record(42);
+        this.histogram.clear();
+        Assert.assertEquals("No values", 0, this.histogram.getCount());
+        Assert.assertEquals("No max", 0, this.histogram.getMax());
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the ListCursor class.
+ *
+ * @author sjdpeste
+ *
+ */
+public class ListCursorTest {
+
+    /**
+     * Test that seeking moves to the first event at or after the time, both
+     * forward and backward.
+     */
+    @Test
+    public void seekTest() {
+        final List<Wrapper<Integer>> events = new ArrayList<>();
+        final long[] times = { 0, 10, 10, 10, 20, 30 };
+        for (int i = 0; i < times.length; i++) {
+            events.add(new Wrapper<>(i, times[i], TimeUnit.NANOSECONDS));
+        }
+        final ListCursor<Integer> cursor = new ListCursor<>(events);
+        cursor.seek(10);
+        Assert.assertEquals("First of the equal times", 1,
+                cursor.peek().getEvent().intValue());
+        cursor.seek(11);
+        Assert.assertEquals("Next time", 4,
+                cursor.peek().getEvent().intValue());
+        Assert.assertTrue("Moved backward", cursor.seek(0));
+        Assert.assertEquals("Backward", 0,
+                cursor.peek().getEvent().intValue());
+        cursor.seek(31);
+        Assert.assertTrue("Past the last event", cursor.isExhausted());
+        Assert.assertNull("No next event", cursor.peek());
+    }
+
+}
@@ -26,11 +26,18 @@ package com.stijndepestel.geminio;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.jayway.awaitility.Awaitility;
+
 /**
  * Unit tests for the Persister class.
  *
@@ -108,4 +115,105 @@ public class PersisterTest {
         new Persister(System.out).load();
     }
 
+    /**
+     * Test if the events written to the sink of a persister can be loaded
+     * again.
+     */
+    @Test
+    public void sinkTest() {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final EventSink<JSONObject> sink = new Persister(outputStream).sink();
+        sink.write(new Wrapper<>(new JSONObject("{\"ping\":\"pong\"}"), 1));
+        sink.flush();
+        sink.write(new Wrapper<>(new JSONObject("{\"ping\":\"pang\"}"), 2));
+        sink.close();
+        final JSONArray events = new Persister(
+                new ByteArrayInputStream(outputStream.toByteArray())).load()
+                        .getJSONArray(JSONNames.JSON_EVENTS);
+        Assert.assertEquals("Both events are persisted", 2, events.length());
+        Assert.assertEquals("Relative time is persisted", 2, events
+                .getJSONObject(1).getLong(JSONNames.JSON_REL_TIME));
+        Assert.assertEquals("Event is persisted", "pang",
+                events.getJSONObject(1).getJSONObject(JSONNames.JSON_EVENT)
+                        .getString("ping"));
+    }
+
+    /**
+     * Test if an empty sink results in an empty list of events.
+     */
+    @Test
+    public void emptySinkTest() {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new Persister(outputStream).sink().close();
+        Assert.assertEquals("Empty events list", "{\"events\":[]}",
+                outputStream.toString());
+    }
+
+    /**
+     * Test if a capture streamed to the sink of a persister results in the
+     * same document as the one persisted from the JSONObject.
+     */
+    @Test
+    public void streamedCaptureEqualsPersistedTest() {
+        final ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        final ByteArrayOutputStream persisted = new ByteArrayOutputStream();
+        final Capture<TestEvent> streamedCapture = new Capture<>(
+                TestHelper::serialize, new Persister(streamed).sink());
+        final Capture<TestEvent> persistedCapture = new Capture<>(
+                TestHelper::serialize, new Persister(persisted)::persist);
+        streamedCapture.startCapture();
+        persistedCapture.startCapture();
+        for (int i = 0; i < 3; i++) {
+            streamedCapture.capture(new TestEvent(i, i));
+            persistedCapture.capture(new TestEvent(i, i));
+        }
+        streamedCapture.stopCapture();
+        persistedCapture.stopCapture();
+        streamedCapture.saveEvents();
+        persistedCapture.saveEvents();
+        final JSONArray streamedEvents = new JSONObject(streamed.toString())
+                .getJSONArray(JSONNames.JSON_EVENTS);
+        final JSONArray persistedEvents = new JSONObject(persisted.toString())
+                .getJSONArray(JSONNames.JSON_EVENTS);
+        Assert.assertEquals("Same number of events", persistedEvents.length(),
+                streamedEvents.length());
+        for (int i = 0; i < persistedEvents.length(); i++) {
+            Assert.assertEquals("Same events",
+                    TestHelper.deserialize(persistedEvents.getJSONObject(i)
+                            .getJSONObject(JSONNames.JSON_EVENT)),
+                    TestHelper.deserialize(streamedEvents.getJSONObject(i)
+                            .getJSONObject(JSONNames.JSON_EVENT)));
+        }
+    }
+
+    /**
+     * Test if a capture persisted in the binary format is replayed.
+     */
+    @Test
+    public void binaryCaptureReplayTest() {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final Capture<TestEvent> capture = new Capture<>(
+                event -> BinaryFormat.encodeJSON(TestHelper.serialize(event)),
+                new Persister(outputStream).binarySink());
+        capture.startCapture();
+        capture.capture(new TestEvent(1, 2));
+        capture.capture(new TestEvent(3, 4));
+        capture.stopCapture();
+        capture.saveEvents();
+        final Persister persister = new Persister(
+                new ByteArrayInputStream(outputStream.toByteArray()));
+        final List<TestEvent> replayed = new ArrayList<>();
+        final Replay<TestEvent> replay = new Replay<>(persister::binarySource,
+                payload -> TestHelper
+                        .deserialize(BinaryFormat.decodeJSON(payload)),
+                replayed::add);
+        final TestReplayListener listener = new TestReplayListener();
+        replay.addReplayListener(listener);
+        replay.load().startReplay();
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(listener::hasReplayEnded);
+        Assert.assertEquals("Events are replayed", Arrays
+                .asList(new TestEvent(1, 2), new TestEvent(3, 4)), replayed);
+    }
+
 }
@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jayway.awaitility.Awaitility;
+
+/**
+ * Unit tests for the PrefetchCursor class.
+ *
+ * @author sjdpeste
+ *
+ */
+public class PrefetchCursorTest {
+
+    /**
+     * Test that seeking back to events that a forward seek skipped is refused,
+     * and that the cursor stays at the current event.
+     */
+    @Test
+    public void seekBackIntoSkippedTest() {
+        final PrefetchCursor<Integer> cursor = new PrefetchCursor<>(
+                new ReplayInput<>(
+                        () -> TestHelper.counter(6, 10, TimeUnit.NANOSECONDS),
+                        i -> i),
+                8, Optional.empty());
+        try {
+            Assert.assertTrue("Moved forward", cursor.seek(35));
+            Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                    .until(() -> cursor.peek() != null);
+            Assert.assertEquals("First event after the time", 4,
+                    cursor.peek().getEvent().intValue());
+            Assert.assertFalse("Skipped events are moved past",
+                    cursor.seek(20));
+            Assert.assertEquals("Stays at the current event", 4,
+                    cursor.peek().getEvent().intValue());
+            Assert.assertTrue("Moved forward again", cursor.seek(45));
+            Assert.assertEquals("Next time", 5,
+                    cursor.peek().getEvent().intValue());
+        } finally {
+            cursor.close();
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the QueueDispatcher class.
+ *
+ * @author sjdpeste
+ *
+ */
+public class QueueDispatcherTest {
+
+    /**
+     * The capacity of the queue of the dispatchers under test.
+     */
+    private static final int CAPACITY = 2;
+
+    /**
+     * The tasks submitted to the executor, which are only run when the test
+     * runs them.
+     */
+    private Queue<Runnable> tasks;
+
+    /**
+     * The caught events.
+     */
+    private List<Integer> caught;
+
+    /**
+     * Create the executor and the catcher before each test.
+     */
+    @Before
+    public void before() {
+        this.tasks = new ArrayDeque<>();
+        this.caught = new ArrayList<>();
+    }
+
+    /**
+     * Create a dispatcher on the manual executor.
+     *
+     * @param policy
+     *            The policy of the dispatcher.
+     * @return The created dispatcher.
+     */
+    private Dispatcher<Integer> create(final DispatchPolicy policy) {
+        return new QueueDispatcher<>(this.caught::add, this.tasks::add,
+                QueueDispatcherTest.CAPACITY, policy);
+    }
+
+    /**
+     * Run the submitted tasks.
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Test that the events are caught in order by a single task.
+     */
+    @Test
+    public void dispatchInOrderTest() {
+        final Dispatcher<Integer> dispatcher = this.create(DispatchPolicy.DROP);
+        dispatcher.dispatch(1);
+        dispatcher.dispatch(2);
+        Assert.assertEquals("Single drain task", 1, this.tasks.size());
+        Assert.assertTrue("Not caught on the dispatching thread",
+                this.caught.isEmpty());
+        this.runTasks();
+        dispatcher.dispatch(3);
+        this.runTasks();
+        Assert.assertEquals("Caught in order", Arrays.asList(1, 2, 3),
+                this.caught);
+    }
+
+    /**
+     * Test that events are dropped when the queue is full.
+     */
+    @Test
+    public void dropTest() {
+        final Dispatcher<Integer> dispatcher = this.create(DispatchPolicy.DROP);
+        Assert.assertTrue("Accepted", dispatcher.dispatch(1));
+        Assert.assertTrue("Accepted", dispatcher.dispatch(2));
+        Assert.assertFalse("Dropped", dispatcher.dispatch(3));
+        this.runTasks();
+        Assert.assertEquals("Dropped events are not caught",
+                Arrays.asList(1, 2), this.caught);
+        Assert.assertEquals("Dropped events are counted", 1,
+                dispatcher.getDropped());
+        Assert.assertEquals("No late events", 0, dispatcher.getLate());
+    }
+
+    /**
+     * Test that events beyond the capacity are queued and counted as late.
+     */
+    @Test
+    public void lateTest() {
+        final Dispatcher<Integer> dispatcher = this.create(DispatchPolicy.LATE);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue("Accepted", dispatcher.dispatch(i));
+        }
+        this.runTasks();
+        Assert.assertEquals("All events are caught",
+                Arrays.asList(0, 1, 2, 3, 4), this.caught);
+        Assert.assertEquals("Late events are counted", 3,
+                dispatcher.getLate());
+        Assert.assertEquals("No dropped events", 0, dispatcher.getDropped());
+    }
+
+    /**
+     * Test that a full queue blocks until the catcher has made room, and that
+     * the dispatcher is closed once all events are caught.
+     */
+    @Test
+    public void blockTest() throws InterruptedException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final List<Integer> slowlyCaught = new ArrayList<>();
+        final Dispatcher<Integer> dispatcher = new QueueDispatcher<>(
+                event -> {
+                    try {
+                        Thread.sleep(5);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    slowlyCaught.add(event);
+                }, executor, QueueDispatcherTest.CAPACITY,
+                DispatchPolicy.BLOCK);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue("Accepted", dispatcher.dispatch(i));
+        }
+        final CountDownLatch closed = new CountDownLatch(1);
+        final int[] caughtWhenClosed = new int[1];
+        dispatcher.close(false, () -> {
+            caughtWhenClosed[0] = slowlyCaught.size();
+            closed.countDown();
+        });
+        Assert.assertTrue("Closed",
+                closed.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals("All events caught before closing", 20,
+                caughtWhenClosed[0]);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals("Caught in order", i,
+                    slowlyCaught.get(i).intValue());
+        }
+        Assert.assertEquals("No dropped events", 0, dispatcher.getDropped());
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Test that closing does not wait for the drain task, and that the
+     * dispatcher is closed by the drain task after the last event.
+     */
+    @Test
+    public void closeWithoutWaitingTest() {
+        final Dispatcher<Integer> dispatcher = this.create(DispatchPolicy.LATE);
+        dispatcher.dispatch(1);
+        dispatcher.dispatch(2);
+        final List<Integer> caughtWhenClosed = new ArrayList<>();
+        dispatcher.close(false, () -> caughtWhenClosed.addAll(this.caught));
+        Assert.assertTrue("Not closed yet", caughtWhenClosed.isEmpty());
+        this.runTasks();
+        Assert.assertEquals("Closed after the last event", Arrays.asList(1, 2),
+                caughtWhenClosed);
+    }
+
+    /**
+     * Test that an idle dispatcher is closed immediately.
+     */
+    @Test
+    public void closeIdleTest() {
+        final Dispatcher<Integer> dispatcher = this.create(DispatchPolicy.DROP);
+        dispatcher.dispatch(1);
+        this.runTasks();
+        final boolean[] closed = new boolean[1];
+        dispatcher.close(false, () -> closed[0] = true);
+        Assert.assertTrue("Closed immediately", closed[0]);
+        Assert.assertTrue("No task", this.tasks.isEmpty());
+    }
+
+    /**
+     * Test that closing with discard drops the queued events, and that the
+     * pending drain task closes the dispatcher.
+     */
+    @Test
+    public void discardTest() {
+        final Dispatcher<Integer> dispatcher = this.create(DispatchPolicy.LATE);
+        dispatcher.dispatch(1);
+        dispatcher.dispatch(2);
+        final int[] closed = new int[1];
+        dispatcher.close(true, () -> closed[0]++);
+        this.runTasks();
+        Assert.assertEquals("Closed once", 1, closed[0]);
+        Assert.assertTrue("Queued events are discarded",
+                this.caught.isEmpty());
+    }
+
+}
@@ -23,8 +23,23 @@
  */
 package com.stijndepestel.geminio;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import org.json.JSONObject;
 import org.junit.Assert;
@@ -116,6 +131,809 @@ public class ReplayTest {
         this.countHelper++;
     }
 
+    /**
+     * Test that events streamed from the source of a persister are replayed.
+     */
+    @Test
+    public void eventsReplayedFromSourceTest() {
+        final Persister persister = new Persister(new ByteArrayInputStream(
+                this.provideJSON().toString().getBytes()));
+        this.replay = new Replay<>(persister::source, TestHelper::deserialize,
+                this::eventsReplayedTestHelper);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        Assert.assertEquals("All events were replayed", this.fakeEvents.length,
+                listener.getLastEndedEventsCount());
+    }
+
+    /**
+     * Test that events are not replayed before their relative time, with
+     * either wait strategy.
+     */
+    @Test
+    public void eventsNotReplayedEarlyTest() {
+        for (final WaitStrategy strategy : WaitStrategy.values()) {
+            final long[] start = new long[1];
+            this.countHelper = 0;
+            this.replay = new Replay<>(TestHelper::deserialize,
+                    this::provideJSON, event -> {
+                        final long elapsed = TimeUnit.NANOSECONDS
+                                .toMillis(System.nanoTime() - start[0]);
+                        Assert.assertTrue("Event not early: " + elapsed,
+                                elapsed >= event.getTimestamp() * 10);
+                        this.countHelper++;
+                    });
+            this.replay.setWaitStrategy(strategy);
+            final TestReplayListener listener = new TestReplayListener();
+            this.replay.addReplayListener(listener);
+            this.replay.load();
+            start[0] = System.nanoTime();
+            this.replay.startReplay();
+            Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                    .until(this.hasReplayEnded(listener));
+            Assert.assertEquals("All events were replayed",
+                    this.fakeEvents.length, this.countHelper);
+        }
+    }
+
+    /**
+     * Test that a large number of events is replayed without exhausting the
+     * stack of the replay thread.
+     */
+    @Test
+    public void manyEventsReplayedTest() {
+        final int numberOfEvents = 200000;
+        final Replay<Integer> largeReplay = new Replay<>(
+                () -> TestHelper.counter(numberOfEvents, 0,
+                        TimeUnit.NANOSECONDS),
+                Function.identity(), event -> this.countHelper++);
+        final TestReplayListener listener = new TestReplayListener();
+        largeReplay.addReplayListener(listener);
+        largeReplay.load().startReplay();
+        Awaitility.await().atMost(10, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        Assert.assertEquals("All events were replayed", numberOfEvents,
+                listener.getLastEndedEventsCount());
+        Assert.assertEquals("All events were caught", numberOfEvents,
+                this.countHelper);
+    }
+
+    /**
+     * Test that events deserialized in parallel are replayed in the order of
+     * the source, also when spanning multiple batches.
+     */
+    @Test
+    public void parallelDeserializationTest() {
+        final int numberOfEvents = 2 * ReplayInput.BATCH_SIZE + 3;
+        final List<Integer> caught = new ArrayList<>();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final Replay<Integer> parallelReplay = new Replay<>(
+                () -> TestHelper.counter(numberOfEvents, 1,
+                        TimeUnit.NANOSECONDS),
+                event -> {
+                    threads.add(Thread.currentThread().getName());
+                    return -event;
+                }, caught::add);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        parallelReplay.setDeserializationPool(pool);
+        final TestReplayListener listener = new TestReplayListener();
+        parallelReplay.addReplayListener(listener);
+        parallelReplay.load().startReplay();
+        Awaitility.await().atMost(5, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        pool.shutdown();
+        Assert.assertEquals("All events were replayed", numberOfEvents,
+                caught.size());
+        for (int i = 0; i < numberOfEvents; i++) {
+            Assert.assertEquals("Events replayed in order", -i,
+                    caught.get(i).intValue());
+        }
+        Assert.assertFalse("Not deserialized on the loading thread",
+                threads.contains(Thread.currentThread().getName()));
+    }
+
+    /**
+     * Test that a pipelined replay decodes the events while replaying, replays
+     * them all in order and re-reads the source after a reset.
+     */
+    @Test
+    public void prefetchReplayTest() {
+        final int numberOfEvents = 10000;
+        final List<Integer> caught = new ArrayList<>();
+        final Replay<Integer> pipelinedReplay = new Replay<>(
+                () -> TestHelper.counter(numberOfEvents, 1,
+                        TimeUnit.MICROSECONDS),
+                Function.identity(), caught::add);
+        pipelinedReplay.setPrefetch(16);
+        pipelinedReplay.load();
+        for (int run = 0; run < 2; run++) {
+            caught.clear();
+            final TestReplayListener listener = new TestReplayListener();
+            pipelinedReplay.addReplayListener(listener);
+            pipelinedReplay.startReplay();
+            Awaitility.await().atMost(5, TimeUnit.SECONDS)
+                    .until(this.hasReplayEnded(listener));
+            Assert.assertEquals("All events were replayed", numberOfEvents,
+                    listener.getLastEndedEventsCount());
+            for (int i = 0; i < numberOfEvents; i++) {
+                Assert.assertEquals("Events replayed in order", i,
+                        caught.get(i).intValue());
+            }
+            pipelinedReplay.removeReplayListener(listener);
+            pipelinedReplay.reset();
+        }
+    }
+
+    /**
+     * Test that a pipelined replay can be stopped while the decoder is still
+     * running.
+     */
+    @Test
+    public void stopPrefetchReplayTest() {
+        this.replay = new Replay<>(TestHelper::deserialize,
+                this::provideJSONForFailedReplay, event -> {/* ignore */
+                });
+        this.replay.setPrefetch(1);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load().startReplay();
+        this.replay.stopReplay();
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(this.hasReplayFailed(listener));
+        Assert.assertTrue("Replay is in stopped state.",
+                this.replay.hasEnded());
+    }
+
+    /**
+     * Test that a lookahead of zero events is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void exceptionOnZeroPrefetchTest() {
+        this.replay.setPrefetch(0);
+    }
+
+    /**
+     * Test that unordered events are replayed by timestamp, that identical
+     * events at the same timestamp are all replayed and that events with equal
+     * timestamps keep their order.
+     */
+    @Test
+    public void orderAndDuplicatesTest() {
+        this.replay = new Replay<>(TestHelper::deserialize,
+                () -> new JSONObject("{events : ["
+                        + "{relative_time:20,event:{random:2,time:2}},"
+                        + "{relative_time:10,event:{random:1,time:1}},"
+                        + "{relative_time:10,event:{random:1,time:1}},"
+                        + "{relative_time:10,event:{random:0,time:0}},"
+                        + "{relative_time:0,event:{random:9,time:9}}]}"),
+                this::eventsReplayedTestHelper);
+        final TestEvent[] expected = { new TestEvent(9, 9),
+                new TestEvent(1, 1), new TestEvent(1, 1), new TestEvent(0, 0),
+                new TestEvent(2, 2) };
+        final List<TestEvent> caught = new ArrayList<>();
+        this.replay.setEventCatcher(caught::add);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        Assert.assertArrayEquals("Ordered, stable and with duplicates",
+                expected, caught.toArray());
+    }
+
+    /**
+     * Test that a stopped replay ends in the stopped state and can be reset.
+     */
+    @Test
+    public void stoppedReplayCanBeResetTest() {
+        this.replay = new Replay<>(TestHelper::deserialize,
+                this::provideJSONForFailedReplay, event -> {/* ignore */
+                });
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load().startReplay();
+        this.replay.stopReplay();
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(this.hasReplayFailed(listener));
+        Assert.assertTrue("Replay is in stopped state.",
+                this.replay.hasEnded());
+        this.replay.reset().startReplay();
+        Awaitility.await().atMost(3, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        Assert.assertEquals("All events were replayed after reset", 3,
+                listener.getLastEndedEventsCount());
+    }
+
+    /**
+     * Test that a sped up replay takes proportionally less time, and that an
+     * unthrottled replay does not wait at all.
+     */
+    @Test
+    public void speedTest() {
+        final double[] speeds = { 10, Replay.UNTHROTTLED };
+        final long[] expectedMillis = { 200, 0 };
+        for (int i = 0; i < speeds.length; i++) {
+            this.replay = new Replay<>(TestHelper::deserialize,
+                    this::provideJSONForFailedReplay, event -> {/* ignore */
+                    });
+            this.replay.setSpeed(speeds[i]);
+            final TestReplayListener listener = new TestReplayListener();
+            this.replay.addReplayListener(listener);
+            this.replay.load();
+            final long start = System.nanoTime();
+            this.replay.startReplay();
+            Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                    .until(this.hasReplayEnded(listener));
+            final long elapsed = TimeUnit.NANOSECONDS
+                    .toMillis(System.nanoTime() - start);
+            Assert.assertTrue("Not faster than the speed allows: " + elapsed,
+                    elapsed >= expectedMillis[i]);
+            Assert.assertTrue("Faster than the captured pace: " + elapsed,
+                    elapsed < expectedMillis[i] + 500);
+            Assert.assertEquals("All events were replayed", 3,
+                    listener.getLastEndedEventsCount());
+        }
+    }
+
+    /**
+     * Test that progress is notified while replaying and that the metrics
+     * reflect the replay.
+     */
+    @Test
+    public void progressAndMetricsTest() {
+        this.replay = new Replay<>(TestHelper::deserialize,
+                this::provideJSONForFailedReplay, event -> {/* ignore */
+                });
+        this.replay.setWaitStrategy(WaitStrategy.PRECISE);
+        this.replay.setProgressInterval(100, TimeUnit.MILLISECONDS);
+        final List<ReplayEvent> progress = new ArrayList<>();
+        final ReplayEvent[] ended = new ReplayEvent[1];
+        this.replay.addReplayListener(new ReplayListener() {
+
+            @Override
+            public void replayProgress(final ReplayEvent event) {
+                progress.add(event);
+            }
+
+            @Override
+            public void replayFailed(final ReplayEvent event) {
+                Assert.fail("Replay should not fail");
+            }
+
+            @Override
+            public void replayEnded(final ReplayEvent event) {
+                ended[0] = event;
+            }
+        });
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(4, TimeUnit.SECONDS)
+                .until(() -> ended[0] != null);
+        Assert.assertTrue("Progress notified during 2 seconds: "
+                + progress.size(), progress.size() >= 10);
+        Assert.assertEquals("All events counted", 3,
+                ended[0].getTotalEventsReplayed());
+        Assert.assertTrue("Median drift is small",
+                ended[0].getMedianDrift(TimeUnit.MILLISECONDS) < 50);
+        Assert.assertTrue("Percentiles are ordered",
+                ended[0].getMedianDrift(TimeUnit.NANOSECONDS) <= ended[0]
+                        .getP99Drift(TimeUnit.NANOSECONDS)
+                        && ended[0].getP99Drift(
+                                TimeUnit.NANOSECONDS) <= ended[0]
+                                        .getMaxDrift(TimeUnit.NANOSECONDS));
+        Assert.assertTrue("About 1.5 events per second: "
+                + ended[0].getEventsPerSecond(),
+                ended[0].getEventsPerSecond() > 1
+                        && ended[0].getEventsPerSecond() < 2);
+    }
+
+    /**
+     * Test that many concurrent replays can be driven by a scheduler with a
+     * single thread.
+     */
+    @Test
+    public void sharedSchedulerTest() throws InterruptedException {
+        final int numberOfReplays = 500;
+        final ScheduledExecutorService scheduler = Executors
+                .newSingleThreadScheduledExecutor();
+        final AtomicInteger caught = new AtomicInteger();
+        final CountDownLatch ended = new CountDownLatch(numberOfReplays);
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < numberOfReplays; i++) {
+            final Replay<TestEvent> scheduledReplay = new Replay<>(
+                    TestHelper::deserialize, this::provideJSON, event -> {
+                        threads.add(Thread.currentThread().getName());
+                        caught.incrementAndGet();
+                    });
+            scheduledReplay.setScheduler(scheduler);
+            scheduledReplay.addReplayListener(new ReplayListener() {
+
+                @Override
+                public void replayFailed(final ReplayEvent event) {
+                    Assert.fail("Replay should not fail");
+                }
+
+                @Override
+                public void replayEnded(final ReplayEvent event) {
+                    ended.countDown();
+                }
+            });
+            scheduledReplay.load().startReplay();
+        }
+        Assert.assertTrue("All replays ended",
+                ended.await(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        Assert.assertEquals("All events were replayed",
+                numberOfReplays * this.fakeEvents.length, caught.get());
+        Assert.assertEquals("All events thrown on the scheduler", 1,
+                threads.size());
+    }
+
+    /**
+     * Test that a replay on a scheduler is stopped immediately, and not when
+     * the next event is due.
+     */
+    @Test
+    public void stopScheduledReplayTest() {
+        final ScheduledExecutorService scheduler = Executors
+                .newSingleThreadScheduledExecutor();
+        final AtomicInteger caught = new AtomicInteger();
+        this.replay = new Replay<>(TestHelper::deserialize,
+                this::provideJSONForFailedReplay,
+                event -> caught.incrementAndGet());
+        this.replay.setScheduler(scheduler);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(500, TimeUnit.MILLISECONDS)
+                .until(() -> caught.get() == 1);
+        this.replay.stopReplay();
+        Awaitility.await().atMost(200, TimeUnit.MILLISECONDS)
+                .until(this.hasReplayFailed(listener));
+        scheduler.shutdown();
+        Assert.assertEquals("Stopped after the first event", 1,
+                listener.getLastFailedEventsCount());
+    }
+
+    /**
+     * Test that an anchored replay keeps the captured time between its first
+     * and its next event when the first event is late.
+     *
+     * @throws InterruptedException
+     *             When interrupted while waiting.
+     */
+    @Test
+    public void anchoredStartTest() throws InterruptedException {
+        final ScheduledExecutorService scheduler = Executors
+                .newSingleThreadScheduledExecutor();
+        final List<Long> caught = Collections
+                .synchronizedList(new ArrayList<>());
+        this.replay = new Replay<>(TestHelper::deserialize,
+                this::provideJSONForFailedReplay,
+                event -> caught.add(System.nanoTime()));
+        this.replay.setScheduler(scheduler);
+        this.replay.setAnchoredStart(true);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load();
+        // keep the scheduler busy, so that the first event is late
+        final CountDownLatch busy = new CountDownLatch(1);
+        scheduler.execute(() -> {
+            busy.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        busy.await();
+        this.replay.startReplay();
+        Awaitility.await().atMost(3, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        scheduler.shutdown();
+        Assert.assertEquals("All events were replayed", 3, caught.size());
+        Assert.assertTrue("Captured time after the late first event kept",
+                TimeUnit.NANOSECONDS
+                        .toMillis(caught.get(1) - caught.get(0)) >= 1000);
+    }
+
+    /**
+     * Test that waking a replay on a scheduler while a step is running does
+     * not start a second step next to it.
+     *
+     * @throws InterruptedException
+     *             When interrupted while waiting.
+     */
+    @Test
+    public void wakeDuringScheduledStepTest() throws InterruptedException {
+        final ScheduledExecutorService scheduler = Executors
+                .newScheduledThreadPool(4);
+        final AtomicInteger caught = new AtomicInteger();
+        final AtomicInteger catching = new AtomicInteger();
+        final AtomicInteger maxCatching = new AtomicInteger();
+        this.replay = new Replay<>(TestHelper::deserialize,
+                this::provideJSONForFailedReplay, event -> {
+                    caught.incrementAndGet();
+                    maxCatching.accumulateAndGet(catching.incrementAndGet(),
+                            Math::max);
+                    try {
+                        Thread.sleep(200);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    catching.decrementAndGet();
+                });
+        this.replay.setScheduler(scheduler);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(500, TimeUnit.MILLISECONDS)
+                .until(() -> caught.get() == 1);
+        this.replay.seek(0, TimeUnit.MILLISECONDS);
+        Thread.sleep(50);
+        this.replay.stopReplay();
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(this.hasReplayFailed(listener));
+        Thread.sleep(300);
+        scheduler.shutdown();
+        Assert.assertEquals("Caught on one step at a time", 1,
+                maxCatching.get());
+        Assert.assertEquals("Failed once", 1, listener.getFailedCounter());
+        Assert.assertEquals("Ended never", 0, listener.getEndedCounter());
+    }
+
+    /**
+     * Test that a replay ends when its scheduler also runs the event catcher,
+     * since the replay does not wait for the queue to drain.
+     */
+    @Test
+    public void asyncDispatchOnSchedulerTest() {
+        final ScheduledExecutorService scheduler = Executors
+                .newSingleThreadScheduledExecutor();
+        final List<TestEvent> caught = new ArrayList<>();
+        this.replay = new Replay<>(TestHelper::deserialize, this::provideJSON,
+                caught::add);
+        this.replay.setScheduler(scheduler);
+        this.replay.setAsyncDispatch(scheduler, 16, DispatchPolicy.BLOCK);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        scheduler.shutdown();
+        Assert.assertTrue("Replay has ended", this.replay.hasEnded());
+        Assert.assertEquals("All events were caught", 5, caught.size());
+        Assert.assertEquals("All events were replayed", 5,
+                listener.getLastEndedEventsCount());
+    }
+
+    /**
+     * Test that a slow event catcher does not hold back a replay with
+     * asynchronous dispatch, and that events are dropped when it falls too far
+     * behind.
+     */
+    @Test
+    public void asyncDispatchTest() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final List<TestEvent> caught = new ArrayList<>();
+        this.replay = new Replay<>(TestHelper::deserialize, this::provideJSON,
+                event -> {
+                    try {
+                        Thread.sleep(100);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    caught.add(event);
+                });
+        this.replay.setAsyncDispatch(executor, 1, DispatchPolicy.DROP);
+        final ReplayEvent[] ended = new ReplayEvent[1];
+        this.replay.addReplayListener(new ReplayListener() {
+
+            @Override
+            public void replayFailed(final ReplayEvent event) {
+                Assert.fail("Replay should not fail");
+            }
+
+            @Override
+            public void replayEnded(final ReplayEvent event) {
+                ended[0] = event;
+            }
+        });
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> ended[0] != null);
+        executor.shutdown();
+        Assert.assertTrue("Events were thrown on time",
+                ended[0].getMaxDrift(TimeUnit.MILLISECONDS) < 50);
+        Assert.assertEquals("Events that did not fit were dropped", 3,
+                ended[0].getDroppedEvents());
+        Assert.assertEquals("Dropped events are not replayed",
+                this.fakeEvents.length - ended[0].getDroppedEvents(),
+                ended[0].getTotalEventsReplayed());
+        Assert.assertEquals("Only the first and second event are caught",
+                Arrays.asList(this.fakeEvents[0], this.fakeEvents[1]), caught);
+    }
+
+    /**
+     * Test that every event is broadcast to all event catchers, and that a
+     * slow catcher does not hold back the others.
+     */
+    @Test
+    public void fanOutTest() {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final List<TestEvent> slow = new ArrayList<>();
+        final List<TestEvent> fast = new ArrayList<>();
+        final List<Long> fastTimes = new ArrayList<>();
+        this.replay = new Replay<>(TestHelper::deserialize, this::provideJSON,
+                event -> {
+                    try {
+                        Thread.sleep(50);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    slow.add(event);
+                });
+        this.replay.addEventCatcher(event -> {
+            fastTimes.add(System.nanoTime());
+            fast.add(event);
+        });
+        this.replay.setAsyncDispatch(executor, this.fakeEvents.length,
+                DispatchPolicy.BLOCK);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(2, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        executor.shutdown();
+        Assert.assertEquals("Slow catcher caught all events",
+                Arrays.asList(this.fakeEvents), slow);
+        Assert.assertEquals("Fast catcher caught all events",
+                Arrays.asList(this.fakeEvents), fast);
+        Assert.assertTrue("Fast catcher was not held back",
+                TimeUnit.NANOSECONDS.toMillis(fastTimes.get(4)
+                        - fastTimes.get(0)) < 100);
+    }
+
+    /**
+     * Test that partitioned events are caught in parallel, in order per key.
+     */
+    @Test
+    public void shardingTest() {
+        final int numberOfEvents = 20000;
+        final int numberOfKeys = 16;
+        final int numberOfShards = 4;
+        final ExecutorService executor = Executors
+                .newFixedThreadPool(numberOfShards);
+        final Map<Integer, List<Integer>> caught = new ConcurrentHashMap<>();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final Replay<Integer> shardedReplay = new Replay<>(
+                () -> TestHelper.counter(numberOfEvents, 0,
+                        TimeUnit.NANOSECONDS),
+                Function.identity(), event -> {
+                    threads.add(Thread.currentThread().getName());
+                    // one thread per key, so the lists need no locking
+                    caught.computeIfAbsent(event % numberOfKeys,
+                            key -> new ArrayList<>()).add(event);
+                });
+        shardedReplay.setSpeed(Replay.UNTHROTTLED);
+        shardedReplay.setAsyncDispatch(executor, 64, DispatchPolicy.BLOCK);
+        shardedReplay.setSharding(event -> event % numberOfKeys,
+                numberOfShards);
+        final TestReplayListener listener = new TestReplayListener();
+        shardedReplay.addReplayListener(listener);
+        shardedReplay.load().startReplay();
+        Awaitility.await().atMost(5, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        executor.shutdown();
+        Assert.assertEquals("All events were replayed", numberOfEvents,
+                listener.getLastEndedEventsCount());
+        Assert.assertEquals("All keys were caught", numberOfKeys,
+                caught.size());
+        caught.forEach((key, events) -> {
+            Assert.assertEquals("All events of the key were caught",
+                    numberOfEvents / numberOfKeys, events.size());
+            for (int i = 0; i < events.size(); i++) {
+                Assert.assertEquals("Events of a key are in order",
+                        key + i * numberOfKeys, events.get(i).intValue());
+            }
+        });
+        Assert.assertTrue("Caught in parallel", threads.size() > 1);
+    }
+
+    /**
+     * Test that partitioned events can not be replayed without asynchronous
+     * dispatch, as they would not be caught in parallel.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void exceptionOnShardingWithoutAsyncDispatchTest() {
+        this.replay.setSharding(Function.identity(), 4);
+        this.replay.load().startReplay();
+    }
+
+    /**
+     * Test that a paused replay throws no events, and that the pause does not
+     * count towards the offsets of the events.
+     */
+    @Test
+    public void pauseResumeTest() {
+        final List<Long> caught = Collections
+                .synchronizedList(new ArrayList<>());
+        this.replay = new Replay<>(TestHelper::deserialize,
+                this::provideJSONForFailedReplay,
+                event -> caught.add(System.nanoTime()));
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        final long start = System.nanoTime();
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(500, TimeUnit.MILLISECONDS)
+                .until(() -> caught.size() == 1);
+        this.replay.pause();
+        Assert.assertTrue("Replay is paused", this.replay.isPaused());
+        Awaitility.await().pollDelay(1500, TimeUnit.MILLISECONDS)
+                .atMost(2, TimeUnit.SECONDS).until(() -> true);
+        Assert.assertEquals("No events while paused", 1, caught.size());
+        this.replay.resume();
+        Awaitility.await().atMost(3, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        Assert.assertEquals("All events were replayed", 3,
+                listener.getLastEndedEventsCount());
+        Assert.assertTrue("Paused time was added",
+                TimeUnit.NANOSECONDS.toMillis(caught.get(2) - start) >= 3500);
+    }
+
+    /**
+     * Test that seeking continues the replay at the first event at or after
+     * the offset, both forward and backward.
+     */
+    @Test
+    public void seekTest() {
+        final List<TestEvent> caught = new ArrayList<>();
+        this.replay = new Replay<>(TestHelper::deserialize,
+                this::provideJSONForFailedReplay, caught::add);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(500, TimeUnit.MILLISECONDS)
+                .until(() -> caught.size() == 1);
+        final long seek = System.nanoTime();
+        this.replay.seek(1500, TimeUnit.MILLISECONDS);
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> caught.size() == 2);
+        final long waited = TimeUnit.NANOSECONDS
+                .toMillis(System.nanoTime() - seek);
+        Assert.assertTrue("Event after the offset is due after the rest of "
+                + "its offset: " + waited, waited >= 400 && waited < 900);
+        Assert.assertEquals("Skipped to the event after the offset",
+                new TestEvent(2, 2), caught.get(1));
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        Assert.assertEquals("Skipped event was not replayed", 2,
+                listener.getLastEndedEventsCount());
+    }
+
+    /**
+     * Test that a paused replay can seek backward and resume there.
+     */
+    @Test
+    public void seekBackwardWhilePausedTest() {
+        final List<TestEvent> caught = new ArrayList<>();
+        this.replay = new Replay<>(TestHelper::deserialize,
+                this::provideJSONForFailedReplay, caught::add);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(1500, TimeUnit.MILLISECONDS)
+                .until(() -> caught.size() == 2);
+        this.replay.pause();
+        this.replay.seek(0, TimeUnit.MILLISECONDS);
+        Assert.assertFalse("Replay did not end while paused",
+                this.replay.hasEnded());
+        final int caughtBeforeResume = caught.size();
+        this.replay.resume();
+        Awaitility.await().atMost(3, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        Assert.assertEquals("Replayed again from the first event",
+                caughtBeforeResume + 3, caught.size());
+        Assert.assertEquals("Replayed again from the first event",
+                this.fakeEvents[0], caught.get(caughtBeforeResume));
+    }
+
+    /**
+     * Test that seeking backward in pipelined mode is ignored, and that the
+     * replay continues at the current event without waiting for the gap.
+     */
+    @Test
+    public void seekBackwardWithPrefetchTest() {
+        final List<Long> caught = new ArrayList<>();
+        this.replay = new Replay<>(TestHelper::deserialize,
+                this::provideJSONForFailedReplay,
+                event -> caught.add(System.nanoTime()));
+        this.replay.setPrefetch(4);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        final long start = System.nanoTime();
+        this.replay.load().startReplay();
+        Awaitility.await().atMost(1500, TimeUnit.MILLISECONDS)
+                .until(() -> caught.size() == 2);
+        this.replay.seek(0, TimeUnit.MILLISECONDS);
+        Awaitility.await().atMost(2, TimeUnit.SECONDS)
+                .until(this.hasReplayEnded(listener));
+        Assert.assertEquals("No events replayed again", 3,
+                listener.getLastEndedEventsCount());
+        Assert.assertTrue("Last event at its original time",
+                TimeUnit.NANOSECONDS.toMillis(caught.get(2) - start) < 2500);
+    }
+
+    /**
+     * Test that pausing a replay that is not running is rejected.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void exceptionOnPauseWithStateLoadedTest() {
+        this.replay.load().pause();
+    }
+
+    /**
+     * Test that only the events in the time range are deserialized and
+     * replayed, starting at the start of the range.
+     */
+    @Test
+    public void timeRangeTest() {
+        final List<JSONObject> deserialized = new ArrayList<>();
+        final List<TestEvent> caught = new ArrayList<>();
+        this.replay = new Replay<>(json -> {
+            deserialized.add(json);
+            return TestHelper.deserialize(json);
+        }, this::provideJSONForFailedReplay, caught::add);
+        this.replay.setTimeRange(1000, 2000, TimeUnit.MILLISECONDS);
+        final TestReplayListener listener = new TestReplayListener();
+        this.replay.addReplayListener(listener);
+        final ReplayEvent[] ended = new ReplayEvent[1];
+        this.replay.addReplayListener(new ReplayListener() {
+
+            @Override
+            public void replayFailed(final ReplayEvent event) {
+                Assert.fail("Replay should not fail");
+            }
+
+            @Override
+            public void replayEnded(final ReplayEvent event) {
+                ended[0] = event;
+            }
+        });
+        this.replay.load();
+        Assert.assertEquals("Only the event in the range was deserialized", 1,
+                deserialized.size());
+        final long start = System.nanoTime();
+        this.replay.startReplay();
+        Awaitility.await().atMost(500, TimeUnit.MILLISECONDS)
+                .until(this.hasReplayEnded(listener));
+        Assert.assertTrue("Replay started at the start of the range",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        Assert.assertEquals("Only the event in the range was replayed",
+                Arrays.asList(new TestEvent(1, 1)), caught);
+        Assert.assertTrue("Skipped range not counted as elapsed: "
+                + ended[0].getEventsPerSecond(),
+                ended[0].getEventsPerSecond() > 10);
+    }
+
+    /**
+     * Test that an empty time range is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void exceptionOnEmptyTimeRangeTest() {
+        this.replay.setTimeRange(10, 10, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Test that a speed of zero is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void exceptionOnZeroSpeedTest() {
+        this.replay.setSpeed(0);
+    }
+
     /**
      * Test that the old event catcher is overwritten by the setter.
      */
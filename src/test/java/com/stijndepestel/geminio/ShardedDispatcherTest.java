@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the ShardedDispatcher class.
+ *
+ * @author sjdpeste
+ *
+ */
+public class ShardedDispatcherTest {
+
+    /**
+     * Test that events with the same key go to the same shard, in order, and
+     * that null keys are supported.
+     */
+    @Test
+    public void partitionTest() {
+        final List<List<String>> caught = new ArrayList<>();
+        final List<Dispatcher<String>> shards = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final List<String> shard = new ArrayList<>();
+            caught.add(shard);
+            shards.add(new DirectDispatcher<>(shard::add));
+        }
+        final Dispatcher<String> dispatcher = new ShardedDispatcher<>(
+                event -> event.length() == 0 ? null : event.charAt(0), shards);
+        final List<String> events = Arrays.asList("a1", "b1", "a2", "", "c1",
+                "b2", "a3", "");
+        events.forEach(dispatcher::dispatch);
+        int total = 0;
+        for (final List<String> shard : caught) {
+            total += shard.size();
+            for (final String event : shard) {
+                final Character key = event.isEmpty() ? null : event.charAt(0);
+                final List<String> sameKey = events.stream()
+                        .filter(e -> Objects.equals(key,
+                                e.isEmpty() ? null : e.charAt(0)))
+                        .collect(Collectors.toList());
+                final List<String> sameKeyInShard = shard.stream()
+                        .filter(e -> Objects.equals(key,
+                                e.isEmpty() ? null : e.charAt(0)))
+                        .collect(Collectors.toList());
+                Assert.assertEquals("Same key in the same shard, in order",
+                        sameKey, sameKeyInShard);
+            }
+        }
+        Assert.assertEquals("All events were dispatched once", events.size(),
+                total);
+    }
+
+}
@@ -23,10 +23,18 @@
  */
 package com.stijndepestel.geminio;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
 import org.json.JSONObject;
 
 /**
- * Serializer and deserializer for the TestEvent.
+ * Serializer and deserializer for the TestEvent, sources of test events and a
+ * sink collecting captured bytes.
  *
  * @author sjdpeste
  *
@@ -60,4 +68,137 @@ public final class TestHelper {
         return new TestEvent(json.getLong(TestHelper.JSON_NAME_TIME),
                 json.getLong(TestHelper.JSON_NAME_RANDOM));
     }
+
+    /**
+     * Create a source of counting events, i.e., the integers from zero, at
+     * evenly spaced relative times.
+     *
+     * @param numberOfEvents
+     *            The number of events.
+     * @param spacing
+     *            The time between two events, zero to have all events at the
+     *            start.
+     * @param unit
+     *            The unit of the spacing.
+     * @return The source of the events.
+     */
+    public static EventSource<Integer> counter(final int numberOfEvents,
+            final long spacing, final TimeUnit unit) {
+        return new EventSource<Integer>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < numberOfEvents;
+            }
+
+            @Override
+            public Wrapper<Integer> next() {
+                final int event = this.index++;
+                return new Wrapper<>(event, event * spacing, unit);
+            }
+
+            @Override
+            public void close() {
+                // nothing to close
+            }
+        };
+    }
+
+    /**
+     * Sink that keeps a copy of the written bytes and their relative times,
+     * and counts the flushes. Can be written from another thread than the
+     * one of the test.
+     *
+     * @author sjdpeste
+     *
+     */
+    public static final class CollectingSink implements EventSink<ByteBuffer> {
+
+        /**
+         * Copies of the written events.
+         */
+        private final List<byte[]> events = new ArrayList<>();
+
+        /**
+         * Relative timestamps of the written events, in nanoseconds.
+         */
+        private final List<Long> timestamps = new ArrayList<>();
+
+        /**
+         * The number of flushes.
+         */
+        private int flushes;
+
+        /**
+         * Flag indicating that the sink was closed.
+         */
+        private volatile boolean closed;
+
+        @Override
+        public synchronized void write(final Wrapper<ByteBuffer> event) {
+            final byte[] copy = new byte[event.getEvent().remaining()];
+            event.getEvent().duplicate().get(copy);
+            this.events.add(copy);
+            this.timestamps.add(event.getRelativeTimeNanos());
+        }
+
+        @Override
+        public synchronized void flush() {
+            this.flushes++;
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+
+        /**
+         * Get the copies of the written events.
+         *
+         * @return The written events, in order.
+         */
+        public synchronized List<byte[]> getEvents() {
+            return new ArrayList<>(this.events);
+        }
+
+        /**
+         * Get the written events as ASCII strings.
+         *
+         * @return The written events, in order.
+         */
+        public synchronized List<String> getStrings() {
+            return this.events.stream()
+                    .map(e -> new String(e, StandardCharsets.US_ASCII))
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * Get the relative timestamps of the written events.
+         *
+         * @return The timestamps in nanoseconds, in order.
+         */
+        public synchronized List<Long> getTimestamps() {
+            return new ArrayList<>(this.timestamps);
+        }
+
+        /**
+         * Get the number of flushes.
+         *
+         * @return The number of flushes.
+         */
+        public synchronized int getFlushes() {
+            return this.flushes;
+        }
+
+        /**
+         * Indicates whether or not the sink was closed.
+         *
+         * @return true if the sink was closed, false otherwise.
+         */
+        public boolean isClosed() {
+            return this.closed;
+        }
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the WaitStrategy enum.
+ *
+ * @author sjdpeste
+ *
+ */
+public class WaitStrategyTest {
+
+    /**
+     * The time to wait during the tests.
+     */
+    private static final long WAIT_TIME = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /**
+     * Generous upper bound on the lateness, to avoid failures on loaded
+     * machines.
+     */
+    private static final long MAX_LATENESS = TimeUnit.MILLISECONDS
+            .toNanos(15);
+
+    /**
+     * Wait until the deadline like the Replay does.
+     *
+     * @param strategy
+     *            The strategy to wait with.
+     * @return The lateness in nanoseconds.
+     */
+    private long awaitDeadline(final WaitStrategy strategy) {
+        final long deadline = System.nanoTime() + WaitStrategyTest.WAIT_TIME;
+        while (deadline - System.nanoTime() > 0) {
+            strategy.await(deadline);
+        }
+        return System.nanoTime() - deadline;
+    }
+
+    /**
+     * Test that the power saving strategy waits until the deadline.
+     */
+    @Test
+    public void powerSavingTest() {
+        Assert.assertTrue("Deadline met",
+                this.awaitDeadline(
+                        WaitStrategy.POWER_SAVING) < WaitStrategyTest.MAX_LATENESS);
+    }
+
+    /**
+     * Test that the precise strategy waits until the deadline and spins
+     * through the last part, returning at most once to the caller before the
+     * deadline.
+     */
+    @Test
+    public void preciseTest() {
+        final long deadline = System.nanoTime() + WaitStrategyTest.WAIT_TIME;
+        int calls = 0;
+        while (deadline - System.nanoTime() > 0) {
+            WaitStrategy.PRECISE.await(deadline);
+            calls++;
+        }
+        Assert.assertTrue("Deadline met", System.nanoTime()
+                - deadline < WaitStrategyTest.MAX_LATENESS);
+        Assert.assertTrue("Parks once, then spins", calls <= 3);
+        Assert.assertTrue("Deadline met",
+                this.awaitDeadline(
+                        WaitStrategy.PRECISE) < WaitStrategyTest.MAX_LATENESS);
+    }
+
+}
@@ -23,6 +23,9 @@
  */
 package com.stijndepestel.geminio;
 
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -110,4 +113,44 @@ public class WrapperTest {
         Assert.assertFalse("Event and null are not equal",
                 this.testEvent1.equals(null));
     }
+
+    /**
+     * Test that relative times in milliseconds and nanoseconds are converted.
+     */
+    @Test
+    public void relativeTimeUnitsTest() {
+        final Wrapper<TestEvent> millis = new Wrapper<>(this.testEvent1, 3);
+        Assert.assertEquals("Milliseconds", 3, millis.getRelativeTimestamp());
+        Assert.assertEquals("Nanoseconds", 3000000,
+                millis.getRelativeTimeNanos());
+        final Wrapper<TestEvent> nanos = new Wrapper<>(this.testEvent1, 3500,
+                TimeUnit.NANOSECONDS);
+        Assert.assertEquals("Truncated to milliseconds", 0,
+                nanos.getRelativeTimestamp());
+        Assert.assertEquals("Nanoseconds", 3500, nanos.getRelativeTimeNanos());
+        Assert.assertTrue("Ordered on nanoseconds",
+                nanos.compareTo(new Wrapper<>(this.testEvent1, 3501,
+                        TimeUnit.NANOSECONDS)) < 0);
+    }
+
+    /**
+     * Test that the JSON representation contains the relative time in both
+     * units and that JSON with only milliseconds can still be read.
+     */
+    @Test
+    public void jsonRelativeTimeTest() {
+        final JSONObject json = new Wrapper<>(this.testEvent1, 1234567,
+                TimeUnit.NANOSECONDS).toJSON(TestHelper::serialize);
+        Assert.assertEquals("Milliseconds", 1,
+                json.getLong(JSONNames.JSON_REL_TIME));
+        Assert.assertEquals("Nanoseconds", 1234567,
+                json.getLong(JSONNames.JSON_REL_TIME_NANOS));
+        Assert.assertEquals("Read with nanosecond precision", 1234567,
+                new Wrapper<>(json, TestHelper::deserialize)
+                        .getRelativeTimeNanos());
+        json.remove(JSONNames.JSON_REL_TIME_NANOS);
+        Assert.assertEquals("Read from milliseconds", 1000000,
+                new Wrapper<>(json, TestHelper::deserialize)
+                        .getRelativeTimeNanos());
+    }
 }
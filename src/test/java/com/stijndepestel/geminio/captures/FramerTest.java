@@ -0,0 +1,225 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the framers.
+ *
+ * @author sjdpeste
+ *
+ */
+public class FramerTest {
+
+    /**
+     * Output that keeps a copy of the messages and their times.
+     */
+    private static final class CopyingOutput implements Framer.Output {
+
+        /**
+         * Copies of the messages.
+         */
+        private final List<byte[]> messages = new ArrayList<>();
+
+        /**
+         * The times of the messages.
+         */
+        private final List<Long> times = new ArrayList<>();
+
+        @Override
+        public void message(final byte[] bytes, final int offset,
+                final int length, final long nanoTime) {
+            this.messages
+                    .add(Arrays.copyOfRange(bytes, offset, offset + length));
+            this.times.add(nanoTime);
+        }
+    }
+
+    /**
+     * Read the reads with the framer, one time unit apart, and flush it.
+     *
+     * @param framer
+     *            The framer.
+     * @param reads
+     *            The bytes of the reads.
+     * @return The output with the messages.
+     */
+    private CopyingOutput frame(final Framer framer, final byte[]... reads) {
+        final CopyingOutput output = new CopyingOutput();
+        for (int i = 0; i < reads.length; i++) {
+            final byte[] read = new byte[reads[i].length + 2];
+            System.arraycopy(reads[i], 0, read, 1, reads[i].length);
+            framer.read(read, 1, reads[i].length, i, output);
+        }
+        framer.flush(output);
+        return output;
+    }
+
+    /**
+     * Check the messages of an output.
+     *
+     * @param output
+     *            The output.
+     * @param messages
+     *            The expected messages.
+     */
+    private void assertMessages(final CopyingOutput output,
+            final byte[]... messages) {
+        Assert.assertEquals("Number of messages", messages.length,
+                output.messages.size());
+        for (int i = 0; i < messages.length; i++) {
+            Assert.assertArrayEquals("Message " + i, messages[i],
+                    output.messages.get(i));
+        }
+    }
+
+    /**
+     * Test that every read is a message without framing.
+     */
+    @Test
+    public void noneTest() {
+        this.assertMessages(
+                this.frame(Framer.none(), new byte[] { 1, 2 },
+                        new byte[] { 3 }),
+                new byte[] { 1, 2 }, new byte[] { 3 });
+    }
+
+    /**
+     * Test that messages end with the delimiter, also when the delimiter is
+     * split over reads, and that the rest is flushed.
+     */
+    @Test
+    public void delimiterTest() {
+        final CopyingOutput output = this.frame(
+                Framer.delimiter((byte) 0, (byte) 0), new byte[] { 1, 2, 0 },
+                new byte[] { 0, 3, 0, 0, 4, 0 }, new byte[] { 0, 5 });
+        this.assertMessages(output, new byte[] { 1, 2, 0, 0 },
+                new byte[] { 3, 0, 0 }, new byte[] { 4, 0, 0 },
+                new byte[] { 5 });
+        Assert.assertEquals("Time of the last byte", Arrays.asList(1L, 1L, 2L,
+                2L), output.times);
+    }
+
+    /**
+     * Test that messages have a fixed length.
+     */
+    @Test
+    public void fixedLengthTest() {
+        this.assertMessages(
+                this.frame(Framer.fixedLength(3), new byte[] { 1, 2 },
+                        new byte[] { 3, 4, 5, 6, 7, 8, 9 }),
+                new byte[] { 1, 2, 3 }, new byte[] { 4, 5, 6 },
+                new byte[] { 7, 8, 9 });
+    }
+
+    /**
+     * Test that messages are framed by their length, in both byte orders.
+     */
+    @Test
+    public void lengthPrefixTest() {
+        this.assertMessages(
+                this.frame(Framer.lengthPrefix(2, ByteOrder.BIG_ENDIAN),
+                        new byte[] { 0 }, new byte[] { 2, 7 },
+                        new byte[] { 8, 0, 0, 0, 1 }),
+                new byte[] { 0, 2, 7, 8 }, new byte[] { 0, 0 },
+                new byte[] { 0, 1 });
+        this.assertMessages(
+                this.frame(Framer.lengthPrefix(1, ByteOrder.LITTLE_ENDIAN),
+                        new byte[] { (byte) 200 }),
+                new byte[] { (byte) 200 });
+        final byte[] large = new byte[300];
+        large[0] = 44;
+        large[1] = 1;
+        this.assertMessages(
+                this.frame(Framer.lengthPrefix(2, ByteOrder.LITTLE_ENDIAN),
+                        Arrays.copyOf(large, 100),
+                        Arrays.copyOfRange(large, 100, 300)),
+                large);
+    }
+
+    /**
+     * Test that a length above the maximum is not buffered, but passed on
+     * with the buffered bytes, after which the framer starts again.
+     */
+    @Test
+    public void lengthPrefixMaxTest() {
+        this.assertMessages(
+                this.frame(Framer.lengthPrefix(2, ByteOrder.BIG_ENDIAN, 4),
+                        new byte[] { 0, 9, 1, 2 }, new byte[] { 0, 1, 5 }),
+                new byte[] { 0, 9, 1, 2 }, new byte[] { 0, 1, 5 });
+        final Framer framer = Framer.lengthPrefix(4, ByteOrder.BIG_ENDIAN);
+        final CopyingOutput output = new CopyingOutput();
+        framer.read(new byte[] { 0x7F, -1, -1, -1, 1 }, 0, 5, 0, output);
+        Assert.assertEquals("Corrupt length not buffered", 1,
+                output.messages.size());
+    }
+
+    /**
+     * Test that messages are separated by an idle period, and keep the time
+     * of their last byte.
+     */
+    @Test
+    public void idleTimeoutTest() {
+        final Framer framer = Framer.idleTimeout(10, TimeUnit.NANOSECONDS);
+        final CopyingOutput output = new CopyingOutput();
+        framer.read(new byte[] { 1 }, 0, 1, 0, output);
+        framer.read(new byte[] { 2 }, 0, 1, 5, output);
+        framer.read(new byte[] { 3 }, 0, 1, 20, output);
+        framer.read(new byte[] { 4 }, 0, 1, 29, output);
+        Assert.assertEquals("First message", 1, output.messages.size());
+        framer.flush(output);
+        this.assertMessages(output, new byte[] { 1, 2 }, new byte[] { 3, 4 });
+        Assert.assertEquals("Time of the last byte", Arrays.asList(5L, 29L),
+                output.times);
+    }
+
+    /**
+     * Test that invalid framers are rejected.
+     */
+    @Test
+    public void invalidTest() {
+        final Runnable[] invalid = { () -> Framer.delimiter(),
+                () -> Framer.fixedLength(0),
+                () -> Framer.lengthPrefix(3, ByteOrder.BIG_ENDIAN),
+                () -> Framer.lengthPrefix(2, ByteOrder.BIG_ENDIAN, -1),
+                () -> Framer.idleTimeout(0, TimeUnit.SECONDS) };
+        for (final Runnable framer : invalid) {
+            try {
+                framer.run();
+                Assert.fail("Invalid framer created");
+            } catch (final IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+}
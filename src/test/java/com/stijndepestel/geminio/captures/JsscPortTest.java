@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jssc.SerialPort;
+
+/**
+ * Unit tests for the parameters of the JsscPort class, which are checked
+ * before the serial port is opened.
+ *
+ * @author sjdpeste
+ *
+ */
+public class JsscPortTest {
+
+    /**
+     * Name of a serial port that does not exist.
+     */
+    private static final String NAME = "/dev/geminio-test";
+
+    /**
+     * Open a port with the given parameters and check that it fails before
+     * the serial port is opened.
+     *
+     * @param ints
+     *            Integer parameters for the serial port.
+     * @param bools
+     *            Boolean parameters for the serial port.
+     */
+    private void assertInvalid(final int[] ints, final boolean[] bools) {
+        try {
+            new JsscPort(JsscPortTest.NAME, ints, bools).open();
+            Assert.fail("Invalid parameters accepted");
+        } catch (final IOException e) {
+            Assert.assertNull("Checked before opening", e.getCause());
+        }
+    }
+
+    /**
+     * Test that valid parameters, or none, are accepted.
+     *
+     * @throws IOException
+     *             When the parameters are rejected.
+     */
+    @Test
+    public void validParamsTest() throws IOException {
+        JsscPort.checkParams(new int[] {}, new boolean[] {});
+        JsscPort.checkParams(
+                new int[] { SerialPort.BAUDRATE_9600, SerialPort.DATABITS_8,
+                        SerialPort.STOPBITS_1, SerialPort.PARITY_NONE },
+                new boolean[] {});
+        JsscPort.checkParams(
+                new int[] { SerialPort.BAUDRATE_115200, SerialPort.DATABITS_5,
+                        SerialPort.STOPBITS_1_5, SerialPort.PARITY_SPACE },
+                new boolean[] { true, false });
+    }
+
+    /**
+     * Test that a wrong number of parameters is rejected.
+     */
+    @Test
+    public void wrongNumberOfParamsTest() {
+        this.assertInvalid(new int[] { SerialPort.BAUDRATE_9600 },
+                new boolean[] {});
+        this.assertInvalid(new int[] {}, new boolean[] { true, true });
+        this.assertInvalid(
+                new int[] { SerialPort.BAUDRATE_9600, SerialPort.DATABITS_8,
+                        SerialPort.STOPBITS_1, SerialPort.PARITY_NONE },
+                new boolean[] { true });
+    }
+
+    /**
+     * Test that invalid values of the parameters are rejected.
+     */
+    @Test
+    public void invalidValuesTest() {
+        final boolean[] bools = {};
+        this.assertInvalid(new int[] { 0, SerialPort.DATABITS_8,
+                SerialPort.STOPBITS_1, SerialPort.PARITY_NONE }, bools);
+        this.assertInvalid(new int[] { SerialPort.BAUDRATE_9600, 9,
+                SerialPort.STOPBITS_1, SerialPort.PARITY_NONE }, bools);
+        this.assertInvalid(new int[] { SerialPort.BAUDRATE_9600,
+                SerialPort.DATABITS_8, 0, SerialPort.PARITY_NONE }, bools);
+        this.assertInvalid(new int[] { SerialPort.BAUDRATE_9600,
+                SerialPort.DATABITS_8, SerialPort.STOPBITS_1, 5 }, bools);
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jssc.SerialPortEvent;
+import jssc.SerialPortEventListener;
+
+/**
+ * In-memory stand-in for a serial port. Keeps the written bytes, and lets a
+ * test receive bytes as if they arrived at the port.
+ *
+ * @author sjdpeste
+ *
+ */
+final class MemoryPort implements Port {
+
+    /**
+     * Name of the port in its events.
+     */
+    private static final String NAME = "memory";
+
+    /**
+     * Copies of the written bytes.
+     */
+    final List<byte[]> written = new ArrayList<>();
+
+    /**
+     * Times at which the bytes were written, in nanoseconds.
+     */
+    final List<Long> times = new ArrayList<>();
+
+    /**
+     * Flag indicating that the port is open.
+     */
+    volatile boolean open;
+
+    /**
+     * The number of times the port was closed.
+     */
+    volatile int closes;
+
+    /**
+     * Flag indicating that the port can not be opened.
+     */
+    volatile boolean broken;
+
+    /**
+     * Flag indicating that no listener can be added to the port.
+     */
+    volatile boolean deaf;
+
+    /**
+     * The number of reads.
+     */
+    volatile int reads;
+
+    /**
+     * The received bytes that were not read yet.
+     */
+    private byte[] received = new byte[0];
+
+    /**
+     * The listener of the opened port, if any.
+     */
+    private volatile SerialPortEventListener listener;
+
+    @Override
+    public void open() throws IOException {
+        if (this.broken) {
+            throw new IOException("Port broken.");
+        }
+        this.open = true;
+    }
+
+    @Override
+    public synchronized void write(final ByteBuffer bytes)
+            throws IOException {
+        if (!this.open) {
+            throw new IOException("Port not open.");
+        }
+        final byte[] copy = new byte[bytes.remaining()];
+        bytes.duplicate().get(copy);
+        this.written.add(copy);
+        this.times.add(System.nanoTime());
+    }
+
+    @Override
+    public void addEventListener(final SerialPortEventListener listener)
+            throws IOException {
+        if (!this.open || this.deaf) {
+            throw new IOException("Port not listening.");
+        }
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized byte[] read(final int count) {
+        this.reads++;
+        if (count <= 0 || this.received.length == 0) {
+            return null;
+        }
+        final int length = Math.min(count, this.received.length);
+        final byte[] bytes = Arrays.copyOf(this.received, length);
+        this.received = Arrays.copyOfRange(this.received, length,
+                this.received.length);
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        this.open = false;
+        this.listener = null;
+        this.closes++;
+    }
+
+    /**
+     * Receive bytes, as if they arrived at the port, and notify the listener
+     * on the calling thread.
+     *
+     * @param bytes
+     *            The received bytes.
+     */
+    void receive(final byte... bytes) {
+        synchronized (this) {
+            final int length = this.received.length;
+            this.received = Arrays.copyOf(this.received,
+                    length + bytes.length);
+            System.arraycopy(bytes, 0, this.received, length, bytes.length);
+        }
+        this.signal(SerialPortEvent.RXCHAR, bytes.length);
+    }
+
+    /**
+     * Notify the listener of an event on the calling thread, if the port is
+     * open.
+     *
+     * @param type
+     *            The type of the event, e.g., {@link SerialPortEvent#CTS}.
+     * @param value
+     *            The value of the event.
+     */
+    void signal(final int type, final int value) {
+        final SerialPortEventListener current = this.listener;
+        if (current != null) {
+            current.serialEvent(
+                    new SerialPortEvent(MemoryPort.NAME, type, value));
+        }
+    }
+
+}
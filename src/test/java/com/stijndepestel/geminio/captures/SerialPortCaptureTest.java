@@ -0,0 +1,287 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.stijndepestel.geminio.TestHelper.CollectingSink;
+
+import jssc.SerialPortEvent;
+import jssc.SerialPortException;
+
+/**
+ * Unit tests for the SerialPortCapture class, on an in-memory port.
+ *
+ * @author sjdpeste
+ *
+ */
+public class SerialPortCaptureTest {
+
+    /**
+     * The in-memory port of the capture.
+     */
+    private final MemoryPort port = new MemoryPort();
+
+    /**
+     * The sink of the capture.
+     */
+    private final CollectingSink sink = new CollectingSink();
+
+    /**
+     * Create a capture persisting to nowhere.
+     *
+     * @return The capture.
+     */
+    private SerialPortCapture capture() {
+        return new SerialPortCapture(this.port, (final JSONObject json) -> {
+            // not persisted
+        });
+    }
+
+    /**
+     * Test that a capture that was not started is not running and can not be
+     * stopped, without blocking.
+     *
+     * @throws InterruptedException
+     *             When interrupted while waiting.
+     */
+    @Test
+    public void notStartedTest() throws InterruptedException {
+        final SerialPortCapture capture = this.capture();
+        Assert.assertFalse("Not capturing", capture.isCapturing());
+        Assert.assertFalse("Nothing to stop", capture.stop());
+        Assert.assertTrue("Not waiting",
+                capture.awaitStop(0, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test that a duration that is not positive is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidDurationTest() {
+        this.capture().setMaxDuration(0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Test that a number of events that is not positive is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidEventsTest() {
+        this.capture().setMaxEvents(0);
+    }
+
+    /**
+     * Test that every read of the port is captured as an event, and that the
+     * port is closed and the events are persisted when the capture stops.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void readTest() throws Exception {
+        final SerialPortCapture capture = new SerialPortCapture(this.port,
+                () -> this.sink);
+        capture.start();
+        Assert.assertTrue("Capturing", capture.isCapturing());
+        Assert.assertTrue("Port opened", this.port.open);
+        this.port.receive((byte) 1, (byte) 2, (byte) 3);
+        this.port.receive((byte) 4);
+        Assert.assertTrue("Stopped", capture.stop());
+        Assert.assertFalse("Not capturing", capture.isCapturing());
+        Assert.assertEquals("Port closed once", 1, this.port.closes);
+        Assert.assertTrue("Sink closed", this.sink.isClosed());
+        Assert.assertEquals("Every read captured", 2,
+                this.sink.getEvents().size());
+        Assert.assertArrayEquals("Bytes of the first read",
+                new byte[] { 1, 2, 3 }, this.sink.getEvents().get(0));
+        Assert.assertArrayEquals("Bytes of the second read",
+                new byte[] { 4 }, this.sink.getEvents().get(1));
+    }
+
+    /**
+     * Test that the reads are reassembled into messages by the framer, and
+     * that the incomplete last message is captured when the capture stops.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void framerTest() throws Exception {
+        final SerialPortCapture capture = new SerialPortCapture(this.port,
+                () -> this.sink);
+        capture.setFramer(() -> Framer.fixedLength(2));
+        capture.start();
+        this.port.receive((byte) 1);
+        this.port.receive((byte) 2, (byte) 3);
+        capture.stop();
+        Assert.assertEquals("Messages captured", 2,
+                this.sink.getEvents().size());
+        Assert.assertArrayEquals("Bytes of the message",
+                new byte[] { 1, 2 }, this.sink.getEvents().get(0));
+        Assert.assertArrayEquals("Bytes of the incomplete message",
+                new byte[] { 3 }, this.sink.getEvents().get(1));
+    }
+
+    /**
+     * Test that an event rejected by the filter is not read from the port.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void filterTest() throws Exception {
+        final List<JSONObject> persisted = new ArrayList<>();
+        final SerialPortCapture capture = new SerialPortCapture(this.port,
+                persisted::add, SerialPortEvent::isRXCHAR);
+        capture.start();
+        this.port.signal(SerialPortEvent.CTS, 1);
+        Assert.assertEquals("Rejected event not read", 0, this.port.reads);
+        this.port.receive((byte) 5, (byte) 6);
+        Assert.assertEquals("Accepted event read", 1, this.port.reads);
+        capture.stop();
+        Assert.assertEquals("Captured data persisted", 1, persisted.size());
+    }
+
+    /**
+     * Test that the capture stops by itself after the maximum number of
+     * events, and captures no more events.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void maxEventsTest() throws Exception {
+        final SerialPortCapture capture = new SerialPortCapture(this.port,
+                () -> this.sink);
+        capture.setMaxEvents(2);
+        capture.start();
+        this.port.receive((byte) 1);
+        this.port.receive((byte) 2);
+        this.port.receive((byte) 3);
+        Assert.assertTrue("Stopped by itself",
+                capture.awaitStop(5, TimeUnit.SECONDS));
+        Assert.assertFalse("Not capturing", capture.isCapturing());
+        Assert.assertEquals("Port closed once", 1, this.port.closes);
+        Assert.assertEquals("Maximum number of events captured", 2,
+                this.sink.getEvents().size());
+        Assert.assertFalse("Nothing left to stop", capture.stop());
+    }
+
+    /**
+     * Test that a capture that was stopped can be started again, writing to a
+     * new sink.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void restartTest() throws Exception {
+        final List<CollectingSink> sinks = new ArrayList<>();
+        final SerialPortCapture capture = new SerialPortCapture(this.port,
+                () -> {
+                    final CollectingSink sink = new CollectingSink();
+                    sinks.add(sink);
+                    return sink;
+                });
+        capture.start();
+        this.port.receive((byte) 1);
+        capture.stop();
+        capture.start();
+        this.port.receive((byte) 2);
+        capture.stop();
+        Assert.assertEquals("A sink per capture", 2, sinks.size());
+        Assert.assertTrue("First sink closed", sinks.get(0).isClosed());
+        Assert.assertTrue("Second sink closed", sinks.get(1).isClosed());
+        Assert.assertArrayEquals("Bytes of the first capture",
+                new byte[] { 1 }, sinks.get(0).getEvents().get(0));
+        Assert.assertEquals("Second capture in its own sink", 1,
+                sinks.get(1).getEvents().size());
+        Assert.assertArrayEquals("Bytes of the second capture",
+                new byte[] { 2 }, sinks.get(1).getEvents().get(0));
+    }
+
+    /**
+     * Test that a capture that failed to start can be started again, writing
+     * to a new sink.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void restartAfterFailedStartTest() throws Exception {
+        final List<CollectingSink> sinks = new ArrayList<>();
+        final SerialPortCapture capture = new SerialPortCapture(this.port,
+                () -> {
+                    final CollectingSink sink = new CollectingSink();
+                    sinks.add(sink);
+                    return sink;
+                });
+        this.port.deaf = true;
+        try {
+            capture.start();
+            Assert.fail("Start should fail without a listener");
+        } catch (final SerialPortException e) {
+            Assert.assertFalse("Not capturing", capture.isCapturing());
+        }
+        this.port.deaf = false;
+        capture.start();
+        this.port.receive((byte) 1);
+        capture.stop();
+        Assert.assertEquals("A sink per start", 2, sinks.size());
+        Assert.assertArrayEquals("Bytes in the new sink", new byte[] { 1 },
+                sinks.get(1).getEvents().get(0));
+    }
+
+    /**
+     * Test that the capture stops by itself after the maximum duration.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void maxDurationTest() throws Exception {
+        final SerialPortCapture capture = new SerialPortCapture(this.port,
+                () -> this.sink);
+        capture.setMaxDuration(100, TimeUnit.MILLISECONDS);
+        final long start = System.nanoTime();
+        capture.start();
+        this.port.receive((byte) 1);
+        Assert.assertTrue("Stopped by itself",
+                capture.awaitStop(5, TimeUnit.SECONDS));
+        Assert.assertTrue("Stopped after the maximum duration",
+                System.nanoTime() - start >= TimeUnit.MILLISECONDS
+                        .toNanos(100));
+        Assert.assertFalse("Not capturing", capture.isCapturing());
+        Assert.assertEquals("Port closed once", 1, this.port.closes);
+        Assert.assertEquals("Event captured", 1, this.sink.getEvents().size());
+        Assert.assertTrue("Sink closed", this.sink.isClosed());
+    }
+
+}
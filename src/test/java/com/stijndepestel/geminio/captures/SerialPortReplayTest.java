@@ -0,0 +1,217 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jayway.awaitility.Awaitility;
+import com.stijndepestel.geminio.ByteCapture;
+import com.stijndepestel.geminio.Persister;
+
+/**
+ * Unit tests for the SerialPortReplay class.
+ *
+ * @author sjdpeste
+ *
+ */
+public class SerialPortReplayTest {
+
+    /**
+     * The captured chunks of bytes.
+     */
+    private static final byte[][] CHUNKS = { { 1, 2, 3 }, { 4 }, { 5, 6 } };
+
+    /**
+     * Capture the chunks 50 milliseconds apart.
+     *
+     * @param capture
+     *            The capture to capture the chunks with.
+     * @throws InterruptedException
+     *             When interrupted while waiting between the chunks.
+     */
+    private void capture(final ByteCapture capture)
+            throws InterruptedException {
+        capture.startCapture();
+        for (int i = 0; i < SerialPortReplayTest.CHUNKS.length; i++) {
+            if (i > 0) {
+                Thread.sleep(50);
+            }
+            capture.capture(SerialPortReplayTest.CHUNKS[i]);
+        }
+        capture.stopCapture();
+        capture.saveEvents();
+    }
+
+    /**
+     * Check that the chunks were written in order, not before their captured
+     * offsets and not much later, that the captured time between the first
+     * and the last chunk was kept, and that the port was closed afterwards.
+     *
+     * @param port
+     *            The port the chunks were written to.
+     * @param start
+     *            The time at which the replay was started, in nanoseconds.
+     */
+    private void assertReplayed(final MemoryPort port, final long start) {
+        Awaitility.await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> port.closes == 1);
+        Assert.assertEquals("All chunks written",
+                SerialPortReplayTest.CHUNKS.length, port.written.size());
+        for (int i = 0; i < SerialPortReplayTest.CHUNKS.length; i++) {
+            Assert.assertArrayEquals("Bytes of the chunk",
+                    SerialPortReplayTest.CHUNKS[i], port.written.get(i));
+        }
+        for (int i = 0; i < SerialPortReplayTest.CHUNKS.length; i++) {
+            final long offset = TimeUnit.NANOSECONDS
+                    .toMillis(port.times.get(i) - start);
+            Assert.assertTrue("Not written before its offset: " + offset,
+                    offset >= i * 50);
+            Assert.assertTrue("Written close to its offset: " + offset,
+                    offset < i * 50 + 150);
+        }
+        final long spacing = TimeUnit.NANOSECONDS
+                .toMillis(port.times.get(2) - port.times.get(0));
+        Assert.assertTrue("Captured spacing kept: " + spacing,
+                spacing >= 95 && spacing < 120);
+        Assert.assertFalse("Port closed", port.open);
+    }
+
+    /**
+     * Test that a binary capture is written to the port.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void binaryReplayTest() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.capture(new ByteCapture(new Persister(out).binarySink()));
+        final MemoryPort port = new MemoryPort();
+        final SerialPortReplay replay = new SerialPortReplay(port,
+                () -> new Persister(new ByteArrayInputStream(out.toByteArray()))
+                        .binarySource());
+        final long start = System.nanoTime();
+        replay.start();
+        this.assertReplayed(port, start);
+    }
+
+    /**
+     * Test that a JSON capture of a SerialPortCapture is written to the port,
+     * and that it can be replayed again after it has ended.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void jsonReplayTest() throws Exception {
+        final JSONObject[] persisted = new JSONObject[1];
+        this.capture(new ByteCapture(bytes -> {
+            final byte[] copy = new byte[bytes.remaining()];
+            bytes.get(copy);
+            return new JSONObject().put(SerialPortCapture.JSON_BYTES,
+                    DatatypeConverter.printBase64Binary(copy));
+        }, json -> persisted[0] = json));
+        final MemoryPort port = new MemoryPort();
+        final SerialPortReplay replay = SerialPortReplay.ofJSON(port,
+                () -> persisted[0]);
+        final long start = System.nanoTime();
+        replay.start();
+        this.assertReplayed(port, start);
+        port.written.clear();
+        port.times.clear();
+        port.closes = 0;
+        final long restart = System.nanoTime();
+        replay.start();
+        this.assertReplayed(port, restart);
+    }
+
+    /**
+     * Test that a replay that was not started can not be stopped, without
+     * throwing.
+     */
+    @Test
+    public void stopNotStartedTest() {
+        final SerialPortReplay replay = new SerialPortReplay(new MemoryPort(),
+                () -> new Persister(new ByteArrayInputStream(new byte[0]))
+                        .binarySource());
+        Assert.assertFalse("Nothing to stop", replay.stop());
+    }
+
+    /**
+     * Test that the port is not opened when the captured data can not be
+     * loaded.
+     */
+    @Test
+    public void loadFailureTest() {
+        final MemoryPort port = new MemoryPort();
+        final SerialPortReplay replay = new SerialPortReplay(port, () -> {
+            throw new UncheckedIOException(new IOException("No capture."));
+        });
+        try {
+            replay.start();
+            Assert.fail("Loading should fail");
+        } catch (final IOException | UncheckedIOException e) {
+            Assert.assertFalse("Port not opened", port.open);
+        }
+    }
+
+    /**
+     * Test that a replay can be started again after its port could not be
+     * opened.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void openFailureTest() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.capture(new ByteCapture(new Persister(out).binarySink()));
+        final MemoryPort port = new MemoryPort();
+        final SerialPortReplay replay = new SerialPortReplay(port,
+                () -> new Persister(new ByteArrayInputStream(out.toByteArray()))
+                        .binarySource());
+        port.broken = true;
+        try {
+            replay.start();
+            Assert.fail("Opening should fail");
+        } catch (final IOException e) {
+            Assert.assertFalse("Not running", replay.stop());
+        }
+        port.broken = false;
+        final long start = System.nanoTime();
+        replay.start();
+        this.assertReplayed(port, start);
+    }
+
+}
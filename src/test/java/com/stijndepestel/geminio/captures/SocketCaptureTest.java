@@ -0,0 +1,315 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Stijn De Pestel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stijndepestel.geminio.captures;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jayway.awaitility.Awaitility;
+import com.stijndepestel.geminio.TestHelper.CollectingSink;
+
+/**
+ * Unit tests for the SocketCapture class, on the loopback interface.
+ *
+ * @author sjdpeste
+ *
+ */
+public class SocketCaptureTest {
+
+    /**
+     * The sinks per remote address.
+     */
+    private final Map<SocketAddress, CollectingSink> sinks;
+
+    /**
+     * Create a new SocketCaptureTest.
+     */
+    public SocketCaptureTest() {
+        this.sinks = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * The loopback address with any free port.
+     */
+    private final SocketAddress loopback = new InetSocketAddress(
+            "127.0.0.1", 0);
+
+    /**
+     * Create a capture with a sink per remote address.
+     *
+     * @return The capture.
+     */
+    private SocketCapture capture() {
+        return new SocketCapture((remote, sequence) -> {
+            final CollectingSink sink = new CollectingSink();
+            this.sinks.put(remote, sink);
+            return sink;
+        });
+    }
+
+    /**
+     * Write a string to a channel.
+     *
+     * @param channel
+     *            The channel.
+     * @param data
+     *            The string.
+     * @throws IOException
+     *             When writing fails.
+     */
+    private void write(final SocketChannel channel, final String data)
+            throws IOException {
+        final ByteBuffer bytes = StandardCharsets.US_ASCII.encode(data);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Test that the data of accepted TCP connections is framed and captured
+     * per connection.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void tcpListenTest() throws Exception {
+        final SocketCapture capture = this.capture();
+        capture.listenTcp(this.loopback);
+        capture.setFramer(() -> Framer.delimiter((byte) '\n'));
+        capture.start();
+        final SocketAddress local = capture.getLocalAddresses().get(0);
+        try (final SocketChannel first = SocketChannel.open(local);
+                final SocketChannel second = SocketChannel.open(local)) {
+            this.write(first, "he");
+            this.write(second, "one\ntw");
+            Thread.sleep(20);
+            this.write(first, "llo\nwor");
+            this.write(second, "o\n");
+            this.write(first, "ld\n");
+            Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                    .until(() -> capture.getNumberOfCapturedEvents() == 4);
+            final CollectingSink firstSink = this.sinks
+                    .get(first.getLocalAddress());
+            first.shutdownOutput();
+            Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                    .until(() -> firstSink.isClosed());
+            Assert.assertEquals("Framed messages",
+                    Arrays.asList("hello\n", "world\n"),
+                    firstSink.getStrings());
+        }
+        Assert.assertTrue("Stopped", capture.stop());
+        Assert.assertFalse("Not capturing", capture.isCapturing());
+        Assert.assertEquals("Two connections", 2, this.sinks.size());
+        final CollectingSink secondSink = this.sinks.values().stream()
+                .filter(s -> s.getStrings().contains("one\n")).findAny().get();
+        Assert.assertTrue("Saved on stop", secondSink.isClosed());
+        Assert.assertEquals("Framed messages", Arrays.asList("one\n", "two\n"),
+                secondSink.getStrings());
+    }
+
+    /**
+     * Test that stopping while a peer closes its connection persists all
+     * connections.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void stopAfterPeerCloseTest() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            this.sinks.clear();
+            final SocketCapture capture = this.capture();
+            capture.listenTcp(this.loopback);
+            capture.start();
+            final SocketAddress local = capture.getLocalAddresses().get(0);
+            try (final SocketChannel closing = SocketChannel.open(local);
+                    final SocketChannel open = SocketChannel.open(local)) {
+                this.write(open, "x");
+                this.write(closing, "y");
+                Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                        .pollInterval(5, TimeUnit.MILLISECONDS)
+                        .until(() -> capture.getNumberOfCapturedEvents() == 2);
+                final CollectingSink closingSink = this.sinks
+                        .get(closing.getLocalAddress());
+                closing.shutdownOutput();
+                Thread.sleep(i % 3);
+                capture.stop();
+                Assert.assertTrue("Closed connection persisted",
+                        closingSink.isClosed());
+                Assert.assertTrue("Other connection persisted",
+                        this.sinks.get(open.getLocalAddress()).isClosed());
+            }
+        }
+    }
+
+    /**
+     * Test that a remote address that connects again is captured in a new
+     * sink, with a new sequence number.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void reconnectTest() throws Exception {
+        final List<Integer> sequences = new CopyOnWriteArrayList<>();
+        final List<CollectingSink> reconnected = new CopyOnWriteArrayList<>();
+        final SocketCapture capture = new SocketCapture(
+                (remote, sequence) -> {
+                    final CollectingSink sink = new CollectingSink();
+                    sequences.add(sequence);
+                    reconnected.add(sink);
+                    return sink;
+                });
+        capture.listenTcp(this.loopback);
+        capture.start();
+        final SocketAddress local = capture.getLocalAddresses().get(0);
+        SocketAddress remote = this.loopback;
+        for (int i = 0; i < 2; i++) {
+            try (final SocketChannel channel = SocketChannel.open()) {
+                channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                // reset the connection on close, to reuse its address
+                channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+                channel.bind(remote);
+                remote = channel.getLocalAddress();
+                channel.connect(local);
+                this.write(channel, "connection " + i);
+                final int events = i + 1;
+                Awaitility.await().atMost(1, TimeUnit.SECONDS).until(
+                        () -> capture.getNumberOfCapturedEvents() == events);
+            }
+            final int sinks = i + 1;
+            Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                    .until(() -> reconnected.size() == sinks
+                            && reconnected.get(sinks - 1).isClosed());
+        }
+        capture.stop();
+        Assert.assertEquals("Sequence numbers", Arrays.asList(0, 1),
+                sequences);
+        Assert.assertEquals("First connection", Arrays.asList("connection 0"),
+                reconnected.get(0).getStrings());
+        Assert.assertEquals("Second connection",
+                Arrays.asList("connection 1"), reconnected.get(1).getStrings());
+    }
+
+    /**
+     * Test that the data of an outgoing TCP connection is captured, relative
+     * to the start of the capture.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void tcpConnectTest() throws Exception {
+        try (final ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(this.loopback);
+            final SocketCapture capture = this.capture();
+            capture.connectTcp(server.getLocalAddress());
+            capture.start();
+            try (final SocketChannel device = server.accept()) {
+                Thread.sleep(50);
+                this.write(device, "data");
+                Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                        .until(() -> capture.getNumberOfCapturedEvents() == 1);
+            }
+            capture.stop();
+            final CollectingSink sink = this.sinks
+                    .get(server.getLocalAddress());
+            Assert.assertEquals("Captured data", Arrays.asList("data"),
+                    sink.getStrings());
+            Assert.assertTrue("Relative to the start",
+                    sink.getTimestamps().get(0) >= TimeUnit.MILLISECONDS
+                            .toNanos(50));
+        }
+    }
+
+    /**
+     * Test that every UDP datagram is captured as an event, per sender.
+     *
+     * @throws Exception
+     *             When the test fails.
+     */
+    @Test
+    public void udpTest() throws Exception {
+        final SocketCapture capture = this.capture();
+        capture.bindUdp(this.loopback);
+        capture.start();
+        final SocketAddress local = capture.getLocalAddresses().get(0);
+        try (final DatagramChannel first = DatagramChannel.open();
+                final DatagramChannel second = DatagramChannel.open()) {
+            first.bind(this.loopback);
+            second.bind(this.loopback);
+            first.send(StandardCharsets.US_ASCII.encode("a"), local);
+            second.send(StandardCharsets.US_ASCII.encode("b"), local);
+            first.send(StandardCharsets.US_ASCII.encode("cd"), local);
+            Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                    .until(() -> capture.getNumberOfCapturedEvents() == 3);
+            capture.stop();
+            Assert.assertEquals("Datagrams of the first sender",
+                    Arrays.asList("a", "cd"),
+                    this.sinks.get(first.getLocalAddress()).getStrings());
+            Assert.assertEquals("Datagrams of the second sender",
+                    Arrays.asList("b"),
+                    this.sinks.get(second.getLocalAddress()).getStrings());
+        }
+    }
+
+    /**
+     * Test that starting twice is rejected.
+     *
+     * @throws IOException
+     *             When the capture cannot be started.
+     */
+    @Test
+    public void startTwiceTest() throws IOException {
+        final SocketCapture capture = this.capture();
+        capture.start();
+        try {
+            capture.start();
+            Assert.fail("Started twice");
+        } catch (final IllegalStateException e) {
+            // expected
+        } finally {
+            capture.stop();
+        }
+        Assert.assertFalse("Nothing to stop", capture.stop());
+    }
+
+}